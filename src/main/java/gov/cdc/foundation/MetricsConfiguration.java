@@ -0,0 +1,41 @@
+package gov.cdc.foundation;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.actuate.metrics.web.servlet.DefaultWebMvcTagsProvider;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.HandlerMethod;
+
+import gov.cdc.foundation.helper.MetricsHelper;
+import gov.cdc.foundation.helper.WebHelper;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+
+@Configuration
+public class MetricsConfiguration {
+
+	private static final String TAG_HANDLER = "handler";
+
+	@Bean
+	public WebMvcTagsProvider webMvcTagsProvider() {
+		// Add the controller method and the configuration name to `http.server.requests`
+		return new DefaultWebMvcTagsProvider() {
+			@Override
+			public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler, Throwable exception) {
+				return Tags.of(super.getTags(request, response, handler, exception))
+					.and(TAG_HANDLER, getHandlerName(handler))
+					.and(MetricsHelper.TAG_CONFIG, MetricsHelper.getInstance().configTag(WebHelper.getPathVariable(request, "config")));
+			}
+		};
+	}
+
+	private static String getHandlerName(Object handler) {
+		if (handler instanceof HandlerMethod)
+			return ((HandlerMethod) handler).getMethod().getName();
+		return "none";
+	}
+
+}
@@ -0,0 +1,89 @@
+package gov.cdc.foundation;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.util.ClassUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+@Configuration
+public class StartupConfiguration {
+
+	private static final Logger logger = Logger.getLogger(StartupConfiguration.class);
+
+	private static final String APPLICATION_PACKAGE = "gov.cdc.";
+
+	@Value("${indexing.startup.exit}")
+	private boolean exit;
+
+	private long startupTime;
+
+	/**
+	 * Creates the framework beans on first use instead of at startup. The beans of the service stay eager: the helpers
+	 * are reached through their static instances, which must be configured before the first request.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "indexing.startup.lazy", havingValue = "true")
+	public static BeanFactoryPostProcessor lazyInitialization() {
+		return beanFactory -> {
+			for (String name : beanFactory.getBeanDefinitionNames()) {
+				BeanDefinition definition = beanFactory.getBeanDefinition(name);
+				if (definition.getRole() != BeanDefinition.ROLE_APPLICATION)
+					continue;
+				// Declared by a class of the service, or by a @Bean method of one of them
+				String declaringClass = definition.getFactoryBeanName() != null
+					? beanFactory.getBeanDefinition(definition.getFactoryBeanName()).getBeanClassName()
+					: definition.getBeanClassName();
+				if (declaringClass == null || declaringClass.startsWith(APPLICATION_PACKAGE))
+					continue;
+				// Only the declared type is checked, the factory beans aren't initialized this early
+				String typeName = definition instanceof AnnotatedBeanDefinition && ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata() != null
+					? ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata().getReturnTypeName()
+					: definition.getBeanClassName();
+				if (!isSmartInitializingSingleton(typeName, beanFactory.getBeanClassLoader()))
+					definition.setLazyInit(true);
+			}
+		};
+	}
+
+	private static boolean isSmartInitializingSingleton(String typeName, ClassLoader classLoader) {
+		try {
+			return typeName != null && SmartInitializingSingleton.class.isAssignableFrom(ClassUtils.forName(typeName, classLoader));
+		} catch (ClassNotFoundException | LinkageError e) {
+			return true;
+		}
+	}
+
+	public long getStartupTime() {
+		return startupTime;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(Ordered.LOWEST_PRECEDENCE)
+	public void ready(ApplicationReadyEvent event) {
+		startupTime = ManagementFactory.getRuntimeMXBean().getUptime();
+		logger.info(String.format("Ready %d ms after the JVM start", startupTime));
+		TimeGauge.builder("indexing.startup.time", this, TimeUnit.MILLISECONDS, StartupConfiguration::getStartupTime).register(event.getApplicationContext().getBean(MeterRegistry.class));
+
+		// Training run of the class data sharing archive
+		if (exit)
+			System.exit(SpringApplication.exit(event.getApplicationContext()));
+	}
+
+}
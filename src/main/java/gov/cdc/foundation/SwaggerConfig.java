@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -23,6 +24,7 @@ import springfox.documentation.swagger.web.SecurityConfigurationBuilder;
 
 @Configuration
 @EnableSwagger2
+@ConditionalOnProperty(name = "indexing.swagger.enabled", havingValue = "true", matchIfMissing = true)
 public class SwaggerConfig {
 
 	@Value("${proxy.hostname}")
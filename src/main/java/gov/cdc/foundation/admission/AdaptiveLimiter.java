@@ -0,0 +1,64 @@
+package gov.cdc.foundation.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit following an AIMD policy: the limit grows by one while the requests are fast and the
+ * limit is used, and is multiplied by the backoff ratio when a request is slower than the target or overloaded.
+ */
+public class AdaptiveLimiter {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTarget;
+	private final double backoffRatio;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile double limit;
+
+	public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTarget, double backoffRatio) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.latencyTarget = latencyTarget;
+		this.backoffRatio = backoffRatio;
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+	}
+
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit)
+				return false;
+			if (inFlight.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Releases a permit.
+	 *
+	 * @param latency the observed latency in nanoseconds, or a negative value if the request shouldn't update the limit
+	 * @param overloaded true if the downstream service rejected the request because of its load
+	 */
+	public void release(long latency, boolean overloaded) {
+		int current = inFlight.getAndDecrement();
+		if (!overloaded && latency < 0)
+			return;
+
+		synchronized (this) {
+			if (overloaded || latency > latencyTarget)
+				limit = Math.max(minLimit, limit * backoffRatio);
+			else if (current * 2 >= limit)
+				limit = Math.min(maxLimit, limit + 1);
+		}
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+}
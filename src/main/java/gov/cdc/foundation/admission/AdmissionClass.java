@@ -0,0 +1,23 @@
+package gov.cdc.foundation.admission;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a controller method under admission control, requests are limited per configuration and per class.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionClass {
+
+	String SEARCH = "search";
+	String INDEX = "index";
+	String ADMIN = "admin";
+
+	String value();
+
+}
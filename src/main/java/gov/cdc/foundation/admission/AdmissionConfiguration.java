@@ -0,0 +1,21 @@
+package gov.cdc.foundation.admission;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class AdmissionConfiguration {
+
+	@Bean
+	public WebMvcConfigurer admissionConfigurer(AdmissionControl admissionControl) {
+		return new WebMvcConfigurer() {
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new AdmissionInterceptor(admissionControl)).addPathPatterns("/api/1.0/**");
+			}
+		};
+	}
+
+}
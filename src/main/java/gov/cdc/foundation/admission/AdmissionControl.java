@@ -0,0 +1,131 @@
+package gov.cdc.foundation.admission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.foundation.helper.MetricsHelper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps one adaptive limiter per configuration and admission class. The limiters are fed with the
+ * Elasticsearch latency observed while serving each request: the slowest call, so the requests making several calls
+ * (bulk chunks, scrolls) are compared to the target like the others. Only the configurations registered by the metrics,
+ * which exist and are bounded in number, get their own limiters: any other name shares one limiter per class.
+ */
+@Component
+public class AdmissionControl {
+
+	private static final Logger logger = Logger.getLogger(AdmissionControl.class);
+
+	public static final String TAG_CLASS = "class";
+
+	private static final ThreadLocal<Observation> observation = new ThreadLocal<>();
+
+	private final MeterRegistry registry;
+	private final boolean enabled;
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTarget;
+	private final double backoffRatio;
+	private final int retryAfter;
+
+	private final ConcurrentMap<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AdaptiveLimiter> overflow = new ConcurrentHashMap<>();
+
+	public AdmissionControl(
+		MeterRegistry registry,
+		@Value("${admission.enabled}") boolean enabled,
+		@Value("${admission.limit.initial}") int initialLimit,
+		@Value("${admission.limit.min}") int minLimit,
+		@Value("${admission.limit.max}") int maxLimit,
+		@Value("${admission.latency.target}") long latencyTarget,
+		@Value("${admission.backoff.ratio}") double backoffRatio,
+		@Value("${admission.retry.after}") int retryAfter
+	) {
+		logger.debug("Creating admission control...");
+		this.registry = registry;
+		this.enabled = enabled;
+		this.initialLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTarget = TimeUnit.MILLISECONDS.toNanos(latencyTarget);
+		this.backoffRatio = backoffRatio;
+		this.retryAfter = retryAfter;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	public AdaptiveLimiter getLimiter(String config, String admissionClass) {
+		String configTag = MetricsHelper.getInstance().configTag(config);
+		// The path variable isn't checked yet: a name that isn't a known configuration mustn't add a limiter
+		if (!configTag.equals(config))
+			return overflow.computeIfAbsent(admissionClass, name -> createLimiter(MetricsHelper.CONFIG_OTHER, admissionClass));
+		return limiters.computeIfAbsent(config + "/" + admissionClass, key -> createLimiter(configTag, admissionClass));
+	}
+
+	int getLimiterCount() {
+		return limiters.size();
+	}
+
+	private AdaptiveLimiter createLimiter(String configTag, String admissionClass) {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(initialLimit, minLimit, maxLimit, latencyTarget, backoffRatio);
+		Gauge.builder("indexing.admission.limit", limiter, AdaptiveLimiter::getLimit)
+			.tag(MetricsHelper.TAG_CONFIG, configTag)
+			.tag(TAG_CLASS, admissionClass)
+			.register(registry);
+		Gauge.builder("indexing.admission.inflight", limiter, AdaptiveLimiter::getInFlight)
+			.tag(MetricsHelper.TAG_CONFIG, configTag)
+			.tag(TAG_CLASS, admissionClass)
+			.register(registry);
+		return limiter;
+	}
+
+	public void rejected(String config, String admissionClass) {
+		registry.counter("indexing.admission.rejected",
+			MetricsHelper.TAG_CONFIG, MetricsHelper.getInstance().configTag(config),
+			TAG_CLASS, admissionClass
+		).increment();
+	}
+
+	static void startObservation() {
+		observation.set(new Observation());
+	}
+
+	static Observation stopObservation() {
+		Observation current = observation.get();
+		observation.remove();
+		return current != null ? current : new Observation();
+	}
+
+	public static void recordElasticLatency(long nanos) {
+		Observation current = observation.get();
+		if (current != null)
+			current.latency = Math.max(current.latency, nanos);
+	}
+
+	public static void recordElasticOverload() {
+		Observation current = observation.get();
+		if (current != null)
+			current.overloaded = true;
+	}
+
+	static final class Observation {
+		// Negative until an Elasticsearch call is made
+		long latency = -1;
+		boolean overloaded;
+	}
+
+}
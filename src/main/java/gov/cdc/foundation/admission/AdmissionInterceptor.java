@@ -0,0 +1,89 @@
+package gov.cdc.foundation.admission;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONObject;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import gov.cdc.foundation.helper.MessageHelper;
+import gov.cdc.foundation.helper.WebHelper;
+
+public class AdmissionInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String ATTRIBUTE_LIMITER = AdmissionInterceptor.class.getName() + ".limiter";
+
+	private final AdmissionControl admissionControl;
+
+	public AdmissionInterceptor(AdmissionControl admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+		if (!admissionControl.isEnabled() || !(handler instanceof HandlerMethod))
+			return true;
+		AdmissionClass admissionClass = ((HandlerMethod) handler).getMethodAnnotation(AdmissionClass.class);
+		if (admissionClass == null)
+			return true;
+
+		String config = WebHelper.getPathVariable(request, "config");
+		AdaptiveLimiter limiter = admissionControl.getLimiter(config, admissionClass.value());
+		if (!limiter.tryAcquire()) {
+			admissionControl.rejected(config, admissionClass.value());
+			reject(response);
+			return false;
+		}
+
+		request.setAttribute(ATTRIBUTE_LIMITER, limiter);
+		AdmissionControl.startObservation();
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		// Also stopped when the permit is held by the background work
+		AdmissionControl.Observation observation = AdmissionControl.stopObservation();
+		AdaptiveLimiter limiter = (AdaptiveLimiter) request.getAttribute(ATTRIBUTE_LIMITER);
+		if (limiter == null)
+			return;
+		request.removeAttribute(ATTRIBUTE_LIMITER);
+
+		int status = response.getStatus();
+		boolean overloaded = observation.overloaded
+			|| status == HttpStatus.TOO_MANY_REQUESTS.value()
+			|| status == HttpStatus.SERVICE_UNAVAILABLE.value()
+			|| status == HttpStatus.GATEWAY_TIMEOUT.value();
+		limiter.release(observation.latency, overloaded);
+	}
+
+	/**
+	 * Keeps the permit of the request once it's completed, for the work it started in the background. The returned
+	 * callback releases the permit without updating the limit, and does nothing if the request holds no permit.
+	 */
+	public static Runnable hold(HttpServletRequest request) {
+		AdaptiveLimiter limiter = (AdaptiveLimiter) request.getAttribute(ATTRIBUTE_LIMITER);
+		if (limiter == null)
+			return () -> { };
+		request.removeAttribute(ATTRIBUTE_LIMITER);
+		return () -> limiter.release(-1, false);
+	}
+
+	private void reject(HttpServletResponse response) throws IOException {
+		JSONObject json = new JSONObject();
+		json.put(MessageHelper.CONST_SUCCESS, false);
+		json.put(MessageHelper.CONST_MESSAGE, MessageHelper.ERROR_TOO_MANY_REQUESTS);
+
+		response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(admissionControl.getRetryAfter()));
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		response.getWriter().write(json.toString());
+	}
+
+}
@@ -1,20 +1,33 @@
 package gov.cdc.foundation.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.ApiResponse;
-import org.apache.commons.codec.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.bson.types.ObjectId;
 import org.elasticsearch.client.Response;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -30,18 +43,35 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.PathNotFoundException;
 import com.mongodb.BasicDBObject;
 
+import gov.cdc.foundation.admission.AdmissionClass;
+import gov.cdc.foundation.admission.AdmissionInterceptor;
+import gov.cdc.foundation.helper.AggregationHelper;
+import gov.cdc.foundation.helper.BulkHelper;
 import gov.cdc.foundation.helper.ConfigurationHelper;
+import gov.cdc.foundation.helper.CountHelper;
 import gov.cdc.foundation.helper.ElasticHelper;
+import gov.cdc.foundation.helper.HashHelper;
 import gov.cdc.foundation.helper.JSONHelper;
 import gov.cdc.foundation.helper.LoggerHelper;
 import gov.cdc.foundation.helper.MessageHelper;
+import gov.cdc.foundation.helper.MetricsHelper;
+import gov.cdc.foundation.helper.PartitionHelper;
 import gov.cdc.foundation.helper.QueryBuilder;
+import gov.cdc.foundation.helper.ReindexHelper;
+import gov.cdc.foundation.helper.RoutingHelper;
+import gov.cdc.foundation.helper.SlowQueryHelper;
+import gov.cdc.foundation.helper.SourceHelper;
+import gov.cdc.foundation.helper.TaskHelper;
+import gov.cdc.foundation.resilience.CircuitBreakerOpenException;
+import gov.cdc.foundation.resilience.Resilience;
+import gov.cdc.foundation.tracing.Tracer;
 import gov.cdc.helper.ErrorHandler;
 import gov.cdc.helper.ObjectHelper;
 import gov.cdc.helper.common.ServiceException;
@@ -65,9 +95,14 @@ public class IndexingController {
 	private static final String CONST_ELASTIC_TYPE = "$.elastic.type";
 
 	private String configRegex;
+	private float deleteRequestsPerSecond;
 
-	public IndexingController(@Value("${config.regex}") String configRegex) {
+	public IndexingController(
+		@Value("${config.regex}") String configRegex,
+		@Value("${indexing.delete-by-query.requests-per-second}") float deleteRequestsPerSecond
+	) {
 		this.configRegex = configRegex;
+		this.deleteRequestsPerSecond = deleteRequestsPerSecond;
 	}
 
 	@RequestMapping(method = RequestMethod.GET)
@@ -80,32 +115,24 @@ public class IndexingController {
 	})
 	@ResponseBody
 	public ResponseEntity<?> index() throws IOException {
-		ObjectMapper mapper = new ObjectMapper();
 
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_INDEX, null);
 
 		try {
-			JSONObject json = new JSONObject();
+			ObjectNode json = JSONHelper.getInstance().createObjectNode();
 			json.put("version", version);
 
-			return new ResponseEntity<>(mapper.readTree(json.toString()), HttpStatus.OK);
+			return new ResponseEntity<>(json, HttpStatus.OK);
 		} catch (Exception e) {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_INDEX, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 	}
 
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.create')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'create')")
 	@RequestMapping(value = "index/{config}/{id}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
 	@ApiOperation(value = "Index an existing stored object.", notes = "Index an existing stored object.")
 	@ApiResponses(value = {
@@ -116,25 +143,25 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not Found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
 	public ResponseEntity<?> indexObject(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
 		@ApiParam(value = "Object Id") @PathVariable(value = "id") String objectId
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_INDEXOBJECT, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_INDEXOBJECT);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
 		log.put(MessageHelper.CONST_OBJECTID, objectId);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String database = JsonPath.read(document, IndexingController.CONST_MONGO_DATABASE);
-			String collection = JsonPath.read(document, IndexingController.CONST_MONGO_COLLECTION);
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
-			String type = JsonPath.read(document, IndexingController.CONST_ELASTIC_TYPE);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String database = document.read(IndexingController.CONST_MONGO_DATABASE, String.class);
+			String collection = document.read(IndexingController.CONST_MONGO_COLLECTION, String.class);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
 
 			if (StringUtils.isEmpty(database))
 				throw new ServiceException(MessageHelper.ERROR_NO_DATABASE);
@@ -146,21 +173,21 @@ public class IndexingController {
 				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
 
 			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
-			if (!helper.exists(objectId, database, collection))
+			Resilience resilience = Resilience.getInstance();
+			if (!resilience.callObjectService("exists", configName, () -> helper.exists(objectId, database, collection)))
 				throw new ServiceException(MessageHelper.ERROR_NO_OBJECT);
-			JSONObject object = helper.getObject(objectId, database, collection);
+			ObjectNode object = JSONHelper.getInstance().toJsonNode(resilience.callObjectService("getObject", configName, () -> helper.getObject(objectId, database, collection)));
 
 			prepareObject(object, config);
 
-			JSONObject response = new JSONObject();
-			response.put("data", object);
+			ObjectNode response = JSONHelper.getInstance().createObjectNode();
+			response.set("data", object);
 
 			// Index the object
-			Response elkResponse = ElasticHelper.getInstance().index(object, index, type, objectId);
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
-			response.put("elk", new JSONObject(elkResponseStr));
+			Response elkResponse = write(object, config, index, type, objectId);
+			response.set("elk", ElasticHelper.getInstance().read(elkResponse));
 
-			return new ResponseEntity<>(mapper.readTree(response.toString()), HttpStatus.CREATED);
+			return new ResponseEntity<>(response, HttpStatus.CREATED);
 
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
@@ -171,18 +198,11 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_INDEXOBJECT, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.create')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'create')")
 	@RequestMapping(
 		value = "index/bulk/{config}",
 		method = RequestMethod.POST,
@@ -199,32 +219,34 @@ public class IndexingController {
 			@ApiResponse(code = 413, message = "Payload too large")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
 	public ResponseEntity<?> indexBulkObjects(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
 		@ApiParam(value = "JSON array of object ids") @RequestBody String data
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_INDEXBULKOBJECTS, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_INDEXBULKOBJECTS);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
 
 		try {
-			JSONArray arrayOfIds = new JSONArray(data);
-			if (arrayOfIds.length() > 100){
+			JsonNode arrayOfIds = JSONHelper.getInstance().getMapper().readTree(data);
+			if (!arrayOfIds.isArray())
+				throw new IllegalArgumentException("The payload must be a JSON array of object ids.");
+			if (arrayOfIds.size() > 100){
 				log.put(MessageHelper.CONST_MESSAGE, MessageHelper.ERROR_BULK_MAX);
 				LoggerHelper.log(MessageHelper.METHOD_INDEXBULKOBJECTS, log);
 
 				return ErrorHandler.getInstance().handle(HttpStatus.PAYLOAD_TOO_LARGE, log);
 			}
 
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String database = JsonPath.read(document, IndexingController.CONST_MONGO_DATABASE);
-			String collection = JsonPath.read(document, IndexingController.CONST_MONGO_COLLECTION);
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
-			String type = JsonPath.read(document, IndexingController.CONST_ELASTIC_TYPE);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String database = document.read(IndexingController.CONST_MONGO_DATABASE, String.class);
+			String collection = document.read(IndexingController.CONST_MONGO_COLLECTION, String.class);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
 
 			if (StringUtils.isEmpty(database))
 				throw new ServiceException(MessageHelper.ERROR_NO_DATABASE);
@@ -235,25 +257,28 @@ public class IndexingController {
 			if (StringUtils.isEmpty(type))
 				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
 
-			ObjectId[] objArray = new ObjectId[arrayOfIds.length()];
-			for (int i = 0; i < arrayOfIds.length(); i++) {
-				objArray[i] = new ObjectId(arrayOfIds.getString(i));
+			ObjectId[] objArray = new ObjectId[arrayOfIds.size()];
+			for (int i = 0; i < arrayOfIds.size(); i++) {
+				objArray[i] = new ObjectId(arrayOfIds.get(i).asText());
 			}
 			BasicDBObject inQuery = new BasicDBObject("$in", objArray);
 			BasicDBObject query = new BasicDBObject("_id", inQuery);
 
-			JSONObject object = ObjectHelper.getInstance(authorizationHeader).find(new JSONObject(query.toString()), database, collection);
-			JSONArray items = object.getJSONArray("items");
-			for (int i = 0; i < items.length(); i++) {
-				prepareObject(items.getJSONObject(i), config);
-				ElasticHelper.getInstance().index(object, index, type, arrayOfIds.getString(i));
+			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
+			JSONObject object = Resilience.getInstance().callObjectService("find", configName, () -> helper.find(new JSONObject(query.toString()), database, collection));
+			ArrayNode items = JSONHelper.getInstance().toJsonNode(object.getJSONArray("items"));
+			for (JsonNode item : items) {
+				// The items aren't returned in the order of the ids
+				String id = item.path("_id").path("$oid").asText();
+				prepareObject((ObjectNode) item, config);
+				write((ObjectNode) item, config, index, type, id);
 			}
 
-			JSONObject response = new JSONObject();
-			response.put("indexed", items.length());
+			ObjectNode response = JSONHelper.getInstance().createObjectNode();
+			response.put("indexed", items.size());
 			response.put("success", true);
 
-			return new ResponseEntity<>(mapper.readTree(response.toString()), HttpStatus.CREATED);
+			return new ResponseEntity<>(response, HttpStatus.CREATED);
 
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
@@ -264,18 +289,401 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_INDEXOBJECT, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'create')")
+	@RequestMapping(
+		value = "index/bulk/{config}",
+		method = RequestMethod.POST,
+		produces = BulkHelper.CONTENT_TYPE_NDJSON,
+		consumes = { BulkHelper.CONTENT_TYPE_NDJSON, MediaType.TEXT_PLAIN_VALUE }
+	)
+	@ApiOperation(value = "Index a stream of objects.", notes = "Reads the object ids one per line (plain or NDJSON) and streams the result of each id back as NDJSON, followed by a summary line.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Results of the indexing"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not Found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
+	public ResponseEntity<?> indexBulkStream(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiIgnore HttpServletRequest request,
+		@ApiIgnore HttpServletResponse response
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_INDEXBULKSTREAM, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_INDEXBULKSTREAM);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String database = document.read(IndexingController.CONST_MONGO_DATABASE, String.class);
+			String collection = document.read(IndexingController.CONST_MONGO_COLLECTION, String.class);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
+
+			if (StringUtils.isEmpty(database))
+				throw new ServiceException(MessageHelper.ERROR_NO_DATABASE);
+			if (StringUtils.isEmpty(collection))
+				throw new ServiceException(MessageHelper.ERROR_NO_COLLECTION);
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+			if (StringUtils.isEmpty(type))
+				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
+
+			// From here the results are written as they come, the errors are reported in the stream
+			response.setStatus(HttpStatus.OK.value());
+			response.setContentType(BulkHelper.CONTENT_TYPE_NDJSON);
+			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
+			OutputStream output = response.getOutputStream();
+			streamIds(request.getInputStream(), output, true, "indexed", (ids, counts) -> indexChunk(helper, configName, database, collection, index, type, config, ids, output, counts));
+			return null;
+
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_INDEXBULKSTREAM, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_INDEXBULKSTREAM, log);
+
+			return handleException(e, log);
+		}
+	}
+
+	private void streamIds(InputStream input, OutputStream output, boolean objectIds, String counter, ChunkHandler handler) throws IOException {
+		BulkHelper bulk = BulkHelper.getInstance();
+		Counts counts = new Counts();
+		boolean success = true;
+		String message = null;
+
+		// Only one chunk of ids is kept in memory, the handler counts the ids it's given
+		Set<String> chunk = new LinkedHashSet<>();
+		try {
+			Iterator<JsonNode> lines = bulk.readLines(input);
+			while (lines.hasNext()) {
+				String id = bulk.getId(lines.next());
+				if (StringUtils.isEmpty(id) || (objectIds && !ObjectId.isValid(id))) {
+					bulk.writeLine(output, bulk.result(id, HttpStatus.BAD_REQUEST.value(), MessageHelper.ERROR_INVALID_ID));
+					counts.failed++;
+					continue;
+				}
+				// A repeated id starts a new chunk, so each line gets its result
+				if (chunk.contains(id)) {
+					Set<String> ids = chunk;
+					chunk = new LinkedHashSet<>();
+					handler.process(ids, counts);
+				}
+				chunk.add(id);
+				if (chunk.size() >= bulk.getChunkSize()) {
+					Set<String> ids = chunk;
+					chunk = new LinkedHashSet<>();
+					handler.process(ids, counts);
+					output.flush();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				Set<String> ids = chunk;
+				chunk = new LinkedHashSet<>();
+				handler.process(ids, counts);
+			}
+		} catch (Exception e) {
+			logger.error(e);
+			counts.failed += chunk.size();
+			success = false;
+			message = e.getMessage();
+		}
+
+		writeSummary(output, success, message, counter, counts);
+	}
+
+	private void writeSummary(OutputStream output, boolean success, String message, String counter, Counts counts) throws IOException {
+		ObjectNode summary = JSONHelper.getInstance().createObjectNode();
+		summary.put(MessageHelper.CONST_SUCCESS, success);
+		if (message != null)
+			summary.put(MessageHelper.CONST_MESSAGE, message);
+		summary.put(counter, counts.succeeded);
+		if (HashHelper.getInstance().isEnabled())
+			summary.put("skipped", counts.skipped);
+		summary.put("failed", counts.failed);
+		BulkHelper.getInstance().writeLine(output, summary);
+		output.flush();
+	}
+
+	private void indexChunk(
+		ObjectHelper helper,
+		String configName,
+		String database,
+		String collection,
+		String index,
+		String type,
+		ObjectNode config,
+		Set<String> ids,
+		OutputStream output,
+		Counts counts
+	) throws Exception {
+		BulkHelper bulk = BulkHelper.getInstance();
+		BulkHelper.Request request = indexRequest(config, index);
+		Set<String> missing = new LinkedHashSet<>(ids);
+		JsonNode items;
+		try {
+			ObjectId[] objArray = new ObjectId[ids.size()];
+			int i = 0;
+			for (String id : ids)
+				objArray[i++] = new ObjectId(id);
+			BasicDBObject query = new BasicDBObject("_id", new BasicDBObject("$in", objArray));
+			JSONObject object = Resilience.getInstance().callObjectService("find", configName, () -> helper.find(new JSONObject(query.toString()), database, collection, 0, ids.size()));
+			items = JSONHelper.getInstance().toJsonNode(object.getJSONArray("items"));
+		} catch (Exception e) {
+			// Nothing has been written for this chunk yet
+			failChunk(ids, e, output, counts);
+			return;
+		}
+
+		for (JsonNode item : items) {
+			String id = item.path("_id").path("$oid").asText();
+			if (!missing.remove(id))
+				continue;
+			try {
+				prepareObject((ObjectNode) item, config);
+				request.index(PartitionHelper.getInstance().getIndex(config, index, item), type, id, RoutingHelper.getInstance().getRouting(config, item), item);
+			} catch (Exception e) {
+				// Only this object is rejected, the rest of the chunk is indexed
+				logger.debug(e);
+				bulk.writeLine(output, bulk.result(id, HttpStatus.BAD_REQUEST.value(), e.getMessage()));
+				counts.failed++;
+			}
+		}
+
+		for (String id : missing)
+			bulk.writeLine(output, bulk.result(id, HttpStatus.NOT_FOUND.value(), MessageHelper.ERROR_NO_OBJECT));
+		counts.failed += missing.size();
+		if (request.size() > 0)
+			executeChunk(request, output, counts);
+	}
+
+	private void executeChunk(BulkHelper.Request request, OutputStream output, Counts counts) throws Exception {
+		List<ObjectNode> results;
+		try {
+			results = request.execute();
+		} catch (Exception e) {
+			failChunk(request.getIds(), e, output, counts);
+			return;
+		}
+
+		counts.add(results);
+		for (ObjectNode result : results)
+			BulkHelper.getInstance().writeLine(output, result);
+	}
+
+	/**
+	 * Reports the failure of a whole chunk and goes on with the next one, unless the circuit breaker is open.
+	 */
+	private void failChunk(Collection<String> ids, Exception e, OutputStream output, Counts counts) throws Exception {
+		logger.error(e);
+		writeErrors(ids, e, output);
+		counts.failed += ids.size();
+		if (e instanceof CircuitBreakerOpenException)
+			// Stop there instead of failing all the remaining ids
+			throw e;
+	}
+
+	private void writeErrors(Collection<String> ids, Exception e, OutputStream output) throws IOException {
+		int status = e instanceof CircuitBreakerOpenException ? HttpStatus.SERVICE_UNAVAILABLE.value() : HttpStatus.INTERNAL_SERVER_ERROR.value();
+		for (String id : ids)
+			BulkHelper.getInstance().writeLine(output, BulkHelper.getInstance().result(id, status, e.getMessage()));
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'create')")
+	@RequestMapping(
+		value = "ingest/{config}",
+		method = RequestMethod.POST,
+		produces = MediaType.APPLICATION_JSON_VALUE,
+		consumes = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(value = "Index a supplied object.", notes = "Applies the mapping of the configuration to the object and indexes it, without fetching it from the Object Microservice.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 201, message = "Index created"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not Found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
+	public ResponseEntity<?> ingestObject(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiParam(value = "Object Id, by default the _id of the object") @RequestParam(value = "id", required = false) String objectId,
+		@ApiParam(value = "JSON object") @RequestBody JsonNode payload
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_INGEST, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_INGEST);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+
+		try {
+			String id = StringUtils.isEmpty(objectId) ? BulkHelper.getInstance().getId(payload) : objectId;
+			log.put(MessageHelper.CONST_OBJECTID, id);
+			if (!payload.isObject() || StringUtils.isEmpty(id)) {
+				log.put(MessageHelper.CONST_MESSAGE, payload.isObject() ? MessageHelper.ERROR_NO_ID : MessageHelper.ERROR_NOT_AN_OBJECT);
+				LoggerHelper.log(MessageHelper.METHOD_INGEST, log);
+
+				return ErrorHandler.getInstance().handle(HttpStatus.BAD_REQUEST, log);
+			}
+
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+			if (StringUtils.isEmpty(type))
+				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
+
+			ObjectNode object = (ObjectNode) payload;
+			prepareObject(object, config);
+
+			ObjectNode response = JSONHelper.getInstance().createObjectNode();
+			response.set("data", object);
+
+			// Index the object
+			Response elkResponse = write(object, config, index, type, id);
+			response.set("elk", ElasticHelper.getInstance().read(elkResponse));
+
+			return new ResponseEntity<>(response, HttpStatus.CREATED);
+
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_INGEST, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_INGEST, log);
+
+			return handleException(e, log);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.create')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
+	@PreAuthorize("@authz.can(#configName, 'create')")
+	@RequestMapping(
+		value = "ingest/{config}",
+		method = RequestMethod.POST,
+		produces = BulkHelper.CONTENT_TYPE_NDJSON,
+		consumes = { BulkHelper.CONTENT_TYPE_NDJSON, MediaType.TEXT_PLAIN_VALUE }
 	)
+	@ApiOperation(value = "Index a stream of supplied objects.", notes = "Reads the objects one per line (NDJSON, with their _id), applies the mapping of the configuration and indexes them in bulk. The result of each object is streamed back as NDJSON, followed by a summary line.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Results of the indexing"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not Found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
+	public ResponseEntity<?> ingestStream(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiIgnore HttpServletRequest request,
+		@ApiIgnore HttpServletResponse response
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_INGESTSTREAM, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_INGESTSTREAM);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+			if (StringUtils.isEmpty(type))
+				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
+
+			// From here the results are written as they come, the errors are reported in the stream
+			response.setStatus(HttpStatus.OK.value());
+			response.setContentType(BulkHelper.CONTENT_TYPE_NDJSON);
+			ingestStream(index, type, config, request.getInputStream(), response.getOutputStream());
+			return null;
+
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_INGESTSTREAM, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_INGESTSTREAM, log);
+
+			return handleException(e, log);
+		}
+	}
+
+	private void ingestStream(String index, String type, ObjectNode config, InputStream input, OutputStream output) throws IOException {
+		BulkHelper bulk = BulkHelper.getInstance();
+		Counts counts = new Counts();
+		boolean success = true;
+		String message = null;
+
+		// Only one chunk of documents is kept in memory
+		BulkHelper.Request request = indexRequest(config, index);
+		try {
+			Iterator<JsonNode> lines = bulk.readLines(input);
+			while (lines.hasNext()) {
+				JsonNode object = lines.next();
+				String id = bulk.getId(object);
+				if (!object.isObject() || StringUtils.isEmpty(id)) {
+					bulk.writeLine(output, bulk.result(id, HttpStatus.BAD_REQUEST.value(), object.isObject() ? MessageHelper.ERROR_NO_ID : MessageHelper.ERROR_NOT_AN_OBJECT));
+					counts.failed++;
+					continue;
+				}
+				try {
+					prepareObject((ObjectNode) object, config);
+					request.index(PartitionHelper.getInstance().getIndex(config, index, object), type, id, RoutingHelper.getInstance().getRouting(config, object), object);
+				} catch (Exception e) {
+					// Only this document is rejected, the stream goes on
+					logger.debug(e);
+					bulk.writeLine(output, bulk.result(id, HttpStatus.BAD_REQUEST.value(), e.getMessage()));
+					counts.failed++;
+					continue;
+				}
+				if (request.size() >= bulk.getChunkSize()) {
+					BulkHelper.Request chunk = request;
+					request = indexRequest(config, index);
+					executeChunk(chunk, output, counts);
+					output.flush();
+				}
+			}
+			if (request.size() > 0) {
+				BulkHelper.Request chunk = request;
+				request = indexRequest(config, index);
+				executeChunk(chunk, output, counts);
+			}
+		} catch (Exception e) {
+			logger.error(e);
+			counts.failed += request.size();
+			success = false;
+			message = e.getMessage();
+		}
+
+		writeSummary(output, success, message, "indexed", counts);
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'create')")
 	@RequestMapping(value = "index/all/{config}", method = RequestMethod.PUT, produces = MediaType.APPLICATION_JSON_VALUE)
 	@ApiOperation(value = "Index all objects in MongoDB.", notes = "Index all objects in MongoDB.")
 	@ApiResponses(value = {
@@ -286,23 +694,24 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not Found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
 	public ResponseEntity<?> indexAll(
+		@ApiIgnore HttpServletRequest request,
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_INDEXALL, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_INDEXALL);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String database = JsonPath.read(document, IndexingController.CONST_MONGO_DATABASE);
-			String collection = JsonPath.read(document, IndexingController.CONST_MONGO_COLLECTION);
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
-			String type = JsonPath.read(document, IndexingController.CONST_ELASTIC_TYPE);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String database = document.read(IndexingController.CONST_MONGO_DATABASE, String.class);
+			String collection = document.read(IndexingController.CONST_MONGO_COLLECTION, String.class);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
 
 			if (StringUtils.isEmpty(database))
 				throw new ServiceException(MessageHelper.ERROR_NO_DATABASE);
@@ -313,21 +722,24 @@ public class IndexingController {
 			if (StringUtils.isEmpty(type))
 				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
 
-			// Start the index asynchronously
+			// Start the index asynchronously, the admission permit is kept until it's done
+			Runnable release = AdmissionInterceptor.hold(request);
 			new Thread(new Runnable() {
 				public void run() {
 					try {
 						indexAll(authorizationHeader, database, collection, index, type, config);
 					} catch (Exception e) {
 						logger.error(e);
+					} finally {
+						release.run();
 					}
 				}
 			}).start();
 
-			JSONObject response = new JSONObject();
+			ObjectNode response = JSONHelper.getInstance().createObjectNode();
 			response.put("success", true);
 
-			return new ResponseEntity<>(mapper.readTree(response.toString()), HttpStatus.CREATED);
+			return new ResponseEntity<>(response, HttpStatus.CREATED);
 
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
@@ -338,7 +750,7 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_INDEXALL, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 	}
 
@@ -349,43 +761,116 @@ public class IndexingController {
 		String collection,
 		String index,
 		String type,
-		JSONObject config
+		ObjectNode config
 	) throws ServiceException, IOException {
 		ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
+		Resilience resilience = Resilience.getInstance();
 
 		// Count all items in MongoDB
-		int nbOfItems = helper.countObjects(new JSONObject(), database, collection).getInt("count");
+		int nbOfItems = resilience.callObjectService("count", null, () -> helper.countObjects(new JSONObject(), database, collection)).getInt("count");
 		logger.debug("# of items: " + nbOfItems);
 
+		Counts counts = new Counts();
 		int currentIndex = 0;
 		while (currentIndex < nbOfItems) {
 			logger.debug(String.format("  Indexing [ %5d ~ %5d ] / %5d...", currentIndex, currentIndex + 99, nbOfItems));
 			// Query
-			JSONObject object = helper.find(new JSONObject(), database, collection, currentIndex, 100);
-			JSONArray items = object.getJSONArray("items");
-			for (int i = 0; i < items.length(); i++) {
-				JSONObject item = items.getJSONObject(i);
-				String id = item.getJSONObject("_id").getString("$oid");
-				prepareObject(item, config);
+			int from = currentIndex;
+			JSONObject object = resilience.callObjectService("find", null, () -> helper.find(new JSONObject(), database, collection, from, 100));
+			ArrayNode items = JSONHelper.getInstance().toJsonNode(object.getJSONArray("items"));
+			BulkHelper.Request request = indexRequest(config, index);
+			for (JsonNode item : items) {
+				String id = item.path("_id").path("$oid").asText();
+				prepareObject((ObjectNode) item, config);
+				request.index(PartitionHelper.getInstance().getIndex(config, index, item), type, id, RoutingHelper.getInstance().getRouting(config, item), item);
+			}
+			if (request.size() > 0) {
 				try {
-					ElasticHelper.getInstance().index(item, index, type, id);
+					counts.add(request.execute());
+				} catch (CircuitBreakerOpenException e) {
+					// Stop there instead of failing all the remaining objects
+					throw e;
 				} catch (Exception e) {
-					logger.error("Error with object: " + id);
+					logger.error("Error with objects: " + request.getIds());
 					logger.error(e);
+					counts.failed += request.size();
 				}
 			}
 			currentIndex += 100;
 		}
+		logger.debug(String.format("# of items indexed: %d, skipped: %d, failed: %d", counts.succeeded, counts.skipped, counts.failed));
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.read'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.read')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	/**
+	 * Returns the `_index` holding an object and its `_routing`, which have to be looked up if the index is partitioned
+	 * or routed.
+	 */
+	private JsonNode locate(JsonNode config, String index, String type, String id) throws Exception {
+		if (!PartitionHelper.getInstance().isPartitioned(config) && !RoutingHelper.getInstance().isRouted(config))
+			return JSONHelper.getInstance().createObjectNode().put("_index", index);
+		JsonNode location = lookup(index, type, Collections.singleton(id)).get(id);
+		if (location == null)
+			throw new ServiceException(MessageHelper.ERROR_OBJECT_NOT_INDEXED);
+		return location;
+	}
+
+	/**
+	 * Looks up the `_index` and `_routing` of the objects. A failure of Elasticsearch is raised as an error rather than a
+	 * missing object.
+	 */
+	private Map<String, JsonNode> lookup(String index, String type, Collection<String> ids) throws Exception {
+		try {
+			return ElasticHelper.getInstance().locate(index, type, ids);
+		} catch (ServiceException e) {
+			throw elasticFailure(e);
+		}
+	}
+
+	private Exception elasticFailure(ServiceException e) {
+		JSONObject error = e.getObj() != null ? e.getObj().optJSONObject(MessageHelper.CONST_ERROR) : null;
+		return new Exception(error != null ? error.optString(MessageHelper.CONST_REASON, e.getMessage()) : e.getMessage(), e);
+	}
+
+	/**
+	 * Returns a bulk request removing the previous copy of the documents whose partition or routing changed, if the
+	 * index is partitioned or routed.
+	 */
+	private BulkHelper.Request indexRequest(JsonNode config, String index) {
+		BulkHelper.Request request = BulkHelper.getInstance().request();
+		if (PartitionHelper.getInstance().isPartitioned(config) || RoutingHelper.getInstance().isRouted(config))
+			request.removeMoved(index);
+		return request;
+	}
+
+	/**
+	 * Indexes a single mapped object in its partition, with its hash when they're enabled. The previous copy, in another
+	 * partition or with another routing, is removed once the object is indexed.
+	 */
+	private Response write(ObjectNode object, JsonNode config, String index, String type, String id) throws Exception {
+		String target = PartitionHelper.getInstance().getIndex(config, index, object);
+		String routing = RoutingHelper.getInstance().getRouting(config, object);
+		boolean locating = PartitionHelper.getInstance().isPartitioned(config) || RoutingHelper.getInstance().isRouted(config);
+		JsonNode previous = locating ? lookup(index, type, Collections.singleton(id)).get(id) : null;
+		HashHelper hashes = HashHelper.getInstance();
+		String hash = hashes.isEnabled() ? hashes.stamp(object) : null;
+		Response elkResponse = ElasticHelper.getInstance().index(object, target, type, id, routing);
+		if (hash != null) {
+			hashes.remember(hashes.document(target, type, id, routing, hash));
+			// Only indexed, the object is returned without it
+			object.remove(hashes.getField());
+		}
+		if (previous != null) {
+			String previousIndex = previous.path("_index").asText();
+			String previousRouting = previous.path("_routing").asText(null);
+			if (!previousIndex.equals(target) || !Objects.equals(previousRouting, routing)) {
+				ElasticHelper.getInstance().deleteObject(previousIndex, type, id, previousRouting);
+				hashes.forget(previousIndex, type, id);
+			}
+		}
+		return elkResponse;
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'read')")
 	@RequestMapping(
 		value = "get/{config}/{id}",
 		method = RequestMethod.GET,
@@ -400,49 +885,58 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Object not found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.SEARCH)
 	public ResponseEntity<?> getObject(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
 		@ApiParam(value = "Object Id") @PathVariable(value = "id") String objectId,
-		@ApiParam(value = "Hydrate") @RequestParam(value = "hydrate", required = false, defaultValue = "false") boolean hydrate
+		@ApiParam(value = "Hydrate") @RequestParam(value = "hydrate", required = false, defaultValue = "false") boolean hydrate,
+		@ApiParam(value = "Comma-separated source fields to return, instead of the default ones") @RequestParam(value = "fields", required = false) String fields
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_GETOBJECT, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_GETOBJECT);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
 		log.put(MessageHelper.CONST_OBJECTID, objectId);
+		SlowQueryHelper.Request slowQuery = SlowQueryHelper.getInstance().start(MessageHelper.METHOD_GETOBJECT, configName).query(objectId);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
-			String type = JsonPath.read(document, IndexingController.CONST_ELASTIC_TYPE);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
 
 			if (StringUtils.isEmpty(index))
 				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
 			if (StringUtils.isEmpty(type))
 				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
 
-			Response elkResponse = ElasticHelper.getInstance().getObject(index, type, objectId);
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
+			JsonNode location = locate(config, index, type, objectId);
+			Map<String, String> filter = SourceHelper.getInstance().getGetParams(config, fields);
+			Response elkResponse = ElasticHelper.getInstance().getObject(location.path("_index").asText(), type, objectId, location.path("_routing").asText(null), filter);
 
 			if (hydrate) {
-				String database = JsonPath.read(document, IndexingController.CONST_MONGO_DATABASE);
-				String collection = JsonPath.read(document, IndexingController.CONST_MONGO_COLLECTION);
+				String database = document.read(IndexingController.CONST_MONGO_DATABASE, String.class);
+				String collection = document.read(IndexingController.CONST_MONGO_COLLECTION, String.class);
 
 				if (StringUtils.isEmpty(database))
 					throw new ServiceException(MessageHelper.ERROR_NO_DATABASE);
 				if (StringUtils.isEmpty(collection))
 					throw new ServiceException(MessageHelper.ERROR_NO_COLLECTION);
 
-				JSONObject elkObject = new JSONObject(elkResponseStr);
+				ObjectNode elkObject = (ObjectNode) ElasticHelper.getInstance().read(elkResponse);
+				long hydrationStart = System.nanoTime();
 				ElasticHelper.getInstance().hydrate(authorizationHeader, elkObject, database, collection, objectId);
+				slowQuery.hydrationTime(System.nanoTime() - hydrationStart);
 
-				return new ResponseEntity<>(mapper.readTree(elkObject.toString()), HttpStatus.OK);
+				return serialize(elkObject, HttpStatus.OK, slowQuery);
+			} else if (ElasticHelper.getInstance().getFormat().isBinary()) {
+				return serialize(ElasticHelper.getInstance().read(elkResponse), HttpStatus.OK, slowQuery);
 			} else{
-
-				return new ResponseEntity<>(mapper.readTree(elkResponseStr), HttpStatus.OK);
+				// Nothing to change: the Elasticsearch response is returned as is
+				byte[] body = IOUtils.toByteArray(elkResponse.getEntity().getContent());
+				slowQuery.responseSize(body.length);
+				return new ResponseEntity<>(body, HttpStatus.OK);
 			}
 
 		} catch (ServiceException e){
@@ -454,18 +948,13 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_GETOBJECT, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
+		} finally {
+			SlowQueryHelper.getInstance().finish(slowQuery);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.read'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.read')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'read')")
 	@RequestMapping(
 		value = "search/{config}",
 		method = RequestMethod.POST,
@@ -480,6 +969,7 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.SEARCH)
 	public ResponseEntity<?> searchObjects(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
@@ -487,48 +977,57 @@ public class IndexingController {
 		@ApiParam(value = "Hydrate") @RequestParam(value = "hydrate", required = false, defaultValue = "false") boolean hydrate,
 		@ApiParam(value = "From") @RequestParam(value = "from", required = false, defaultValue = "0") int from,
 		@ApiParam(value = "Size") @RequestParam(value = "size", required = false, defaultValue = "100") int size,
-		@ApiParam(value = "Scroll live time (like 1m)") @RequestParam(value = "scroll", required = false, defaultValue = "") String scroll
+		@ApiParam(value = "Scroll live time (like 1m)") @RequestParam(value = "scroll", required = false, defaultValue = "") String scroll,
+		@ApiParam(value = "Highest total worth reporting exactly, like 10000") @RequestParam(value = "track_total_hits", required = false) Integer trackTotalHits,
+		@ApiParam(value = "Report the total number of hits") @RequestParam(value = "count", required = false, defaultValue = "true") boolean count,
+		@ApiParam(value = "Comma-separated source fields to return, instead of the default ones") @RequestParam(value = "fields", required = false) String fields
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_SEARCHOBJECT, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_SEARCHOBJECT);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+		SlowQueryHelper.Request slowQuery = SlowQueryHelper.getInstance().start(MessageHelper.METHOD_SEARCHOBJECT, configName).query(query);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
 
 			if (StringUtils.isEmpty(index))
 				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
 
 			// Build query
-			JSONObject queryObj = QueryBuilder.getInstance().parse(config, query);
+			ObjectNode queryObj = QueryBuilder.getInstance().parse(config, query);
+			slowQuery.elasticQuery(queryObj);
 
 			// Check if we need to append items to the query
-			JSONObject append = null;
-			if (config.has("appendToQuery"))
-				append = config.getJSONObject("appendToQuery");
-
-			Response elkResponse = ElasticHelper.getInstance().searchObjects(index, queryObj, from, size, scroll, append);
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
-			JSONObject elkObject = new JSONObject(elkResponseStr);
-			elkObject.put("query", queryObj);
+			JsonNode append = SourceHelper.getInstance().getSearchBody(config, fields, config.get("appendToQuery"));
+			Map<String, String> filter = SourceHelper.getInstance().getSearchParams(config);
+
+			String indices = PartitionHelper.getInstance().getSearchIndices(config, index, queryObj);
+			String routing = RoutingHelper.getInstance().getSearchRouting(config, queryObj);
+			Response elkResponse = ElasticHelper.getInstance().searchObjects(indices, routing, queryObj, from, size, scroll, append, filter);
+			ObjectNode elkObject = (ObjectNode) ElasticHelper.getInstance().read(elkResponse);
+			slowQuery.elasticTook(elkObject.path("took").asLong(-1));
+			CountHelper.getInstance().limitTotalHits(elkObject, count ? trackTotalHits : Integer.valueOf(0));
+			if (queryObj != null)
+				elkObject.set("query", queryObj);
 
 			if (hydrate) {
-				String database = JsonPath.read(document, IndexingController.CONST_MONGO_DATABASE);
-				String collection = JsonPath.read(document, IndexingController.CONST_MONGO_COLLECTION);
+				String database = document.read(IndexingController.CONST_MONGO_DATABASE, String.class);
+				String collection = document.read(IndexingController.CONST_MONGO_COLLECTION, String.class);
 
 				if (StringUtils.isEmpty(database))
 					throw new ServiceException(MessageHelper.ERROR_NO_DATABASE);
 				if (StringUtils.isEmpty(collection))
 					throw new ServiceException(MessageHelper.ERROR_NO_COLLECTION);
 
-				ElasticHelper.getInstance().hydrate(authorizationHeader, elkObject.getJSONObject("hits").getJSONArray("hits"), database, collection);
+				long hydrationStart = System.nanoTime();
+				ElasticHelper.getInstance().hydrate(authorizationHeader, elkObject.path("hits").path("hits"), database, collection);
+				slowQuery.hydrationTime(System.nanoTime() - hydrationStart);
 			}
 
-			return new ResponseEntity<>(mapper.readTree(elkObject.toString()), HttpStatus.OK);
+			return serialize(elkObject, HttpStatus.OK, slowQuery);
 
 		} catch (ServiceException e){
 		    if(e.getObj() != null
@@ -547,18 +1046,168 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_SEARCHOBJECT, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
+		} finally {
+			SlowQueryHelper.getInstance().finish(slowQuery);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.read'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.read')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
+	@PreAuthorize("@authz.can(#configName, 'read')")
+	@RequestMapping(
+		value = "count/{config}",
+		method = RequestMethod.POST,
+		produces = MediaType.APPLICATION_JSON_VALUE
 	)
+	@ApiOperation(value = "Count objects.", notes = "Counts the indexed objects matching the query.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Returns the count"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.SEARCH)
+	public ResponseEntity<?> countObjects(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiParam(value = "Search query") @RequestParam(value = "query", required = false) String query,
+		@ApiParam(value = "Stop counting past this number, like 10000") @RequestParam(value = "limit", required = false, defaultValue = "0") int limit
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_COUNT, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_COUNT);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+		SlowQueryHelper.Request slowQuery = SlowQueryHelper.getInstance().start(MessageHelper.METHOD_COUNT, configName).query(query);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+
+			// Build query
+			ObjectNode queryObj = QueryBuilder.getInstance().parse(config, query);
+			slowQuery.elasticQuery(queryObj);
+
+			String indices = PartitionHelper.getInstance().getSearchIndices(config, index, queryObj);
+			String routing = RoutingHelper.getInstance().getSearchRouting(config, queryObj);
+			Response elkResponse = ElasticHelper.getInstance().count(indices, routing, queryObj, limit);
+			ObjectNode elkObject = (ObjectNode) ElasticHelper.getInstance().read(elkResponse);
+
+			CountHelper.getInstance().limitCount(elkObject, limit);
+			if (queryObj != null)
+				elkObject.set("query", queryObj);
+
+			return serialize(elkObject, HttpStatus.OK, slowQuery);
+
+		} catch (ServiceException e) {
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_COUNT, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_COUNT, log);
+
+			return handleException(e, log);
+		} finally {
+			SlowQueryHelper.getInstance().finish(slowQuery);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'read')")
+	@RequestMapping(
+		value = "aggregate/{config}",
+		method = RequestMethod.POST,
+		produces = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(value = "Aggregate objects.", notes = "Runs the aggregations declared in the configuration on the indexed objects matching the query.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Returns aggregations"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.SEARCH)
+	public ResponseEntity<?> aggregate(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiParam(value = "Search query") @RequestParam(value = "query", required = false) String query,
+		@ApiParam(value = "Comma-separated names of the aggregations, all of them by default") @RequestParam(value = "names", required = false) String names
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_AGGREGATE, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_AGGREGATE);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+		SlowQueryHelper.Request slowQuery = SlowQueryHelper.getInstance().start(MessageHelper.METHOD_AGGREGATE, configName).query(query);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+
+			ObjectNode aggregations;
+			try {
+				List<String> requested = StringUtils.isEmpty(names) ? null : Arrays.asList(names.split("\\s*,\\s*"));
+				aggregations = AggregationHelper.getInstance().getAggregations(config, requested);
+			} catch (IllegalArgumentException e) {
+				log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+				LoggerHelper.log(MessageHelper.METHOD_AGGREGATE, log);
+
+				return ErrorHandler.getInstance().handle(HttpStatus.BAD_REQUEST, log);
+			}
+
+			// Build query
+			ObjectNode queryObj = QueryBuilder.getInstance().parse(config, query);
+			slowQuery.elasticQuery(queryObj);
+
+			String indices = PartitionHelper.getInstance().getSearchIndices(config, index, queryObj);
+			String routing = RoutingHelper.getInstance().getSearchRouting(config, queryObj);
+
+			// The same aggregations of the same query are served from the cache for a short time
+			String key = String.join("\n", configName, indices, String.valueOf(routing), String.valueOf(queryObj), aggregations.toString());
+			JsonNode elkObject = AggregationHelper.getInstance().get(key, () -> {
+				Response elkResponse = ElasticHelper.getInstance().aggregate(indices, routing, queryObj, aggregations);
+				try {
+					return ElasticHelper.getInstance().read(elkResponse);
+				} catch (IOException e) {
+					throw new ServiceException(e);
+				}
+			});
+			slowQuery.elasticTook(elkObject.path("took").asLong(-1));
+
+			// The cached result is shared, only its fields are copied
+			ObjectNode result = JSONHelper.getInstance().createObjectNode();
+			result.setAll((ObjectNode) elkObject);
+			if (queryObj != null)
+				result.set("query", queryObj);
+
+			return serialize(result, HttpStatus.OK, slowQuery);
+
+		} catch (ServiceException e) {
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_AGGREGATE, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_AGGREGATE, log);
+
+			return handleException(e, log);
+		} finally {
+			SlowQueryHelper.getInstance().finish(slowQuery);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'read')")
 	@RequestMapping(
 		value = "search/scroll/{config}",
 		method = RequestMethod.POST,
@@ -574,6 +1223,7 @@ public class IndexingController {
 			@ApiResponse(code = 422, message = "Parameter(s) missing or invalid")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.SEARCH)
 	public ResponseEntity<?> scrollSearch(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
@@ -581,36 +1231,38 @@ public class IndexingController {
 		@ApiParam(value = "Scroll identifier") @RequestParam(value = "scrollId", required = true, defaultValue = "") String scrollId,
 		@ApiParam(value = "Hydrate") @RequestParam(value = "hydrate", required = false, defaultValue = "false") boolean hydrate
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_SCROLL, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_SCROLL);
+		SlowQueryHelper.Request slowQuery = SlowQueryHelper.getInstance().start(MessageHelper.METHOD_SCROLL, configName);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
 
 			Response elkResponse = null;
 			try{
-				elkResponse = ElasticHelper.getInstance().scrollSearch(scrollId, scroll);
+				elkResponse = ElasticHelper.getInstance().scrollSearch(scrollId, scroll, SourceHelper.getInstance().getSearchParams(config));
 			}catch(ServiceException e){
 			    return handleScrollServiceException(e, scrollId, log);
 			}
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
-			JSONObject elkObject = new JSONObject(elkResponseStr);
+			ObjectNode elkObject = (ObjectNode) ElasticHelper.getInstance().read(elkResponse);
+			slowQuery.elasticTook(elkObject.path("took").asLong(-1));
 
 			if (hydrate) {
-				String database = JsonPath.read(document, IndexingController.CONST_MONGO_DATABASE);
-				String collection = JsonPath.read(document, IndexingController.CONST_MONGO_COLLECTION);
+				String database = document.read(IndexingController.CONST_MONGO_DATABASE, String.class);
+				String collection = document.read(IndexingController.CONST_MONGO_COLLECTION, String.class);
 
 				if (StringUtils.isEmpty(database))
 					throw new ServiceException(MessageHelper.ERROR_NO_DATABASE);
 				if (StringUtils.isEmpty(collection))
 					throw new ServiceException(MessageHelper.ERROR_NO_COLLECTION);
 
-				ElasticHelper.getInstance().hydrate(authorizationHeader, elkObject.getJSONObject("hits").getJSONArray("hits"), database, collection);
+				long hydrationStart = System.nanoTime();
+				ElasticHelper.getInstance().hydrate(authorizationHeader, elkObject.path("hits").path("hits"), database, collection);
+				slowQuery.hydrationTime(System.nanoTime() - hydrationStart);
 			}
 
-			return new ResponseEntity<>(mapper.readTree(elkObject.toString()), HttpStatus.OK);
+			return serialize(elkObject, HttpStatus.OK, slowQuery);
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
 			LoggerHelper.log(MessageHelper.METHOD_SCROLL, log);
@@ -620,7 +1272,9 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_SCROLL, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
+		} finally {
+			SlowQueryHelper.getInstance().finish(slowQuery);
 		}
 	}
 
@@ -642,7 +1296,6 @@ public class IndexingController {
 	public ResponseEntity<?> deleteScrollIndex(
 		@ApiParam(value = "Scroll identifier") @RequestParam(value = "scrollId", required = true, defaultValue = "") String scrollId
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_SCROLL, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_SCROLL);
 
@@ -653,26 +1306,16 @@ public class IndexingController {
 			}catch(ServiceException e){
 				return handleScrollServiceException(e, scrollId, log);
 			}
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
-			JSONObject elkObject = new JSONObject(elkResponseStr);
-
-			return new ResponseEntity<>(mapper.readTree(elkObject.toString()), HttpStatus.OK);
+			return new ResponseEntity<>(ElasticHelper.getInstance().read(elkResponse), HttpStatus.OK);
 		} catch (Exception e) {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_SCROLL, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.create')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'create')")
 	@RequestMapping(
 		value = "mapping/{config}",
 		method = RequestMethod.POST,
@@ -687,22 +1330,22 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
 	public ResponseEntity<?> defineMapping(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@RequestBody String payload,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_DEFINEMAPPING, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_DEFINEMAPPING);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
-			String type = JsonPath.read(document, IndexingController.CONST_ELASTIC_TYPE);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
 
 			if (StringUtils.isEmpty(index))
 				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
@@ -711,7 +1354,7 @@ public class IndexingController {
 
 			Response elkResponse = null;
 			try{
-				elkResponse = ElasticHelper.getInstance().defineMapping(index, type, new JSONObject(payload));
+				elkResponse = ElasticHelper.getInstance().defineMapping(index, type, JSONHelper.getInstance().getMapper().readTree(payload));
 			}catch(ServiceException e){
 				if (e.getObj().getJSONObject(MessageHelper.CONST_ERROR).get(MessageHelper.CONST_TYPE).equals("index_not_found_exception")) {
 					throw new ServiceException(MessageHelper.ERROR_INDEX_DOESNT_EXIST);
@@ -719,9 +1362,7 @@ public class IndexingController {
 					throw new Exception(e.getObj().getJSONObject(MessageHelper.CONST_ERROR).get(MessageHelper.CONST_REASON).toString());
 				}
 			}
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
-
-			return new ResponseEntity<>(mapper.readTree(elkResponseStr), HttpStatus.CREATED);
+			return new ResponseEntity<>(ElasticHelper.getInstance().read(elkResponse), HttpStatus.CREATED);
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
 			LoggerHelper.log(MessageHelper.METHOD_DEFINEMAPPING, log);
@@ -731,18 +1372,11 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_DEFINEMAPPING, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.create')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'create')")
 	@RequestMapping(
 		value = "index/{config}",
 		method = RequestMethod.PUT,
@@ -758,20 +1392,20 @@ public class IndexingController {
 			@ApiResponse(code = 409, message = "Index has already been created")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
 	public ResponseEntity<?> createIndex(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_CREATEINDEX, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_CREATEINDEX);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
 
 			if (StringUtils.isEmpty(index))
 				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
@@ -788,9 +1422,7 @@ public class IndexingController {
 					throw new Exception(e.getObj().getJSONObject(MessageHelper.CONST_ERROR).get(MessageHelper.CONST_REASON).toString());
 				}
 			}
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
-
-			return new ResponseEntity<>(mapper.readTree(elkResponseStr), HttpStatus.OK);
+			return new ResponseEntity<>(ElasticHelper.getInstance().read(elkResponse), HttpStatus.OK);
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
 			LoggerHelper.log(MessageHelper.METHOD_CREATEINDEX, log);
@@ -800,17 +1432,11 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_CREATEINDEX, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.delete'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.delete')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'delete')")
 	@RequestMapping(
 		value = "index/{config}",
 		method = RequestMethod.DELETE,
@@ -825,27 +1451,37 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
 	public ResponseEntity<?> delete(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_DELETEINDEX, null);
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_DELETEINDEX);
 		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
 
 		try {
-			JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
 
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
-			String index = JsonPath.read(document, IndexingController.CONST_ELASTIC_INDEX);
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
 			log.put("index",index);
 			if (StringUtils.isEmpty(index))
 				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
 
+			// Only the partitions in the alias are deleted, the alias goes with them
+			String indices = index;
+			if (PartitionHelper.getInstance().isPartitioned(config)) {
+				List<String> partitions = PartitionHelper.getInstance().getPartitionIndices(index);
+				if (partitions.isEmpty())
+					throw new ServiceException(MessageHelper.ERROR_INDEX_DOESNT_EXIST);
+				indices = String.join(",", partitions);
+			}
+
 			Response elkResponse = null;
 			try {
-				elkResponse = ElasticHelper.getInstance().deleteIndex(index);
+				elkResponse = ElasticHelper.getInstance().deleteIndex(indices);
+				HashHelper.getInstance().forgetAll();
 			}catch (ServiceException e){
 				if (e.getObj().getJSONObject(MessageHelper.CONST_ERROR).get(MessageHelper.CONST_TYPE).equals("index_not_found_exception")) {
 					throw new ServiceException(MessageHelper.ERROR_INDEX_DOESNT_EXIST);
@@ -853,9 +1489,7 @@ public class IndexingController {
 					throw new Exception(e.getObj().getJSONObject(MessageHelper.CONST_ERROR).get(MessageHelper.CONST_REASON).toString());
 				}
 			}
-			String elkResponseStr = IOUtils.toString(elkResponse.getEntity().getContent(), Charsets.UTF_8);
-
-			return new ResponseEntity<>(mapper.readTree(elkResponseStr), HttpStatus.OK);
+			return new ResponseEntity<>(ElasticHelper.getInstance().read(elkResponse), HttpStatus.OK);
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
 			LoggerHelper.log(MessageHelper.METHOD_DELETEINDEX, log);
@@ -865,20 +1499,362 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_DELETEINDEX, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'delete')")
+	@RequestMapping(
+		value = "index/{config}/{id}",
+		method = RequestMethod.DELETE,
+		produces = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(value = "Delete an indexed object.", notes = "Delete an indexed object.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Object deleted"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Object not found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
+	public ResponseEntity<?> deleteObject(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiParam(value = "Object Id") @PathVariable(value = "id") String objectId
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_DELETEOBJECT, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_DELETEOBJECT);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+		log.put(MessageHelper.CONST_OBJECTID, objectId);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+			if (StringUtils.isEmpty(type))
+				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
+
+			Response elkResponse = null;
+			try {
+				JsonNode location = locate(config, index, type, objectId);
+				String target = location.path("_index").asText();
+				elkResponse = ElasticHelper.getInstance().deleteObject(target, type, objectId, location.path("_routing").asText(null));
+				HashHelper.getInstance().forget(target, type, objectId);
+			} catch (ServiceException e) {
+				// A missing document is answered with its result, a missing index with an error
+				if (e.getObj() != null && "not_found".equals(e.getObj().optString("result"))) {
+					throw new ServiceException(MessageHelper.ERROR_OBJECT_NOT_INDEXED);
+				} else if (e.getObj() != null && e.getObj().has(MessageHelper.CONST_ERROR)
+					&& "index_not_found_exception".equals(e.getObj().getJSONObject(MessageHelper.CONST_ERROR).opt(MessageHelper.CONST_TYPE))) {
+					throw new ServiceException(MessageHelper.ERROR_INDEX_DOESNT_EXIST);
+				}
+				throw elasticFailure(e);
+			}
+
+			return new ResponseEntity<>(ElasticHelper.getInstance().read(elkResponse), HttpStatus.OK);
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_DELETEOBJECT, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_DELETEOBJECT, log);
+
+			return handleException(e, log);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.update'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.create')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.update')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
+	@PreAuthorize("@authz.can(#configName, 'delete')")
+	@RequestMapping(
+		value = "index/bulk/{config}",
+		method = RequestMethod.DELETE,
+		produces = BulkHelper.CONTENT_TYPE_NDJSON,
+		consumes = { BulkHelper.CONTENT_TYPE_NDJSON, MediaType.TEXT_PLAIN_VALUE }
 	)
+	@ApiOperation(value = "Delete a stream of indexed objects.", notes = "Reads the object ids one per line (plain or NDJSON), deletes them with bulk requests and streams the result of each id back as NDJSON, followed by a summary line.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Results of the deletions"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not Found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.INDEX)
+	public ResponseEntity<?> deleteBulkObjects(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiIgnore HttpServletRequest request,
+		@ApiIgnore HttpServletResponse response
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_DELETEBULKOBJECTS, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_DELETEBULKOBJECTS);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+			String type = document.read(IndexingController.CONST_ELASTIC_TYPE, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+			if (StringUtils.isEmpty(type))
+				throw new ServiceException(MessageHelper.ERROR_NO_TYPE);
+
+			// From here the results are written as they come, the errors are reported in the stream
+			response.setStatus(HttpStatus.OK.value());
+			response.setContentType(BulkHelper.CONTENT_TYPE_NDJSON);
+			OutputStream output = response.getOutputStream();
+			// The partition and routing of the documents have to be looked up
+			boolean locating = PartitionHelper.getInstance().isPartitioned(config) || RoutingHelper.getInstance().isRouted(config);
+			streamIds(request.getInputStream(), output, false, "deleted", (ids, counts) -> {
+				BulkHelper bulk = BulkHelper.getInstance();
+				BulkHelper.Request bulkRequest = bulk.request();
+				Map<String, JsonNode> located;
+				try {
+					located = locating ? ElasticHelper.getInstance().locate(index, type, ids) : null;
+				} catch (Exception e) {
+					failChunk(ids, e, output, counts);
+					return;
+				}
+				for (String id : bulkRequest.delete(index, type, ids, located)) {
+					bulk.writeLine(output, bulk.result(id, HttpStatus.NOT_FOUND.value(), MessageHelper.ERROR_OBJECT_NOT_INDEXED));
+					counts.failed++;
+				}
+				if (bulkRequest.size() > 0)
+					executeChunk(bulkRequest, output, counts);
+			});
+			return null;
+
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_DELETEBULKOBJECTS, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_DELETEBULKOBJECTS, log);
+
+			return handleException(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'delete')")
+	@RequestMapping(
+		value = "index/query/{config}",
+		method = RequestMethod.DELETE,
+		produces = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(value = "Delete the objects matching a query.", notes = "Starts a throttled delete by query in Elasticsearch and returns the task to follow with the task route.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 202, message = "Deletion started"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not Found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
+	public ResponseEntity<?> deleteByQuery(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiParam(value = "Search query") @RequestParam(value = "query", required = true) String query
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_DELETEBYQUERY, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_DELETEBYQUERY);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+		log.put("query", query);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+
+			// An empty query would delete everything
+			ObjectNode queryObj = QueryBuilder.getInstance().parse(config, query);
+			if (QueryBuilder.getInstance().isEmpty(queryObj)) {
+				log.put(MessageHelper.CONST_MESSAGE, MessageHelper.ERROR_NO_QUERY);
+				LoggerHelper.log(MessageHelper.METHOD_DELETEBYQUERY, log);
+
+				return ErrorHandler.getInstance().handle(HttpStatus.BAD_REQUEST, log);
+			}
+
+			Response elkResponse = ElasticHelper.getInstance().deleteByQuery(index, RoutingHelper.getInstance().getSearchRouting(config, queryObj), queryObj, deleteRequestsPerSecond);
+			HashHelper.getInstance().forgetAll();
+			ObjectNode elkObject = (ObjectNode) ElasticHelper.getInstance().read(elkResponse);
+			elkObject.set("query", queryObj);
+
+			return new ResponseEntity<>(elkObject, HttpStatus.ACCEPTED);
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_DELETEBYQUERY, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_DELETEBYQUERY, log);
+
+			return handleException(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'create')")
+	@RequestMapping(
+		value = "reindex/{config}",
+		method = RequestMethod.POST,
+		produces = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(value = "Reindex the objects within Elasticsearch.", notes = "Copies the indexed objects to another index with the Elasticsearch reindex API, without going through the Object Microservice, for the changes of mapping or analyzers. The mapping of the configuration can be applied on the way with a painless script. Returns the task to follow with the task route.")
+	@ApiResponses(value = {
+			@ApiResponse(code = 202, message = "Reindex started"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Not Found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
+	public ResponseEntity<?> reindex(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiParam(value = "Destination index") @RequestParam(value = "dest", required = true) String dest,
+		@ApiParam(value = "Number of slices processed in parallel") @RequestParam(value = "slices", required = false, defaultValue = "1") int slices,
+		@ApiParam(value = "Apply the mapping of the configuration") @RequestParam(value = "mapping", required = false, defaultValue = "false") boolean applyMapping
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_REINDEX, null);
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_REINDEX);
+		log.put(MessageHelper.CONST_OBJECTTYPE, configName);
+		log.put("dest", dest);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+
+			ObjectNode request;
+			try {
+				if (slices < 1)
+					throw new IllegalArgumentException("The number of slices must be positive.");
+				request = ReindexHelper.getInstance().request(config, index, dest, applyMapping);
+			} catch (IllegalArgumentException e) {
+				log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+				LoggerHelper.log(MessageHelper.METHOD_REINDEX, log);
+
+				return ErrorHandler.getInstance().handle(HttpStatus.BAD_REQUEST, log);
+			}
+
+			Response elkResponse = ElasticHelper.getInstance().reindex(request, slices);
+			HashHelper.getInstance().forgetAll();
+			ObjectNode elkObject = (ObjectNode) ElasticHelper.getInstance().read(elkResponse);
+			elkObject.put("source", index);
+			elkObject.put("dest", dest);
+			elkObject.put("mapping", request.has("script"));
+
+			return new ResponseEntity<>(elkObject, HttpStatus.ACCEPTED);
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_REINDEX, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_REINDEX, log);
+
+			return handleException(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'delete', 'create')")
+	@RequestMapping(
+		value = "task/{config}/{task:.+}",
+		method = RequestMethod.GET,
+		produces = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(value = "Get the status of a task.", notes = "Get the status of a task started on the configuration (delete by query, reindex).")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Returns the task"),
+			@ApiResponse(code = 400, message = "Route parameters or json payload contain invalid data"),
+			@ApiResponse(code = 401, message = "HTTP header lacks valid OAuth2 token"),
+			@ApiResponse(code = 403, message = "HTTP header has valid OAuth2 token but lacks the appropriate scope to use this route"),
+			@ApiResponse(code = 404, message = "Task not found")
+	})
+	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
+	public ResponseEntity<?> getTask(
+		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+		@ApiParam(value = "Config Name") @PathVariable(value = "config") String configName,
+		@ApiParam(value = "Task identifier") @PathVariable(value = "task") String taskId
+	) {
+		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_GETTASK, configName);
+		log.put("task", taskId);
+
+		try {
+			ObjectNode config = ConfigurationHelper.getInstance().getConfiguration(configName, authorizationHeader);
+
+			DocumentContext document = JSONHelper.getInstance().parse(config);
+			String index = document.read(IndexingController.CONST_ELASTIC_INDEX, String.class);
+
+			if (StringUtils.isEmpty(index))
+				throw new ServiceException(MessageHelper.ERROR_NO_INDEX);
+
+			Response elkResponse = null;
+			try {
+				elkResponse = ElasticHelper.getInstance().getTask(taskId);
+			} catch (ServiceException e) {
+				if (TaskHelper.getInstance().isNotFound(e))
+					throw new ServiceException(MessageHelper.ERROR_TASK_DOESNT_EXIST);
+				throw new Exception(e.getMessage(), e);
+			}
+
+			// The tasks of the other configurations are hidden
+			ObjectNode task = (ObjectNode) ElasticHelper.getInstance().read(elkResponse);
+			if (!TaskHelper.getInstance().belongsTo(task, index))
+				throw new ServiceException(MessageHelper.ERROR_TASK_DOESNT_EXIST);
+
+			// Share of the documents processed so far, the sliced tasks report the sum of their slices
+			JsonNode status = task.path("task").path("status");
+			long total = status.path("total").asLong();
+			if (task.path("completed").asBoolean())
+				task.put("progress", 1.0);
+			else if (total > 0) {
+				long processed = status.path("created").asLong() + status.path("updated").asLong() + status.path("deleted").asLong()
+					+ status.path("noops").asLong() + status.path("version_conflicts").asLong();
+				task.put("progress", Math.min(1.0, (double) processed / total));
+			}
+
+			return new ResponseEntity<>(task, HttpStatus.OK);
+		} catch (ServiceException e){
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			LoggerHelper.log(MessageHelper.METHOD_GETTASK, log);
+
+			return ErrorHandler.getInstance().handle(HttpStatus.NOT_FOUND, log);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.log(MessageHelper.METHOD_GETTASK, log);
+
+			return handleException(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.can(#configName, 'create', 'update')")
 	@RequestMapping(
 		value = "config/{config}",
 		method = RequestMethod.PUT,
@@ -894,6 +1870,7 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
 	public ResponseEntity<?> upsertConfigWithPut(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@RequestBody(required = true) String payload,
@@ -902,16 +1879,7 @@ public class IndexingController {
 		return upsertConfig(authorizationHeader, payload, configName);
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.update'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.create')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.update')" 
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'create', 'update')")
 	@RequestMapping(
 		value = "config/{config}",
 		method = RequestMethod.POST,
@@ -930,12 +1898,12 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
 	public ResponseEntity<?> upsertConfig(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@RequestBody(required = true) String payload,
 		@ApiParam(value = "Configuration name") @PathVariable(value = "config") String configName
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		HttpStatus returnStatus = HttpStatus.OK;
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_UPSERTCONFIG, configName);
 
@@ -954,11 +1922,11 @@ public class IndexingController {
 				returnStatus = HttpStatus.CREATED;
 			}
 
-			JSONObject json = new JSONObject();
+			ObjectNode json = JSONHelper.getInstance().createObjectNode();
 			json.put(MessageHelper.CONST_SUCCESS, true);
 			json.put(MessageHelper.CONST_CONFIG, configName);
 
-			return new ResponseEntity<>(mapper.readTree(json.toString()), returnStatus);
+			return new ResponseEntity<>(json, returnStatus);
 
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
@@ -969,18 +1937,11 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_UPSERTCONFIG, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #configName.startsWith('public-')"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.read'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.read')"
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'read')")
 	@RequestMapping(
 		value = "config/{config}",
 		method = RequestMethod.GET,
@@ -995,11 +1956,11 @@ public class IndexingController {
             @ApiResponse(code = 404, message = "Configuration found in collection")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
 	public ResponseEntity<?> getConfig(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Configuration name") @PathVariable(value = "config") String configName
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_GETCONFIG, configName);
 
 		try {
@@ -1007,7 +1968,7 @@ public class IndexingController {
 			if (!helper.exists(configName))
 				throw new ServiceException(MessageHelper.ERROR_CONFIG_DOESNT_EXIST);
 
-			return new ResponseEntity<>(mapper.readTree(helper.getObject(configName).toString()), HttpStatus.OK);
+			return new ResponseEntity<>(JSONHelper.getInstance().toJsonNode(helper.getObject(configName)), HttpStatus.OK);
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
 			LoggerHelper.log(MessageHelper.METHOD_GETCONFIG, log);
@@ -1017,18 +1978,12 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_GETCONFIG, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.delete'))"
-		+ " or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.indexing.*.delete')"
-		+ " or #oauth2.hasScope('fdns.indexing.*.*')"
-	)
+	@PreAuthorize("@authz.can(#configName, 'delete')")
 	@RequestMapping(
 		value = "config/{config}",
 		method = RequestMethod.DELETE,
@@ -1043,11 +1998,11 @@ public class IndexingController {
 			@ApiResponse(code = 404, message = "Not found")
 	})
 	@ResponseBody
+	@AdmissionClass(AdmissionClass.ADMIN)
 	public ResponseEntity<?> deleteConfig(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
 		@ApiParam(value = "Configuration name") @PathVariable(value = "config") String configName
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = MessageHelper.initializeLog(MessageHelper.METHOD_DELETECONFIG, configName);
 
 		try {
@@ -1057,7 +2012,7 @@ public class IndexingController {
 
 			helper.deleteObject(configName);
 
-			return new ResponseEntity<>(mapper.readTree("{ \"success\" : true }"), HttpStatus.OK);
+			return new ResponseEntity<>(JSONHelper.getInstance().createObjectNode().put(MessageHelper.CONST_SUCCESS, true), HttpStatus.OK);
 		} catch (ServiceException e){
 			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
 			LoggerHelper.log(MessageHelper.METHOD_DELETECONFIG, log);
@@ -1067,11 +2022,21 @@ public class IndexingController {
 			logger.error(e);
 			LoggerHelper.log(MessageHelper.METHOD_DELETECONFIG, log);
 
-			return ErrorHandler.getInstance().handle(e, log);
+			return handleException(e, log);
 		}
 
 	}
 
+	private ResponseEntity<?> handleException(Exception e, Map<String, Object> log) {
+		if (e instanceof CircuitBreakerOpenException) {
+			log.put(MessageHelper.CONST_MESSAGE, e.getMessage());
+			ResponseEntity<?> response = ErrorHandler.getInstance().handle(HttpStatus.SERVICE_UNAVAILABLE, log);
+			long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(((CircuitBreakerOpenException) e).getRetryAfter() + 999));
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter)).body(response.getBody());
+		}
+		return ErrorHandler.getInstance().handle(e, log);
+	}
+
 	private ResponseEntity<?> handleScrollServiceException(ServiceException se, String scrollId, Map<String, Object> log){
 		if(se.getObj().has(MessageHelper.CONST_ERROR) && !se.getObj().isNull(MessageHelper.CONST_ERROR)) {
 			String errorType = se.getObj().getJSONObject(MessageHelper.CONST_ERROR).get(MessageHelper.CONST_TYPE).toString();
@@ -1086,7 +2051,7 @@ public class IndexingController {
 				logger.error(e);
 				LoggerHelper.log(MessageHelper.METHOD_SCROLL, log);
 
-				return ErrorHandler.getInstance().handle(e, log);
+				return handleException(e, log);
 			}
 		} else {
 			//if the exception thrown doesn't include error details, it means a valid scroll id was provided, but that scroll id wasn't found
@@ -1098,19 +2063,38 @@ public class IndexingController {
 		}
 	}
 
-	private void prepareObject(JSONObject object, JSONObject config) throws ServiceException {
-		JSONObject mapping = config.getJSONObject("mapping");
+	private ResponseEntity<?> serialize(JsonNode body, HttpStatus status, SlowQueryHelper.Request slowQuery) throws IOException {
+		return Tracer.getInstance().trace("serialize", () -> {
+			// Written once here, so the size of the response is known without another pass
+			byte[] bytes = JSONHelper.getInstance().getMapper().writeValueAsBytes(body);
+			slowQuery.responseSize(bytes.length);
+			return new ResponseEntity<>(bytes, status);
+		});
+	}
+
+	/**
+	 * Applies the mapping of a configuration to an object before it's indexed.
+	 */
+	public void prepareObject(ObjectNode object, JsonNode config) throws ServiceException {
+		MetricsHelper.getInstance().time(MetricsHelper.METRIC_PREPARE_OBJECT, "prepare", () -> {
+			applyMapping(object, config);
+			return null;
+		});
+	}
+
+	private void applyMapping(ObjectNode object, JsonNode config) throws ServiceException {
+		JsonNode mapping = config.get("mapping");
 		if (mapping != null) {
 
 			// Create new items
-			JSONObject elementsToSet = mapping.getJSONObject("$set");
+			JsonNode elementsToSet = mapping.get("$set");
 			if (elementsToSet != null) {
 				setElements(object, elementsToSet);
 			} else
 				logger.debug("The $set configuration has not been provided.");
 
 			// Delete unnecessary items
-			JSONArray keysToDelete = mapping.getJSONArray("$unset");
+			JsonNode keysToDelete = mapping.get("$unset");
 			if (keysToDelete != null) {
 				unsetElements(object, keysToDelete);
 			} else
@@ -1119,35 +2103,35 @@ public class IndexingController {
 			logger.debug("The mapping configuration has not been provided.");
 	}
 
-	private void unsetElements(JSONObject object, JSONArray keysToDelete) {
-		for (int i = 0; i < keysToDelete.length(); i++) {
-			String key = keysToDelete.getString(i);
-			unsetElement(object, key);
+	private void unsetElements(ObjectNode object, JsonNode keysToDelete) {
+		for (JsonNode key : keysToDelete) {
+			unsetElement(object, key.asText());
 		}
 	}
 
-	private void unsetElement(JSONObject object, String key) {
+	private void unsetElement(ObjectNode object, String key) {
 		if (key.contains(".")) {
 			String parentKey = key.split("\\.")[0];
 			String path = key.substring(parentKey.length() + 1);
-			if (object.has(parentKey))
-				unsetElement(object.getJSONObject(parentKey), path);
+			if (object.get(parentKey) instanceof ObjectNode)
+				unsetElement((ObjectNode) object.get(parentKey), path);
 		} else {
-			if (object.has(key))
-				object.remove(key);
+			object.remove(key);
 		}
 	}
 
-	private void setElements(JSONObject object, JSONObject elementsToSet) throws ServiceException {
-		for (Object key : elementsToSet.keySet()) {
-			setElement(object, key.toString(), elementsToSet.getJSONObject(key.toString()));
+	private void setElements(ObjectNode object, JsonNode elementsToSet) throws ServiceException {
+		Iterator<Map.Entry<String, JsonNode>> elements = elementsToSet.fields();
+		while (elements.hasNext()) {
+			Map.Entry<String, JsonNode> element = elements.next();
+			setElement(object, element.getKey(), element.getValue());
 		}
 	}
 
-	private void setElement(JSONObject object, String key, JSONObject config) throws ServiceException {
-		String separator = config.has("separator") ? config.getString("separator") : "";
+	private void setElement(ObjectNode object, String key, JsonNode config) throws ServiceException {
+		String separator = config.has("separator") ? JSONHelper.getInstance().getString(config, "separator") : "";
 
-		JSONObject objectToPopulate = object;
+		ObjectNode objectToPopulate = object;
 		String fieldName = key;
 		if (key.contains(".")) {
 			fieldName = key.substring(key.lastIndexOf('.') + 1);
@@ -1156,26 +2140,30 @@ public class IndexingController {
 		}
 
 		// Create the field value
-		String fieldValue = createFieldValue(object, config.getJSONArray("fields"), separator);
+		String fieldValue = createFieldValue(object, config.path("fields"), separator);
 
 		// Transform the value
-		Object newValue = fieldValue;
+		JsonNode newValue = JSONHelper.getInstance().getMapper().getNodeFactory().textNode(fieldValue);
 		if (config.has("transform")) {
-			newValue = QueryBuilder.getInstance().transform(config.getJSONObject("transform"), fieldValue);
+			newValue = QueryBuilder.getInstance().transform(config.get("transform"), fieldValue);
 		}
 
 		// Save the value
-		objectToPopulate.put(fieldName, newValue);
+		if (newValue != null)
+			objectToPopulate.set(fieldName, newValue);
+		else
+			objectToPopulate.remove(fieldName);
 	}
 
-	private String createFieldValue(JSONObject object, JSONArray fields, String separator) {
+	private String createFieldValue(ObjectNode object, JsonNode fields, String separator) {
 		StringBuilder sb = new StringBuilder();
-		Object document = Configuration.defaultConfiguration().jsonProvider().parse(object.toString());
+		// The object is queried in place, the Jackson provider doesn't copy it
+		DocumentContext document = JSONHelper.getInstance().parse(object);
 
-		for (int i = 0; i < fields.length(); i++) {
-			String jsonPath = fields.getString(i);
+		for (JsonNode field : fields) {
+			String jsonPath = field.asText();
 			try {
-				Object valueObj = JsonPath.read(document, jsonPath);
+				Object valueObj = document.read(jsonPath);
 				appendValue(sb, valueObj, separator);
 			} catch (PathNotFoundException e) {
 				// Do nothing
@@ -1187,14 +2175,44 @@ public class IndexingController {
 	}
 
 	private void appendValue(StringBuilder sb, Object value, String separator) {
-		if (value instanceof net.minidev.json.JSONArray) {
-			net.minidev.json.JSONArray array = (net.minidev.json.JSONArray) value;
-			for (int i = 0; i < array.size(); i++)
-				appendValue(sb, array.get(i), separator);
+		if (value instanceof ArrayNode) {
+			for (JsonNode item : (ArrayNode) value)
+				appendValue(sb, item, separator);
+		} else if (value instanceof JsonNode && ((JsonNode) value).isTextual()) {
+			appendValue(sb, ((JsonNode) value).textValue(), separator);
 		} else if (value instanceof String && !StringUtils.isEmpty(value)) {
 			sb.append(value);
 			sb.append(separator);
 		}
 	}
 
+	@FunctionalInterface
+	private interface ChunkHandler {
+
+		/**
+		 * Processes a chunk of ids, writes the result of each one and counts them, failures included.
+		 */
+		void process(Set<String> ids, Counts counts) throws Exception;
+
+	}
+
+	private static class Counts {
+
+		private int succeeded;
+		private int skipped;
+		private int failed;
+
+		private void add(List<ObjectNode> results) {
+			for (ObjectNode result : results) {
+				if (result.has("error"))
+					failed++;
+				else if (BulkHelper.RESULT_NOOP.equals(result.path("result").asText()))
+					skipped++;
+				else
+					succeeded++;
+			}
+		}
+
+	}
+
 }
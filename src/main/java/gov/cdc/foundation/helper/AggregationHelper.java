@@ -0,0 +1,116 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Selects the aggregations declared in the configurations and caches their results for a short time.
+ */
+@Component
+public class AggregationHelper {
+
+	// Aggregations cheap enough to be served to the facet panels
+	private static final List<String> SUPPORTED_TYPES = Arrays.asList("terms", "date_histogram", "cardinality");
+
+	private static AggregationHelper instance;
+
+	private final long ttl;
+
+	private final ExpiringCache<String, Entry> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public AggregationHelper(
+		MeterRegistry registry,
+		@Value("${indexing.aggregations.cache.ttl}") long ttl,
+		@Value("${indexing.aggregations.cache.size}") int maxSize
+	) {
+		this.ttl = ttl;
+		this.entries = new ExpiringCache<>(maxSize, System::currentTimeMillis);
+		instance = this;
+
+		Gauge.builder("indexing.aggregations.cache.size", entries, ExpiringCache::size).register(registry);
+		FunctionCounter.builder("indexing.aggregations.cache.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+		FunctionCounter.builder("indexing.aggregations.cache.requests", misses, AtomicLong::get).tag("result", "miss").register(registry);
+	}
+
+	public static AggregationHelper getInstance() {
+		if (instance == null)
+			instance = new AggregationHelper(Metrics.globalRegistry, 0, 1);
+		return instance;
+	}
+
+	/**
+	 * Returns the requested aggregations of the configuration, or all of them if none is requested.
+	 */
+	public ObjectNode getAggregations(JsonNode config, Collection<String> names) {
+		JsonNode declared = config.path("aggregations");
+		ObjectNode aggregations = JSONHelper.getInstance().createObjectNode();
+		Iterator<String> it = names == null || names.isEmpty() ? declared.fieldNames() : names.iterator();
+		while (it.hasNext()) {
+			String name = it.next();
+			JsonNode aggregation = declared.get(name);
+			if (aggregation == null || !aggregation.isObject())
+				throw new IllegalArgumentException(String.format("The aggregation '%s' isn't declared in the configuration.", name));
+			Iterator<String> types = aggregation.fieldNames();
+			while (types.hasNext()) {
+				String type = types.next();
+				if (!SUPPORTED_TYPES.contains(type) && !"aggs".equals(type) && !"aggregations".equals(type))
+					throw new IllegalArgumentException(String.format("The aggregation type '%s' isn't supported.", type));
+			}
+			aggregations.set(name, aggregation);
+		}
+		if (aggregations.size() == 0)
+			throw new IllegalArgumentException("No aggregation is declared in the configuration.");
+		return aggregations;
+	}
+
+	/**
+	 * Returns the cached result of an aggregation request, or runs it. The result is shared and must not be modified.
+	 */
+	public <E extends Exception> JsonNode get(String key, Operation<JsonNode, E> operation) throws E {
+		if (ttl > 0) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				hits.incrementAndGet();
+				return entry.result;
+			}
+			misses.incrementAndGet();
+		}
+
+		JsonNode result = operation.execute();
+		if (ttl > 0)
+			entries.put(key, new Entry(result, System.currentTimeMillis() + ttl));
+		return result;
+	}
+
+	private static final class Entry implements ExpiringCache.Expiring {
+		final JsonNode result;
+		final long expiresAt;
+
+		Entry(JsonNode result, long expiresAt) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+
+		@Override
+		public boolean isExpired(long now) {
+			return expiresAt <= now;
+		}
+	}
+
+}
@@ -0,0 +1,337 @@
+package gov.cdc.foundation.helper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.helper.common.ServiceException;
+
+/**
+ * Reads and writes NDJSON streams, and builds the Elasticsearch `_bulk` requests.
+ */
+@Component
+public class BulkHelper {
+
+	public static final String CONTENT_TYPE_NDJSON = "application/x-ndjson";
+
+	public static final String RESULT_NOOP = "noop";
+
+	private static final byte NEW_LINE = '\n';
+
+	private static BulkHelper instance;
+
+	private final int chunkSize;
+
+	public BulkHelper(@Value("${indexing.bulk.chunk-size}") int chunkSize) {
+		this.chunkSize = chunkSize;
+		instance = this;
+	}
+
+	public static BulkHelper getInstance() {
+		if (instance == null)
+			instance = new BulkHelper(500);
+		return instance;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Reads the lines of a stream one at a time: JSON values, or plain text returned as strings. Blank lines are skipped.
+	 */
+	public Iterator<JsonNode> readLines(InputStream input) {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		ObjectMapper mapper = JSONHelper.getInstance().getMapper();
+		return new Iterator<JsonNode>() {
+			private JsonNode next;
+
+			@Override
+			public boolean hasNext() {
+				try {
+					String line;
+					while (next == null && (line = reader.readLine()) != null) {
+						line = line.trim();
+						if (line.isEmpty())
+							continue;
+						next = parseLine(mapper, line);
+					}
+					return next != null;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			@Override
+			public JsonNode next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				JsonNode line = next;
+				next = null;
+				return line;
+			}
+		};
+	}
+
+	private static JsonNode parseLine(ObjectMapper mapper, String line) throws IOException {
+		char first = line.charAt(0);
+		if (first == '{' || first == '[' || first == '"') {
+			try {
+				return mapper.readTree(line);
+			} catch (JsonProcessingException e) {
+				// Reported with the line itself, the rest of the stream is still read
+			}
+		}
+		return mapper.getNodeFactory().textNode(line);
+	}
+
+	/**
+	 * Extracts an object id from a line: the plain id, a document with its `_id` or `{ "id": ... }`.
+	 */
+	public String getId(JsonNode line) {
+		if (line.isTextual())
+			return line.textValue();
+		JsonNode id = line.has("_id") ? line.get("_id") : line.path("id");
+		return id.has("$oid") ? id.get("$oid").asText() : id.asText(null);
+	}
+
+	public void writeLine(OutputStream output, JsonNode line) throws IOException {
+		try (JsonGenerator generator = JSONHelper.getInstance().getMapper().getFactory().createGenerator(output)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.writeTree(line);
+		}
+		output.write(NEW_LINE);
+	}
+
+	public ObjectNode result(String id, int status, String error) {
+		ObjectNode result = JSONHelper.getInstance().createObjectNode();
+		result.put("id", id);
+		result.put("status", status);
+		if (error != null)
+			result.put("error", error);
+		return result;
+	}
+
+	public Request request() {
+		return new Request();
+	}
+
+	public class Request {
+
+		private final List<Action> actions = new ArrayList<>();
+		private final List<String> ids = new ArrayList<>();
+		private String alias;
+
+		private Request() {
+		}
+
+		/**
+		 * Removes in the same request the previous copy of each indexed document, when it's found in another index of
+		 * the alias or with another routing: the partition or routing field of the document changed.
+		 */
+		public Request removeMoved(String alias) {
+			this.alias = alias;
+			return this;
+		}
+
+		/**
+		 * Adds an index action. When the hashes are enabled the document is stamped with its hash, and skipped at
+		 * execution if it's already indexed with the same one.
+		 */
+		public Request index(String index, String type, String id, String routing, JsonNode document) throws IOException {
+			HashHelper hashes = HashHelper.getInstance();
+			String hash = hashes.isEnabled() && document.isObject() ? hashes.stamp((ObjectNode) document) : null;
+			return action("index", index, type, id, routing, document, hash);
+		}
+
+		public Request delete(String index, String type, String id, String routing) throws IOException {
+			return action("delete", index, type, id, routing, null, null);
+		}
+
+		/**
+		 * Adds the delete actions of the ids, in the index and with the routing they were located with if they had to
+		 * be looked up (located isn't null). Returns the ids that couldn't be located.
+		 */
+		public List<String> delete(String index, String type, Collection<String> ids, Map<String, JsonNode> located) throws IOException {
+			List<String> missing = new ArrayList<>();
+			for (String id : ids) {
+				if (located == null)
+					delete(index, type, id, null);
+				else if (located.containsKey(id))
+					delete(located.get(id).path("_index").asText(), type, id, located.get(id).path("_routing").asText(null));
+				else
+					missing.add(id);
+			}
+			return missing;
+		}
+
+		private Request action(String action, String index, String type, String id, String routing, JsonNode document, String hash) {
+			actions.add(new Action(action, index, type, id, routing, document, hash));
+			ids.add(id);
+			return this;
+		}
+
+		public int size() {
+			return ids.size();
+		}
+
+		public List<String> getIds() {
+			return ids;
+		}
+
+		private byte[] toBody(List<Action> actions, ElasticFormat format) throws IOException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			for (Action action : actions) {
+				ObjectNode line = JSONHelper.getInstance().createObjectNode();
+				ObjectNode metadata = line.putObject(action.action);
+				metadata.put("_index", action.index);
+				metadata.put("_type", action.type);
+				metadata.put("_id", action.id);
+				if (action.routing != null)
+					metadata.put("_routing", action.routing);
+				format.writeBulkLine(body, line);
+				if (action.document != null)
+					format.writeBulkLine(body, action.document);
+			}
+			return body.toByteArray();
+		}
+
+		/**
+		 * Returns the delete actions of the previous copies of the indexed documents, located through the alias.
+		 */
+		private List<Action> moved() throws ServiceException {
+			Set<String> types = new LinkedHashSet<>();
+			for (Action action : actions)
+				if (action.document != null)
+					types.add(action.type);
+
+			List<Action> moved = new ArrayList<>();
+			for (String type : types) {
+				List<String> indexed = new ArrayList<>();
+				for (Action action : actions)
+					if (action.document != null && action.type.equals(type))
+						indexed.add(action.id);
+				moved.addAll(moved(type, ElasticHelper.getInstance().locate(alias, type, indexed)));
+			}
+			return moved;
+		}
+
+		private List<Action> moved(String type, Map<String, JsonNode> located) {
+			List<Action> moved = new ArrayList<>();
+			for (Action action : actions) {
+				JsonNode location = located.get(action.id);
+				if (action.document == null || !action.type.equals(type) || location == null)
+					continue;
+				String index = location.path("_index").asText();
+				String routing = location.path("_routing").asText(null);
+				if (!index.equals(action.index) || !Objects.equals(routing, action.routing))
+					moved.add(new Action("delete", index, type, action.id, routing, null, null));
+			}
+			return moved;
+		}
+
+		/**
+		 * Sends the actions and returns the result of each one, as `{ "id", "status", "result" | "error" }`, in order.
+		 * The unchanged documents aren't sent and get a `noop` result. The deletes of the moved documents aren't reported.
+		 */
+		public List<ObjectNode> execute() throws ServiceException, IOException {
+			HashHelper hashes = HashHelper.getInstance();
+			List<HashHelper.Document> hashed = new ArrayList<>();
+			for (Action action : actions)
+				if (action.hash != null)
+					hashed.add(action.hashed = hashes.document(action.index, action.type, action.id, action.routing, action.hash));
+			Set<HashHelper.Document> unchanged = hashed.isEmpty() ? Collections.emptySet() : hashes.findUnchanged(hashed);
+
+			List<Action> sent = new ArrayList<>(actions.size());
+			for (Action action : actions)
+				if (action.hashed == null || !unchanged.contains(action.hashed))
+					sent.add(action);
+			// After the actions, so their items keep the same order
+			List<Action> moved = alias != null ? moved() : Collections.<Action>emptyList();
+			sent.addAll(moved);
+
+			// The items are returned in the order of the actions
+			Iterator<JsonNode> items = sent.isEmpty()
+				? Collections.<JsonNode>emptyIterator()
+				: ElasticHelper.getInstance().read(ElasticHelper.getInstance().bulk(toBody(sent, ElasticHelper.getInstance().getFormat()))).path("items").iterator();
+			List<ObjectNode> results = new ArrayList<>(actions.size());
+			for (Action action : actions) {
+				if (action.hashed != null && unchanged.contains(action.hashed)) {
+					ObjectNode result = result(action.id, 200, null);
+					result.put("result", RESULT_NOOP);
+					results.add(result);
+					continue;
+				}
+				if (!items.hasNext())
+					break;
+				JsonNode item = items.next().elements().next();
+				JsonNode error = item.get("error");
+				ObjectNode result = result(item.path("_id").asText(), item.path("status").asInt(), error != null ? error.path("reason").asText(error.toString()) : null);
+				if (error == null) {
+					result.put("result", item.path("result").asText());
+					if (action.hashed != null)
+						hashes.remember(action.hashed);
+					else if (action.document == null)
+						hashes.forget(action.index, action.type, action.id);
+				}
+				results.add(result);
+			}
+			for (Action action : moved) {
+				if (!items.hasNext())
+					break;
+				if (items.next().elements().next().get("error") == null)
+					hashes.forget(action.index, action.type, action.id);
+			}
+			return results;
+		}
+
+	}
+
+	private static class Action {
+
+		private final String action;
+		private final String index;
+		private final String type;
+		private final String id;
+		private final String routing;
+		private final JsonNode document;
+		private final String hash;
+		private HashHelper.Document hashed;
+
+		private Action(String action, String index, String type, String id, String routing, JsonNode document, String hash) {
+			this.action = action;
+			this.index = index;
+			this.type = type;
+			this.id = id;
+			this.routing = routing;
+			this.document = document;
+			this.hash = hash;
+		}
+
+	}
+
+}
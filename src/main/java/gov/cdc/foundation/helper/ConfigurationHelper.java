@@ -5,6 +5,13 @@ import java.io.InputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.resilience.CircuitBreakerOpenException;
+import gov.cdc.foundation.resilience.Resilience;
+import gov.cdc.foundation.tracing.Span;
+import gov.cdc.foundation.tracing.Tracer;
 import gov.cdc.helper.ObjectHelper;
 
 import gov.cdc.helper.common.ServiceException;
@@ -21,14 +28,20 @@ public class ConfigurationHelper {
 		return me;
 	}
 
-	public JSONObject getConfiguration(String config, String authorizationHeader) throws ServiceException {
-		try {
+	public ObjectNode getConfiguration(String config, String authorizationHeader) throws ServiceException {
+		try (Span span = Tracer.getInstance().startSpan("getConfiguration").tag(MetricsHelper.TAG_CONFIG, config)) {
 			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
-			if (!helper.exists(config))
+			Resilience resilience = Resilience.getInstance();
+			if (!resilience.callObjectService("configExists", config, () -> helper.exists(config)))
 				throw new ServiceException(
 					"The configuration for the following object type doesn't exist: " + config);
 
-			return helper.getObject(config);
+			// Only configurations that exist are used as metric tags
+			MetricsHelper.getInstance().registerConfig(config);
+			JSONObject configuration = resilience.callObjectService("getConfiguration", config, () -> helper.getObject(config));
+			return JSONHelper.getInstance().toJsonNode(configuration);
+		} catch (CircuitBreakerOpenException e) {
+			throw e;
 		} catch (Exception e) {
 			logger.error(e);
 			throw new ServiceException(e);
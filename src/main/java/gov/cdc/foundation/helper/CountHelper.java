@@ -0,0 +1,50 @@
+package gov.cdc.foundation.helper;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Caps the totals returned by the searches and counts, with their relation to the real total (`eq` or `gte`) like the
+ * newer versions of Elasticsearch.
+ */
+public class CountHelper {
+
+	public static final String RELATION_EQ = "eq";
+	public static final String RELATION_GTE = "gte";
+
+	private static CountHelper instance;
+
+	public static CountHelper getInstance() {
+		if (instance == null)
+			instance = new CountHelper();
+		return instance;
+	}
+
+	/**
+	 * Caps the total of a search result to the requested limit. A limit of 0 drops the total, null leaves it as is.
+	 */
+	public void limitTotalHits(ObjectNode elkObject, Integer limit) {
+		if (limit == null || !elkObject.path("hits").has("total"))
+			return;
+		ObjectNode hits = (ObjectNode) elkObject.get("hits");
+		if (limit <= 0) {
+			hits.remove("total");
+			return;
+		}
+		long total = hits.path("total").asLong();
+		hits.put("total", Math.min(total, limit));
+		hits.put("relation", total > limit ? RELATION_GTE : RELATION_EQ);
+	}
+
+	/**
+	 * Caps the result of a count run with `terminate_after` set to the limit (0 for no limit). Each shard stops at the
+	 * limit, so the sum can go past it.
+	 */
+	public void limitCount(ObjectNode elkObject, int limit) {
+		if (limit > 0 && (elkObject.path("terminated_early").asBoolean(false) || elkObject.path("count").asLong() > limit)) {
+			elkObject.put("count", Math.min(elkObject.path("count").asLong(), limit));
+			elkObject.put("relation", RELATION_GTE);
+		} else
+			elkObject.put("relation", RELATION_EQ);
+	}
+
+}
@@ -0,0 +1,94 @@
+package gov.cdc.foundation.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Wire formats of the bodies exchanged with Elasticsearch. The binary formats are cheaper to generate and parse than
+ * JSON; CBOR has no stream separator, so its bulk requests are still sent as NDJSON.
+ */
+public enum ElasticFormat {
+
+	JSON("application/json", BulkHelper.CONTENT_TYPE_NDJSON, (byte) '\n'),
+	SMILE("application/smile", "application/smile", (byte) 0xFF),
+	CBOR("application/cbor", null, (byte) 0);
+
+	private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+	private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+	private final String mediaType;
+	private final String bulkMediaType;
+	private final byte separator;
+
+	ElasticFormat(String mediaType, String bulkMediaType, byte separator) {
+		this.mediaType = mediaType;
+		this.bulkMediaType = bulkMediaType;
+		this.separator = separator;
+	}
+
+	public static ElasticFormat fromName(String name) {
+		return name == null || name.isEmpty() ? JSON : valueOf(name.trim().toUpperCase());
+	}
+
+	/**
+	 * Returns the format of a response, from its content type.
+	 */
+	public static ElasticFormat fromMediaType(String contentType) {
+		if (contentType != null) {
+			if (contentType.startsWith(SMILE.mediaType))
+				return SMILE;
+			if (contentType.startsWith(CBOR.mediaType))
+				return CBOR;
+		}
+		return JSON;
+	}
+
+	public String getMediaType() {
+		return mediaType;
+	}
+
+	public boolean isBinary() {
+		return this != JSON;
+	}
+
+	public ObjectMapper getMapper() {
+		switch (this) {
+		case SMILE:
+			return SMILE_MAPPER;
+		case CBOR:
+			return CBOR_MAPPER;
+		default:
+			return JSONHelper.getInstance().getMapper();
+		}
+	}
+
+	/**
+	 * Returns the format of the bulk requests: the same one when it has a stream separator, or else JSON.
+	 */
+	public ElasticFormat getBulkFormat() {
+		return bulkMediaType != null ? this : JSON;
+	}
+
+	public String getBulkMediaType() {
+		return getBulkFormat().bulkMediaType;
+	}
+
+	/**
+	 * Writes a line of a bulk request, followed by the separator of the format.
+	 */
+	public void writeBulkLine(ByteArrayOutputStream output, JsonNode line) throws IOException {
+		ElasticFormat format = getBulkFormat();
+		try (JsonGenerator generator = format.getMapper().getFactory().createGenerator(output)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.writeTree(line);
+		}
+		output.write(format.separator);
+	}
+
+}
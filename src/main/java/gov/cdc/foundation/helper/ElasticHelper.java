@@ -1,22 +1,40 @@
 package gov.cdc.foundation.helper;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.entity.ContentType;
-import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.log4j.Logger;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.admission.AdmissionControl;
+import gov.cdc.foundation.resilience.CircuitBreakerOpenException;
+import gov.cdc.foundation.resilience.Resilience;
+import gov.cdc.foundation.tracing.Span;
+import gov.cdc.foundation.tracing.Tracer;
 import gov.cdc.helper.ObjectHelper;
 import gov.cdc.helper.common.ServiceException;
 
@@ -25,17 +43,36 @@ public class ElasticHelper {
 
 	private static final Logger logger = Logger.getLogger(ElasticHelper.class);
 
+	private static final String HEADER_OPAQUE_ID = "X-Opaque-Id";
+	private static final Header[] NO_HEADERS = new Header[0];
+
 	private static ElasticHelper instance;
-	private static RestClient client;
+
+	private RestClient client;
 
 	private String host;
 	private String protocol;
 	private int port;
 
-	public ElasticHelper(@Value("${elastic.host}") String host, @Value("${elastic.port}") int port, @Value("${elastic.protocol}") String protocol) {
+	private final ElasticFormat format;
+	private final ContentType contentType;
+	private final ContentType bulkContentType;
+	private final Header[] formatHeaders;
+
+	public ElasticHelper(
+		@Value("${elastic.host}") String host,
+		@Value("${elastic.port}") int port,
+		@Value("${elastic.protocol}") String protocol,
+		@Value("${elastic.format}") String format
+	) {
 		this.host = host;
 		this.port = port;
 		this.protocol = protocol;
+		this.format = ElasticFormat.fromName(format);
+		this.contentType = this.format.isBinary() ? ContentType.create(this.format.getMediaType()) : ContentType.APPLICATION_JSON;
+		this.bulkContentType = ContentType.create(this.format.getBulkMediaType());
+		// Elasticsearch answers in the format of the request body, unless told otherwise
+		this.formatHeaders = this.format.isBinary() ? new Header[] { new BasicHeader(HttpHeaders.ACCEPT, this.format.getMediaType()) } : NO_HEADERS;
 		instance = this;
 	}
 
@@ -49,146 +86,377 @@ public class ElasticHelper {
 		return client;
 	}
 
-	public Response index(JSONObject data, String index, String type, String id) throws ServiceException {
-		try {
-			RestClient client = getClient();
-			try (NStringEntity entity = new NStringEntity(data.toString(), ContentType.APPLICATION_JSON)) {
-				return client.performRequest("PUT", String.format("/%s/%s/%s", index, type, id), Collections.<String, String>emptyMap(), entity);
+	public Response index(JsonNode data, String index, String type, String id, String routing) throws ServiceException {
+		byte[] body = toBytes(data);
+		return execute("index", Resilience.ELASTIC_WRITE, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("PUT", String.format("/%s/%s/%s", index, type, id), routing(routing), entity, getHeaders());
 			}
-		} catch (Exception e) {
-			handleException(e);
-			return null;
-		}
+		});
 	}
 
-	public Response getObject(String index, String type, String id) throws ServiceException {
-		try {
-			RestClient client = getClient();
-			return client.performRequest("GET", String.format("/%s/%s/%s", index, type, id), Collections.<String, String>emptyMap());
-		} catch (Exception e) {
-			handleException(e);
-			return null;
-		}
+	/**
+	 * Sends a request to the cluster root, outside of the retries and circuit breakers: used to open the connections
+	 * before serving requests.
+	 */
+	public Response ping() throws IOException {
+		return getClient().performRequest("GET", "/", Collections.<String, String>emptyMap(), getHeaders());
 	}
 
-	public Response searchObjects(String index, JSONObject query, int from, int size, String scroll, JSONObject append) throws ServiceException {
-		try {
-			RestClient client = getClient();
-			JSONObject elkQuery = new JSONObject();
-			elkQuery.put("from", from);
-			elkQuery.put("size", size);
-			if (query != null) {
-				elkQuery.put("query", query);
+	public Response getObject(String index, String type, String id, String routing) throws ServiceException {
+		return getObject(index, type, id, routing, Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * Gets a document, with extra parameters such as the source filtering and the response trimming.
+	 */
+	public Response getObject(String index, String type, String id, String routing, Map<String, String> filter) throws ServiceException {
+		Map<String, String> params = new HashMap<>(routing(routing));
+		params.putAll(filter);
+		return execute("get", Resilience.ELASTIC_READ, true, () -> getClient().performRequest("GET", String.format("/%s/%s/%s", index, type, id), params, getHeaders()));
+	}
+
+	public Response searchObjects(String index, JsonNode query, int from, int size, String scroll, JsonNode append) throws ServiceException {
+		return searchObjects(index, null, query, from, size, scroll, append);
+	}
+
+	public Response searchObjects(String index, String routing, JsonNode query, int from, int size, String scroll, JsonNode append) throws ServiceException {
+		return searchObjects(index, routing, query, from, size, scroll, append, Collections.<String, String>emptyMap());
+	}
+
+	public Response searchObjects(String index, String routing, JsonNode query, int from, int size, String scroll, JsonNode append, Map<String, String> filter) throws ServiceException {
+		ObjectNode elkQuery = JSONHelper.getInstance().createObjectNode();
+		elkQuery.put("from", from);
+		elkQuery.put("size", size);
+		if (query != null) {
+			elkQuery.set("query", query);
+		}
+		if (append != null) {
+			elkQuery.setAll((ObjectNode) append);
+		}
+		byte[] body = toBytes(elkQuery);
+
+		String url = String.format("/%s/_search", index);
+		if (scroll != null && !scroll.isEmpty())
+			url += "?scroll=" + scroll;
+		String endpoint = url;
+		Map<String, String> params = new HashMap<>(routing(routing));
+		params.putAll(filter);
+
+		return Tracer.getInstance().trace("elasticSearch", () -> execute("search", Resilience.ELASTIC_READ, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("GET", endpoint, params, entity, getHeaders());
 			}
-			if (append != null) {
-				for (Object key : append.keySet()) {
-					elkQuery.put((String) key, append.get((String) key));
-				}
+		}));
+	}
+
+	/**
+	 * Counts the documents matching a query. With a positive limit, each shard stops counting once it's reached.
+	 */
+	public Response count(String index, String routing, JsonNode query, int limit) throws ServiceException {
+		ObjectNode elkQuery = JSONHelper.getInstance().createObjectNode();
+		if (query != null)
+			elkQuery.set("query", query);
+		byte[] body = toBytes(elkQuery);
+
+		Map<String, String> params = new HashMap<>(routing(routing));
+		if (limit > 0)
+			params.put("terminate_after", Integer.toString(limit));
+
+		return Tracer.getInstance().trace("elasticSearch", () -> execute("count", Resilience.ELASTIC_READ, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("POST", String.format("/%s/_count", index), params, entity, getHeaders());
 			}
-			
-			String url = String.format("/%s/_search", index);
-			if (scroll != null && !scroll.isEmpty())
-				url += "?scroll=" + scroll;
+		}));
+	}
+
+	/**
+	 * Runs aggregations without returning any hit, so the result can be kept in the shard request cache.
+	 */
+	public Response aggregate(String index, String routing, JsonNode query, JsonNode aggregations) throws ServiceException {
+		ObjectNode elkQuery = JSONHelper.getInstance().createObjectNode();
+		elkQuery.put("size", 0);
+		if (query != null)
+			elkQuery.set("query", query);
+		elkQuery.set("aggs", aggregations);
+		byte[] body = toBytes(elkQuery);
+
+		Map<String, String> params = new HashMap<>(routing(routing));
+		params.put("request_cache", "true");
 
-			try (NStringEntity entity = new NStringEntity(elkQuery.toString(), ContentType.APPLICATION_JSON)) {
-				return client.performRequest("GET", url, Collections.<String, String>emptyMap(), entity);
+		return Tracer.getInstance().trace("elasticSearch", () -> execute("aggregate", Resilience.ELASTIC_READ, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("POST", String.format("/%s/_search", index), params, entity, getHeaders());
 			}
-		} catch (Exception e) {
-			handleException(e);
-			return null;
-		}
+		}));
 	}
 
 	public Response scrollSearch(String scrollId, String scrollLiveTime) throws ServiceException {
-		try {
-			RestClient client = getClient();
-			
-			JSONObject query = new JSONObject();
-			query.put("scroll", scrollLiveTime);
-			query.put("scroll_id", scrollId);
-			
-			try (NStringEntity entity = new NStringEntity(query.toString(), ContentType.APPLICATION_JSON)) {
-				return client.performRequest("POST", "/_search/scroll", Collections.<String, String>emptyMap(), entity);
+		return scrollSearch(scrollId, scrollLiveTime, Collections.<String, String>emptyMap());
+	}
+
+	public Response scrollSearch(String scrollId, String scrollLiveTime, Map<String, String> filter) throws ServiceException {
+		ObjectNode query = JSONHelper.getInstance().createObjectNode();
+		query.put("scroll", scrollLiveTime);
+		query.put("scroll_id", scrollId);
+		byte[] body = toBytes(query);
+
+		return execute("scroll", Resilience.ELASTIC_READ, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("POST", "/_search/scroll", filter, entity, getHeaders());
 			}
-		} catch (Exception e) {
-			handleException(e);
-			return null;
-		}
+		});
 	}
 
 	public Response deleteScrollIndex(String scrollId) throws ServiceException {
-		try {
-			RestClient client = getClient();
-			
-			JSONObject query = new JSONObject();
-			query.put("scroll_id", new JSONArray());
-			query.getJSONArray("scroll_id").put(scrollId);
-			
-			try (NStringEntity entity = new NStringEntity(query.toString(), ContentType.APPLICATION_JSON)) {
-				return client.performRequest("DELETE", "/_search/scroll", Collections.<String, String>emptyMap(), entity);
+		ObjectNode query = JSONHelper.getInstance().createObjectNode();
+		query.putArray("scroll_id").add(scrollId);
+		byte[] body = toBytes(query);
+
+		return execute("deleteScroll", Resilience.ELASTIC_READ, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("DELETE", "/_search/scroll", Collections.<String, String>emptyMap(), entity, getHeaders());
 			}
-		} catch (Exception e) {
-			handleException(e);
-			return null;
-		}
+		});
 	}
 	
-	public Response defineMapping(String index, String type, JSONObject payload) throws ServiceException {
-		try {
-			RestClient client = getClient();
-			try (NStringEntity entity = new NStringEntity(payload.toString(), ContentType.APPLICATION_JSON)) {
-				return client.performRequest("PUT", String.format("/%s/_mapping/%s", index, type), Collections.<String, String>emptyMap(), entity);
+	public Response defineMapping(String index, String type, JsonNode payload) throws ServiceException {
+		byte[] body = toBytes(payload);
+		return execute("defineMapping", Resilience.ELASTIC_WRITE, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("PUT", String.format("/%s/_mapping/%s", index, type), Collections.<String, String>emptyMap(), entity, getHeaders());
 			}
-		} catch (Exception e) {
-			handleException(e);
-			return null;
-		}
+		});
 	}
 
-	public Response createIndex(String index) throws ServiceException {
+	public Response deleteObject(String index, String type, String id, String routing) throws ServiceException {
+		return execute("delete", Resilience.ELASTIC_WRITE, true, () -> getClient().performRequest("DELETE", String.format("/%s/%s/%s", index, type, id), routing(routing), getHeaders()));
+	}
+
+	/**
+	 * Finds the index and routing of each document from its id, by searching all the shards. The documents that aren't
+	 * indexed, or whose index doesn't exist yet, are left out.
+	 */
+	public Map<String, JsonNode> locate(String index, String type, Collection<String> ids) throws ServiceException {
+		ObjectNode query = JSONHelper.getInstance().createObjectNode();
+		ArrayNode values = query.putObject("ids").putArray("values");
+		ids.forEach(values::add);
+		ObjectNode append = JSONHelper.getInstance().createObjectNode();
+		append.put("_source", false);
+
+		Map<String, JsonNode> located = new HashMap<>();
 		try {
-			RestClient client = getClient();
-			return client.performRequest("PUT", String.format("/%s", index), Collections.<String, String>emptyMap());
-		} catch (Exception e) {
-			handleException(e);
-			return null;
+			for (JsonNode hit : read(searchObjects(index, query, 0, ids.size(), null, append)).path("hits").path("hits"))
+				if (type.equals(hit.path("_type").asText()))
+					located.put(hit.path("_id").asText(), hit);
+		} catch (ServiceException e) {
+			// The index doesn't exist yet, any other failure doesn't tell where the documents are
+			if (e.getObj() == null || !e.getObj().has(MessageHelper.CONST_ERROR)
+				|| !"index_not_found_exception".equals(e.getObj().getJSONObject(MessageHelper.CONST_ERROR).opt(MessageHelper.CONST_TYPE)))
+				throw e;
+			logger.debug(e);
+		} catch (IOException e) {
+			throw new ServiceException(e);
 		}
+		return located;
+	}
+
+	/**
+	 * Starts a delete by query as a background task, throttled to the given number of documents per second (-1 for no limit).
+	 */
+	public Response deleteByQuery(String index, String routing, JsonNode query, float requestsPerSecond) throws ServiceException {
+		ObjectNode elkQuery = JSONHelper.getInstance().createObjectNode();
+		elkQuery.set("query", query);
+		byte[] body = toBytes(elkQuery);
+
+		Map<String, String> params = new HashMap<>();
+		params.put("wait_for_completion", "false");
+		params.put("conflicts", "proceed");
+		params.put("requests_per_second", Float.toString(requestsPerSecond));
+		if (routing != null)
+			params.put("routing", routing);
+
+		// Not retried: each call starts a new task
+		return execute("deleteByQuery", Resilience.ELASTIC_WRITE, false, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("POST", String.format("/%s/_delete_by_query", index), params, entity, getHeaders());
+			}
+		});
+	}
+
+	/**
+	 * Starts a reindex as a background task, split in the given number of slices.
+	 */
+	public Response reindex(JsonNode request, int slices) throws ServiceException {
+		byte[] body = toBytes(request);
+
+		Map<String, String> params = new HashMap<>();
+		params.put("wait_for_completion", "false");
+		params.put("slices", Integer.toString(slices));
+
+		// Not retried: each call starts a new task
+		return execute("reindex", Resilience.ELASTIC_WRITE, false, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("POST", "/_reindex", params, entity, getHeaders());
+			}
+		});
+	}
+
+	public Response getTask(String taskId) throws ServiceException {
+		return execute("task", Resilience.ELASTIC_READ, true, () -> getClient().performRequest("GET", String.format("/_tasks/%s", taskId), Collections.<String, String>emptyMap(), getHeaders()));
+	}
+
+	/**
+	 * Gets several documents at once, only returning the given field of their source.
+	 */
+	public Response multiGet(JsonNode docs, String sourceField) throws ServiceException {
+		byte[] body = toBytes(docs);
+		Map<String, String> params = Collections.singletonMap("_source", sourceField);
+		return execute("mget", Resilience.ELASTIC_READ, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("POST", "/_mget", params, entity, getHeaders());
+			}
+		});
+	}
+
+	public ElasticFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Sends a bulk request, written in the bulk format of {@link #getFormat()}.
+	 */
+	public Response bulk(byte[] body) throws ServiceException {
+		// Index and delete actions by id can be replayed
+		return execute("bulk", Resilience.ELASTIC_WRITE, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, bulkContentType)) {
+				return getClient().performRequest("POST", "/_bulk", Collections.<String, String>emptyMap(), entity, getHeaders());
+			}
+		});
+	}
+
+	public Response putTemplate(String name, JsonNode template) throws ServiceException {
+		byte[] body = toBytes(template);
+		return execute("putTemplate", Resilience.ELASTIC_WRITE, true, () -> {
+			try (NByteArrayEntity entity = new NByteArrayEntity(body, contentType)) {
+				return getClient().performRequest("PUT", String.format("/_template/%s", name), Collections.<String, String>emptyMap(), entity, getHeaders());
+			}
+		});
+	}
+
+	public Response getAliases(String alias) throws ServiceException {
+		return execute("getAliases", Resilience.ELASTIC_READ, true, () -> getClient().performRequest("GET", String.format("/_alias/%s", alias), Collections.<String, String>emptyMap(), getHeaders()));
+	}
+
+	public Response createIndex(String index) throws ServiceException {
+		// Not retried: a lost response would turn into an "index already exists" error
+		return execute("createIndex", Resilience.ELASTIC_WRITE, false, () -> getClient().performRequest("PUT", String.format("/%s", index), Collections.<String, String>emptyMap(), getHeaders()));
 	}
 
 	public Response deleteIndex(String index) throws ServiceException {
+		return execute("deleteIndex", Resilience.ELASTIC_WRITE, false, () -> getClient().performRequest("DELETE", String.format("/%s", index), Collections.<String, String>emptyMap(), getHeaders()));
+	}
+
+	public void hydrate(String authorizationHeader, ObjectNode elkObject, String database, String collection, String objectId) throws ServiceException {
+		JSONHelper json = JSONHelper.getInstance();
 		try {
-			RestClient client = getClient();
-			return client.performRequest("DELETE", String.format("/%s", index), Collections.<String, String>emptyMap());
+			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
+			JSONObject object = Resilience.getInstance().callObjectService("hydrate", null, () -> helper.getObject(objectId, database, collection));
+			// The merge is done by the SDK, on org.json objects
+			JSONObject merged = helper.merge(object, json.toJSONObject(elkObject.path("_source")));
+			elkObject.set("_source", json.toJsonNode(merged));
+		} catch (CircuitBreakerOpenException e) {
+			throw e;
 		} catch (Exception e) {
-			handleException(e);
-			return null;
+			throw new ServiceException(e);
 		}
 	}
 
-	public void hydrate(String authorizationHeader, JSONObject elkObject, String database, String collection, String objectId) throws ServiceException {
-		JSONObject merged;
+	public void hydrate(String authorizationHeader, JsonNode hits, String database, String collection) throws ServiceException {
+		try (Span span = Tracer.getInstance().startSpan("hydrate").tag("hits", hits.size())) {
+			for (JsonNode hit : hits) {
+				hydrate(authorizationHeader, (ObjectNode) hit, database, collection, hit.path("_id").asText());
+			}
+		}
+	}
+
+	/**
+	 * Parses the body of an Elasticsearch response, straight from the stream, in the format it's written in.
+	 */
+	public JsonNode read(Response response) throws IOException {
+		Header type = response.getEntity().getContentType();
+		ObjectMapper mapper = ElasticFormat.fromMediaType(type != null ? type.getValue() : null).getMapper();
+		try (InputStream content = response.getEntity().getContent()) {
+			return mapper.readTree(content);
+		}
+	}
+
+	private Map<String, String> routing(String routing) {
+		return routing != null ? Collections.singletonMap("routing", routing) : Collections.<String, String>emptyMap();
+	}
+
+	private byte[] toBytes(JsonNode data) throws ServiceException {
 		try {
-			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
-			JSONObject object = helper.getObject(objectId, database, collection);
-			merged = helper.merge(object, elkObject.getJSONObject("_source"));
-			elkObject.put("_source", merged);
-		} catch (Exception e) {
+			return format.getMapper().writeValueAsBytes(data);
+		} catch (IOException e) {
 			throw new ServiceException(e);
 		}
 	}
 
-	public void hydrate(String authorizationHeader, JSONArray hits, String database, String collection) throws ServiceException {
-		for (int i = 0; i < hits.length(); i++) {
-			JSONObject hit = hits.getJSONObject(i);
-			hydrate(authorizationHeader, hit, database, collection, hit.getString("_id"));
+	private Response execute(String operation, String breaker, boolean idempotent, Operation<Response, Exception> request) throws ServiceException {
+		long start = System.nanoTime();
+		try {
+			return MetricsHelper.getInstance().time(MetricsHelper.METRIC_ELASTIC, operation, () -> {
+				try {
+					return Resilience.getInstance().call(breaker, idempotent, ElasticHelper::isFailure, ElasticHelper::isTransient, request);
+				} catch (CircuitBreakerOpenException e) {
+					throw e;
+				} catch (Exception e) {
+					handleException(e);
+					return null;
+				}
+			});
+		} finally {
+			AdmissionControl.recordElasticLatency(System.nanoTime() - start);
 		}
 	}
 
+	private Header[] getHeaders() {
+		// Propagate the trace id so slow requests can be matched with the Elasticsearch tasks and logs
+		String traceId = Tracer.getInstance().currentTraceId();
+		if (traceId == null)
+			return formatHeaders;
+		Header[] headers = Arrays.copyOf(formatHeaders, formatHeaders.length + 1);
+		headers[formatHeaders.length] = new BasicHeader(HEADER_OPAQUE_ID, traceId);
+		return headers;
+	}
+
+	private static int getStatus(Exception e) {
+		return e instanceof ResponseException ? ((ResponseException) e).getResponse().getStatusLine().getStatusCode() : -1;
+	}
+
+	private static boolean isFailure(Exception e) {
+		// Client errors (missing index, invalid query...) don't say anything about the health of the cluster
+		int status = getStatus(e);
+		return status < 0 ? e instanceof IOException : status >= 500 || status == 429;
+	}
+
+	private static boolean isTransient(Exception e) {
+		// Rejected executions (full thread pool queues) and unavailable shards or nodes
+		int status = getStatus(e);
+		return status == 429 || status == 503 || e instanceof ConnectException;
+	}
+
 	private void handleException(Exception e) throws ServiceException {
 		if (e instanceof ResponseException) {
 			logger.error(e);
 			try {
 				ResponseException re = (ResponseException) e;
+				int status = getStatus(re);
+				if (status == 429 || status == 503)
+					AdmissionControl.recordElasticOverload();
+				if (format.isBinary())
+					throw new ServiceException(JSONHelper.getInstance().toJSONObject(read(re.getResponse())));
 				String responseStr = IOUtils.toString(re.getResponse().getEntity().getContent());
 				throw new ServiceException(new JSONObject(responseStr));
 			} catch (IOException e2) {
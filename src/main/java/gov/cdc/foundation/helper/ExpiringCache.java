@@ -0,0 +1,69 @@
+package gov.cdc.foundation.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache bounded to a maximum number of entries whose values expire. The entries are evicted in LRU order and the
+ * expired ones are dropped when they're read, so every operation runs in constant time.
+ */
+public class ExpiringCache<K, V extends ExpiringCache.Expiring> {
+
+	public interface Expiring {
+
+		boolean isExpired(long now);
+
+	}
+
+	private final Map<K, V> entries;
+	private final LongSupplier clock;
+
+	public ExpiringCache(int maxSize, LongSupplier clock) {
+		int limit = Math.max(1, maxSize);
+		this.clock = clock;
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > limit;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value of the key, or null if it's missing or expired.
+	 */
+	public synchronized V get(K key) {
+		V value = entries.get(key);
+		if (value != null && value.isExpired(clock.getAsLong())) {
+			entries.remove(key);
+			return null;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the valid value of the key, or stores the given one and returns null.
+	 */
+	public synchronized V putIfAbsent(K key, V value) {
+		V current = get(key);
+		if (current == null)
+			entries.put(key, value);
+		return current;
+	}
+
+	public synchronized void put(K key, V value) {
+		entries.put(key, value);
+	}
+
+	public synchronized boolean remove(K key, V value) {
+		return entries.remove(key, value);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+}
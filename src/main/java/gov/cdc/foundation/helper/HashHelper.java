@@ -0,0 +1,246 @@
+package gov.cdc.foundation.helper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.helper.common.ServiceException;
+
+/**
+ * Detects the documents that haven't changed since they were last indexed, so the bulk requests can skip them.
+ * The hash of each mapped document is stored with it in a hidden field, and optionally kept in a bounded local store
+ * to avoid looking it up in Elasticsearch. The store is trusted over Elasticsearch, so it's only consistent when this
+ * instance is the only writer of the indices.
+ */
+@Component
+public class HashHelper {
+
+	private static final Logger logger = Logger.getLogger(HashHelper.class);
+
+	public static final String METRIC_SKIPPED = "indexing.documents.skipped";
+
+	private static HashHelper instance;
+
+	private final boolean enabled;
+	private final String field;
+	private final Map<Long, Long> store;
+
+	public HashHelper(
+		@Value("${indexing.hash.enabled}") boolean enabled,
+		@Value("${indexing.hash.field}") String field,
+		@Value("${indexing.hash.store-size}") int storeSize
+	) {
+		this.enabled = enabled;
+		this.field = field;
+		// Both the key and the hash are kept as 64 bits digests, evicted in LRU order
+		this.store = storeSize > 0 ? Collections.synchronizedMap(new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+				return size() > storeSize;
+			}
+		}) : null;
+		if (enabled && store != null)
+			logger.info(String.format("Hashes kept locally for up to %d documents, the indices must only be written by this instance", storeSize));
+		instance = this;
+	}
+
+	public static HashHelper getInstance() {
+		if (instance == null)
+			instance = new HashHelper(false, "_indexing_hash", 0);
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	/**
+	 * Computes a hash of the document that doesn't depend on the order of its fields. The hash field itself is ignored.
+	 */
+	public String hash(JsonNode document) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			try (JsonGenerator generator = JSONHelper.getInstance().getMapper().getFactory().createGenerator(new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest))) {
+				writeCanonical(generator, document, true);
+			}
+			return String.format("%016x", toLong(digest.digest()));
+		} catch (NoSuchAlgorithmException | IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeCanonical(JsonGenerator generator, JsonNode node, boolean root) throws IOException {
+		if (node.isObject()) {
+			List<String> names = new ArrayList<>();
+			node.fieldNames().forEachRemaining(names::add);
+			Collections.sort(names);
+			generator.writeStartObject();
+			for (String name : names) {
+				if (root && name.equals(field))
+					continue;
+				generator.writeFieldName(name);
+				writeCanonical(generator, node.get(name), false);
+			}
+			generator.writeEndObject();
+		} else if (node.isArray()) {
+			generator.writeStartArray();
+			for (JsonNode item : node)
+				writeCanonical(generator, item, false);
+			generator.writeEndArray();
+		} else
+			generator.writeTree(node);
+	}
+
+	/**
+	 * Hashes a mapped document and stores the hash in its hidden field.
+	 */
+	public String stamp(ObjectNode document) {
+		String hash = hash(document);
+		document.put(field, hash);
+		return hash;
+	}
+
+	/**
+	 * Returns the documents whose hash matches the one already indexed, from the local store or else from Elasticsearch.
+	 */
+	public Set<Document> findUnchanged(List<Document> documents) throws ServiceException, IOException {
+		Set<Document> unchanged = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<Document> lookups = new ArrayList<>();
+		for (Document document : documents) {
+			Long stored = store != null ? store.get(document.key()) : null;
+			if (stored == null)
+				lookups.add(document);
+			else if (stored == document.value())
+				unchanged.add(document);
+		}
+
+		if (!lookups.isEmpty()) {
+			ObjectNode body = JSONHelper.getInstance().createObjectNode();
+			ArrayNode docs = body.putArray("docs");
+			for (Document document : lookups) {
+				ObjectNode doc = docs.addObject();
+				doc.put("_index", document.index);
+				doc.put("_type", document.type);
+				doc.put("_id", document.id);
+				if (document.routing != null)
+					doc.put("_routing", document.routing);
+			}
+
+			JsonNode response;
+			try {
+				response = ElasticHelper.getInstance().read(ElasticHelper.getInstance().multiGet(body, field));
+			} catch (ServiceException e) {
+				// Missing index: everything has to be written
+				logger.debug(e);
+				return unchanged;
+			}
+
+			// The documents are returned in the order of the request
+			Iterator<Document> it = lookups.iterator();
+			for (JsonNode doc : response.path("docs")) {
+				Document document = it.next();
+				String indexed = doc.path("_source").path(field).asText(null);
+				if (document.hash.equals(indexed)) {
+					unchanged.add(document);
+					remember(document);
+				}
+			}
+		}
+
+		if (!unchanged.isEmpty())
+			MetricsHelper.getInstance().getRegistry().counter(METRIC_SKIPPED).increment(unchanged.size());
+		return unchanged;
+	}
+
+	public void remember(Document document) {
+		if (store != null)
+			store.put(document.key(), document.value());
+	}
+
+	public void forget(String index, String type, String id) {
+		if (store != null)
+			store.remove(key(index, type, id));
+	}
+
+	/**
+	 * Drops the local store, when the indexed documents are removed in bulk.
+	 */
+	public void forgetAll() {
+		if (store != null)
+			store.clear();
+	}
+
+	private static long key(String index, String type, String id) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update((index + '\n' + type + '\n' + id).getBytes(StandardCharsets.UTF_8));
+			return toLong(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static long toLong(byte[] bytes) {
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (bytes[i] & 0xff);
+		return value;
+	}
+
+	public Document document(String index, String type, String id, String routing, String hash) {
+		return new Document(index, type, id, routing, hash);
+	}
+
+	public static class Document {
+
+		private final String index;
+		private final String type;
+		private final String id;
+		private final String routing;
+		private final String hash;
+
+		private Document(String index, String type, String id, String routing, String hash) {
+			this.index = index;
+			this.type = type;
+			this.id = id;
+			this.routing = routing;
+			this.hash = hash;
+		}
+
+		private long key() {
+			return HashHelper.key(index, type, id);
+		}
+
+		private long value() {
+			return Long.parseUnsignedLong(hash, 16);
+		}
+
+	}
+
+}
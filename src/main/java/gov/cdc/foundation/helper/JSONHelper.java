@@ -1,28 +1,146 @@
 package gov.cdc.foundation.helper;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+
 public class JSONHelper {
 
 	private static JSONHelper me;
 
+	// Shared by every request: the mapper is thread safe once configured
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Configuration jsonPath = Configuration.builder()
+		.jsonProvider(new JacksonJsonNodeJsonProvider(mapper))
+		.mappingProvider(new JacksonMappingProvider(mapper))
+		.build();
+
 	public static JSONHelper getInstance() {
 		if (me == null)
 			me = new JSONHelper();
 		return me;
 	}
 
-	public JSONObject getOrCreate(JSONObject parent, String key) {
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	public ObjectNode createObjectNode() {
+		return mapper.createObjectNode();
+	}
+
+	/**
+	 * Wraps a document for JsonPath queries, without copying it.
+	 */
+	public DocumentContext parse(JsonNode document) {
+		return JsonPath.using(jsonPath).parse(document);
+	}
+
+	public ObjectNode getOrCreate(ObjectNode parent, String key) {
 		if (key.contains(".")) {
 			String parentKey = key.split("\\.")[0];
 			String path = key.substring(parentKey.length() + 1);
-			if (!parent.has(parentKey))
-				parent.put(parentKey, new JSONObject());
-			return getOrCreate(parent.getJSONObject(parentKey), path);
-		} else {
-			if (!parent.has(key))
-				parent.put(key, new JSONObject());
-			return parent.getJSONObject(key);
+			return getOrCreate(parent.with(parentKey), path);
+		} else
+			return parent.with(key);
+	}
+
+	public String getString(JsonNode node, String key) {
+		JsonNode value = node.get(key);
+		if (value == null || !value.isTextual())
+			throw new IllegalArgumentException(String.format("The '%s' string is missing.", key));
+		return value.textValue();
+	}
+
+	/**
+	 * Converts the documents returned by the Object Microservice, walking the tree instead of going through a string.
+	 */
+	public ObjectNode toJsonNode(JSONObject object) {
+		ObjectNode node = mapper.createObjectNode();
+		for (String key : object.keySet())
+			node.set(key, toJsonNode(object.opt(key)));
+		return node;
+	}
+
+	public ArrayNode toJsonNode(JSONArray array) {
+		ArrayNode node = mapper.createArrayNode();
+		for (int i = 0; i < array.length(); i++)
+			node.add(toJsonNode(array.opt(i)));
+		return node;
+	}
+
+	private JsonNode toJsonNode(Object value) {
+		JsonNodeFactory factory = mapper.getNodeFactory();
+		if (value instanceof JSONObject)
+			return toJsonNode((JSONObject) value);
+		else if (value instanceof JSONArray)
+			return toJsonNode((JSONArray) value);
+		else if (value instanceof String)
+			return factory.textNode((String) value);
+		else if (value instanceof Boolean)
+			return factory.booleanNode((Boolean) value);
+		else if (value instanceof Integer)
+			return factory.numberNode((Integer) value);
+		else if (value instanceof Long)
+			return factory.numberNode((Long) value);
+		else if (value instanceof Double)
+			return factory.numberNode((Double) value);
+		else if (value instanceof Float)
+			return factory.numberNode((Float) value);
+		else if (value instanceof BigInteger)
+			return factory.numberNode((BigInteger) value);
+		else if (value instanceof BigDecimal)
+			return factory.numberNode((BigDecimal) value);
+		else if (value == null || JSONObject.NULL.equals(value))
+			return factory.nullNode();
+		else
+			return factory.textNode(value.toString());
+	}
+
+	/**
+	 * Converts a document for the Object Microservice helpers, which only accept org.json objects.
+	 */
+	public JSONObject toJSONObject(JsonNode node) {
+		JSONObject object = new JSONObject();
+		Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			object.put(field.getKey(), toJSONValue(field.getValue()));
 		}
+		return object;
 	}
+
+	private Object toJSONValue(JsonNode node) {
+		if (node.isObject())
+			return toJSONObject(node);
+		else if (node.isArray()) {
+			JSONArray array = new JSONArray();
+			for (JsonNode item : node)
+				array.put(toJSONValue(item));
+			return array;
+		} else if (node.isTextual())
+			return node.textValue();
+		else if (node.isBoolean())
+			return node.booleanValue();
+		else if (node.isNumber())
+			return node.numberValue();
+		else
+			return JSONObject.NULL;
+	}
+
 }
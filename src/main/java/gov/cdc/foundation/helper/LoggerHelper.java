@@ -1,37 +1,149 @@
 package gov.cdc.foundation.helper;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
 
 import org.apache.log4j.Logger;
 import org.fluentd.logger.FluentLogger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends the logs to Fluentd without blocking the request threads: events are pushed to a bounded
+ * ring buffer and a background thread sends them in batches.
+ */
 @Component
 public class LoggerHelper {
 
-	private static FluentLogger fluent;
-
 	private static final Logger logger = Logger.getLogger(LoggerHelper.class);
 
-	private static String prefix;
-	private static String host;
-	private static int port;
+	public static final String DROP_NEWEST = "newest";
+	public static final String DROP_OLDEST = "oldest";
+
+	private static final long SHUTDOWN_TIMEOUT = 5000;
+
+	private static LoggerHelper instance;
+
+	private final String prefix;
+	private final String host;
+	private final int port;
+	private final int batchSize;
+	private final long flushInterval;
+	private final boolean dropOldest;
+
+	private final RingBuffer<LogEvent> buffer;
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
 
-	private LoggerHelper(@Value("${logging.fluentd.host}") String host, @Value("${logging.fluentd.port}") int port, @Value("${logging.fluentd.prefix}") String prefix) {
+	private final Thread appender;
+	private volatile boolean running = true;
+
+	// Only used by the appender thread
+	private FluentLogger fluent;
+
+	private LoggerHelper(
+		@Value("${logging.fluentd.host}") String host,
+		@Value("${logging.fluentd.port}") int port,
+		@Value("${logging.fluentd.prefix}") String prefix,
+		@Value("${logging.fluentd.buffer.size}") int bufferSize,
+		@Value("${logging.fluentd.batch.size}") int batchSize,
+		@Value("${logging.fluentd.flush.interval}") long flushInterval,
+		@Value("${logging.fluentd.drop.policy}") String dropPolicy,
+		MeterRegistry registry
+	) {
 		logger.debug("Creating logger helper...");
-		LoggerHelper.host = host;
-		LoggerHelper.prefix = prefix;
-		LoggerHelper.port = port;
+		this.host = host;
+		this.prefix = prefix;
+		this.port = port;
+		this.batchSize = Math.max(1, batchSize);
+		this.flushInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushInterval));
+		this.dropOldest = DROP_OLDEST.equalsIgnoreCase(dropPolicy);
+		this.buffer = new RingBuffer<>(bufferSize);
+
+		FunctionCounter.builder("indexing.logging.dropped", dropped, AtomicLong::get).tag("policy", dropOldest ? DROP_OLDEST : DROP_NEWEST).register(registry);
+		FunctionCounter.builder("indexing.logging.sent", sent, AtomicLong::get).register(registry);
+		FunctionCounter.builder("indexing.logging.failed", failed, AtomicLong::get).register(registry);
+		Gauge.builder("indexing.logging.buffer", buffer, RingBuffer::size).register(registry);
+
+		this.appender = new Thread(this::drain, "fluentd-appender");
+		this.appender.setDaemon(true);
+		this.appender.start();
+		instance = this;
 	}
 
 	public static void log(String action, Map<String, Object> data) {
+		LoggerHelper helper = instance;
+		if (helper != null)
+			helper.enqueue(action, data);
+	}
+
+	public static long getDroppedCount() {
+		LoggerHelper helper = instance;
+		return helper != null ? helper.dropped.get() : 0;
+	}
+
+	private void enqueue(String action, Map<String, Object> data) {
+		LogEvent event = new LogEvent(action, new HashMap<>(data), System.currentTimeMillis() / 1000);
+		if (buffer.offer(event))
+			return;
+
+		if (dropOldest) {
+			// Make room by evicting the oldest event, give up if another thread took the slot first
+			if (buffer.poll() != null)
+				dropped.incrementAndGet();
+			if (buffer.offer(event))
+				return;
+		}
+		dropped.incrementAndGet();
+	}
+
+	private void drain() {
+		List<LogEvent> batch = new ArrayList<>(batchSize);
+		while (running || !buffer.isEmpty()) {
+			if (buffer.drainTo(batch, batchSize) == 0) {
+				LockSupport.parkNanos(this, flushInterval);
+				continue;
+			}
+			send(batch);
+			batch.clear();
+		}
 		FluentLogger myLogger = getLogger();
 		if (myLogger != null)
-			myLogger.log(action, data);
+			myLogger.close();
+	}
+
+	private void send(List<LogEvent> batch) {
+		FluentLogger myLogger = getLogger();
+		if (myLogger == null) {
+			failed.addAndGet(batch.size());
+			return;
+		}
+		try {
+			for (LogEvent event : batch) {
+				if (myLogger.log(event.action, event.data, event.timestamp))
+					sent.incrementAndGet();
+				else
+					failed.incrementAndGet();
+			}
+			myLogger.flush();
+		} catch (Exception e) {
+			logger.error(e);
+		}
 	}
 
-	private static FluentLogger getLogger() {
+	private FluentLogger getLogger() {
 		if (fluent == null)
 			try {
 				fluent = FluentLogger.getLogger(prefix, host, port);
@@ -41,4 +153,30 @@ public class LoggerHelper {
 		return fluent;
 	}
 
+	@PreDestroy
+	public void shutdown() {
+		// Stop accepting new batches and send what's left in the buffer
+		running = false;
+		LockSupport.unpark(appender);
+		try {
+			appender.join(SHUTDOWN_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (instance == this)
+			instance = null;
+	}
+
+	private static final class LogEvent {
+		private final String action;
+		private final Map<String, Object> data;
+		private final long timestamp;
+
+		private LogEvent(String action, Map<String, Object> data, long timestamp) {
+			this.action = action;
+			this.data = data;
+			this.timestamp = timestamp;
+		}
+	}
+
 }
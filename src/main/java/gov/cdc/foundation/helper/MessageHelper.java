@@ -16,16 +16,27 @@ public class MessageHelper extends AbstractMessageHelper {
 	public static final String METHOD_INDEX = "index";
 	public static final String METHOD_INDEXOBJECT = "indexObject";
 	public static final String METHOD_INDEXBULKOBJECTS = "indexBulkObjects";
+	public static final String METHOD_INDEXBULKSTREAM = "indexBulkStream";
 	public static final String METHOD_GETOBJECT = "getObject";
 	public static final String METHOD_SEARCHOBJECT = "searchObjects";
+	public static final String METHOD_AGGREGATE = "aggregate";
+	public static final String METHOD_COUNT = "count";
 	public static final String METHOD_DEFINEMAPPING = "defineMapping";
 	public static final String METHOD_CREATEINDEX = "createIndex";
 	public static final String METHOD_DELETEINDEX = "deleteIndex";
+	public static final String METHOD_DELETEOBJECT = "deleteObject";
+	public static final String METHOD_DELETEBULKOBJECTS = "deleteBulkObjects";
+	public static final String METHOD_DELETEBYQUERY = "deleteByQuery";
+	public static final String METHOD_GETTASK = "getTask";
+	public static final String METHOD_REINDEX = "reindex";
 	public static final String METHOD_SCROLL = "scroll";
 	public static final String METHOD_INDEXALL = "indexAll";
+	public static final String METHOD_INGEST = "ingest";
+	public static final String METHOD_INGESTSTREAM = "ingestStream";
 	public static final String METHOD_UPSERTCONFIG = "upsertConfig";
 	public static final String METHOD_GETCONFIG = "getConfig";
 	public static final String METHOD_DELETECONFIG = "deleteConfig";
+	public static final String METHOD_SLOWQUERY = "slowQuery";
 
 	public static final String ERROR_CONFIGURATION_INVALID = "The configuration name is not valid, it must match the following expression: %s";
 	public static final String ERROR_CONFIG_DOESNT_EXIST = "This configuration doesn't exist.";
@@ -38,6 +49,15 @@ public class MessageHelper extends AbstractMessageHelper {
 	public static final String ERROR_NO_TYPE = "The type has not been provided in the configuration file.";
 	public static final String ERROR_NO_OBJECT = "The following object doesn't exist.";
 	public static final String ERROR_BULK_MAX = "The bulk indexing processs accepts a maximum of 100 ids.";
+	public static final String ERROR_INVALID_ID = "This object id is not valid.";
+	public static final String ERROR_NO_ID = "The object id has not been provided.";
+	public static final String ERROR_NOT_AN_OBJECT = "The document must be a JSON object.";
+	public static final String ERROR_OBJECT_NOT_INDEXED = "This object isn't indexed.";
+	public static final String ERROR_NO_QUERY = "The query has not been provided.";
+	public static final String ERROR_TASK_DOESNT_EXIST = "This task doesn't exist.";
+	public static final String ERROR_SAME_INDEX = "The destination index must be different from the current one.";
+	public static final String ERROR_FOREIGN_INDEX = "The destination index must start with the name of the current one followed by '-', and can't be one of its partitions.";
+	public static final String ERROR_TOO_MANY_REQUESTS = "Too many concurrent requests for this configuration, please retry later.";
 
 	public static final String EXCEPTION_ILLEGAL_ARGUMENT = "illegal_argument_exception";
 	public static final String EXCEPTION_PARSE = "parse_exception";
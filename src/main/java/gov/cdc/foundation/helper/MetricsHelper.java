@@ -0,0 +1,128 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+@Component
+public class MetricsHelper {
+
+	private static final Logger logger = Logger.getLogger(MetricsHelper.class);
+
+	public static final String METRIC_ELASTIC = "indexing.elastic.requests";
+	public static final String METRIC_OBJECT = "indexing.object.requests";
+	public static final String METRIC_QUERY_PARSE = "indexing.query.parse";
+	public static final String METRIC_PREPARE_OBJECT = "indexing.object.prepare";
+	public static final String METRIC_ERRORS = "indexing.errors";
+
+	public static final String TAG_CONFIG = "config";
+	public static final String TAG_OPERATION = "operation";
+	public static final String TAG_OUTCOME = "outcome";
+	public static final String TAG_EXCEPTION = "exception";
+
+	public static final String CONFIG_NONE = "none";
+	public static final String CONFIG_OTHER = "other";
+
+	private static final String OUTCOME_SUCCESS = "success";
+	private static final String OUTCOME_ERROR = "error";
+
+	private static MetricsHelper instance;
+
+	private MeterRegistry registry;
+	private int maxConfigTags;
+	private Set<String> knownConfigs = ConcurrentHashMap.newKeySet();
+	// Set while running an operation that mustn't be reported, like the warm-up
+	private final ThreadLocal<Boolean> untimed = new ThreadLocal<>();
+
+	public MetricsHelper(MeterRegistry registry, @Value("${metrics.config.max-tags}") int maxConfigTags) {
+		logger.debug("Creating metrics helper...");
+		this.registry = registry;
+		this.maxConfigTags = maxConfigTags;
+		instance = this;
+	}
+
+	public static MetricsHelper getInstance() {
+		if (instance == null)
+			instance = new MetricsHelper(Metrics.globalRegistry, 0);
+		return instance;
+	}
+
+	public MeterRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Marks a configuration as existing so it can be used as a tag value. Only the first
+	 * `metrics.config.max-tags` configurations get their own series, the other ones are reported as `other`.
+	 */
+	public void registerConfig(String config) {
+		if (config != null && !knownConfigs.contains(config) && knownConfigs.size() < maxConfigTags)
+			knownConfigs.add(config);
+	}
+
+	public String configTag(String config) {
+		if (config == null)
+			return CONFIG_NONE;
+		return knownConfigs.contains(config) ? config : CONFIG_OTHER;
+	}
+
+	public <T, E extends Exception> T time(String name, String operation, Operation<T, E> op) throws E {
+		return time(name, operation, null, op);
+	}
+
+	public <T, E extends Exception> T time(String name, String operation, String config, Operation<T, E> op) throws E {
+		if (untimed.get() != null)
+			return op.execute();
+		long start = System.nanoTime();
+		Exception failure = null;
+		try {
+			return op.execute();
+		} catch (Exception e) {
+			failure = e;
+			throw e;
+		} finally {
+			record(name, operation, config, System.nanoTime() - start, failure);
+		}
+	}
+
+	/**
+	 * Runs an operation without recording the timers of the calls it makes in the current thread.
+	 */
+	public <T, E extends Exception> T untimed(Operation<T, E> op) throws E {
+		if (untimed.get() != null)
+			return op.execute();
+		untimed.set(Boolean.TRUE);
+		try {
+			return op.execute();
+		} finally {
+			untimed.remove();
+		}
+	}
+
+	private void record(String name, String operation, String config, long duration, Exception failure) {
+		String configTag = configTag(config);
+		Timer.builder(name)
+			.tag(TAG_OPERATION, operation)
+			.tag(TAG_CONFIG, configTag)
+			.tag(TAG_OUTCOME, failure == null ? OUTCOME_SUCCESS : OUTCOME_ERROR)
+			.publishPercentileHistogram()
+			.register(registry)
+			.record(duration, TimeUnit.NANOSECONDS);
+
+		if (failure != null)
+			registry.counter(METRIC_ERRORS,
+				TAG_OPERATION, operation,
+				TAG_CONFIG, configTag,
+				TAG_EXCEPTION, failure.getClass().getSimpleName()
+			).increment();
+	}
+
+}
@@ -0,0 +1,8 @@
+package gov.cdc.foundation.helper;
+
+@FunctionalInterface
+public interface Operation<T, E extends Exception> {
+
+	T execute() throws E;
+
+}
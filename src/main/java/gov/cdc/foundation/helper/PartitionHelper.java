@@ -0,0 +1,279 @@
+package gov.cdc.foundation.helper;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.PathNotFoundException;
+
+import gov.cdc.helper.common.ServiceException;
+
+/**
+ * Splits the indices by a date field into rolling indices (`{index}-p-yyyy.MM` by default), searched through an
+ * alias named after the index. The dedicated `-p-` prefix keeps the other indices starting with `{index}-` (archives,
+ * reindex destinations) out of the template, the alias and the deletion. The searches with a range on the date field only target the overlapping indices.
+ */
+public class PartitionHelper {
+
+	private static final Logger logger = Logger.getLogger(PartitionHelper.class);
+
+	public static final String UNDATED = "undated";
+	public static final String SEPARATOR = "-p-";
+
+	private static final String DEFAULT_FORMAT = "yyyy.MM";
+	private static final long PARTITIONS_TTL = TimeUnit.SECONDS.toNanos(30);
+
+	private static PartitionHelper instance;
+
+	// Indices whose template has been created by this instance
+	private final Set<String> templates = ConcurrentHashMap.newKeySet();
+	private final Map<String, Partitions> partitions = new ConcurrentHashMap<>();
+
+	public static PartitionHelper getInstance() {
+		if (instance == null)
+			instance = new PartitionHelper();
+		return instance;
+	}
+
+	public boolean isPartitioned(JsonNode config) {
+		return config.path("elastic").has("partition");
+	}
+
+	/**
+	 * Returns the index to write a mapped document to: the partition of its date, or the index itself if it isn't partitioned.
+	 */
+	public String getIndex(JsonNode config, String index, JsonNode document) throws ServiceException {
+		if (!isPartitioned(config))
+			return index;
+
+		String name = getPrefix(index) + getPartition(config, document);
+		ensureTemplate(index);
+		Partitions known = partitions.get(index);
+		if (known != null && !known.names.contains(name))
+			partitions.remove(index);
+		return name;
+	}
+
+	String getPartition(JsonNode config, JsonNode document) {
+		Partitioning partitioning = new Partitioning(config);
+		JsonNode value;
+		try {
+			Object read = JSONHelper.getInstance().parse(document).read(partitioning.path);
+			value = read instanceof JsonNode ? (JsonNode) read : null;
+		} catch (PathNotFoundException e) {
+			value = null;
+		}
+		Long timestamp = toTimestamp(value);
+		return timestamp != null ? partitioning.formatter.format(Instant.ofEpochMilli(timestamp)) : UNDATED;
+	}
+
+	/**
+	 * Returns the indices to search: the partitions overlapping the ranges on the date field that all the results must
+	 * match, or the index (alias) itself.
+	 */
+	public String getSearchIndices(JsonNode config, String index, JsonNode query) throws ServiceException {
+		if (!isPartitioned(config) || query == null)
+			return index;
+		List<String> selected = select(config, index, query, () -> getPartitions(index));
+		return selected == null || selected.isEmpty() ? index : String.join(",", selected);
+	}
+
+	/**
+	 * Selects the partitions overlapping the ranges of the query, or returns null if the query isn't restricted to a range.
+	 */
+	List<String> select(JsonNode config, String index, JsonNode query, Operation<Collection<String>, ServiceException> partitions) throws ServiceException {
+		Partitioning partitioning = new Partitioning(config);
+
+		long[] bounds = { Long.MIN_VALUE, Long.MAX_VALUE };
+		JsonNode bool = query.path("bool");
+		boolean restricted = restrict(bounds, bool.path("must"), partitioning.field) | restrict(bounds, bool.path("filter"), partitioning.field);
+		if (!restricted)
+			return null;
+
+		List<String> selected = new ArrayList<>();
+		String prefix = getPrefix(index);
+		for (String name : partitions.execute()) {
+			if (!name.startsWith(prefix))
+				continue;
+			ZonedDateTime start;
+			try {
+				start = partitioning.parse(name.substring(prefix.length()));
+			} catch (DateTimeParseException e) {
+				// Undated documents don't match a range
+				continue;
+			}
+			long from = start.toInstant().toEpochMilli();
+			long to = start.plus(1, partitioning.unit).toInstant().toEpochMilli();
+			if (from <= bounds[1] && to > bounds[0])
+				selected.add(name);
+		}
+		Collections.sort(selected);
+		return selected;
+	}
+
+	private boolean restrict(long[] bounds, JsonNode clauses, String field) {
+		boolean restricted = false;
+		for (JsonNode clause : clauses) {
+			JsonNode range = clause.path("range").get(field);
+			if (range == null)
+				continue;
+			Iterator<Map.Entry<String, JsonNode>> operators = range.fields();
+			while (operators.hasNext()) {
+				Map.Entry<String, JsonNode> operator = operators.next();
+				Long value = toTimestamp(operator.getValue());
+				if (value == null)
+					continue;
+				// Inclusive bounds, in milliseconds
+				if (operator.getKey().equals("gte"))
+					bounds[0] = Math.max(bounds[0], value);
+				else if (operator.getKey().equals("gt"))
+					bounds[0] = Math.max(bounds[0], value + 1);
+				else if (operator.getKey().equals("lte"))
+					bounds[1] = Math.min(bounds[1], value);
+				else if (operator.getKey().equals("lt"))
+					bounds[1] = Math.min(bounds[1], value - 1);
+				else
+					continue;
+				restricted = true;
+			}
+		}
+		return restricted;
+	}
+
+	private void ensureTemplate(String index) throws ServiceException {
+		if (templates.contains(index))
+			return;
+		// The partitions are created by the first write and joined to the alias by the template
+		ObjectNode template = JSONHelper.getInstance().createObjectNode();
+		template.put("template", getPrefix(index) + "*");
+		template.putObject("aliases").putObject(index);
+		ElasticHelper.getInstance().putTemplate(index + "-partitions", template);
+		templates.add(index);
+	}
+
+	/**
+	 * Returns the partitions of the index currently in the alias, bypassing the cache.
+	 */
+	public List<String> getPartitionIndices(String index) throws ServiceException {
+		partitions.remove(index);
+		String prefix = getPrefix(index);
+		List<String> names = new ArrayList<>();
+		for (String name : getPartitions(index))
+			if (name.startsWith(prefix))
+				names.add(name);
+		Collections.sort(names);
+		return names;
+	}
+
+	static String getPrefix(String index) {
+		return index + SEPARATOR;
+	}
+
+	private Set<String> getPartitions(String index) throws ServiceException {
+		Partitions known = partitions.get(index);
+		if (known != null && System.nanoTime() - known.loaded < PARTITIONS_TTL)
+			return known.names;
+
+		Set<String> names = ConcurrentHashMap.newKeySet();
+		try {
+			ElasticHelper.getInstance().read(ElasticHelper.getInstance().getAliases(index)).fieldNames().forEachRemaining(names::add);
+		} catch (ServiceException e) {
+			// The alias doesn't exist yet
+			logger.debug(e);
+		} catch (IOException e) {
+			throw new ServiceException(e);
+		}
+		partitions.put(index, new Partitions(names));
+		return names;
+	}
+
+	/**
+	 * Reads a date as epoch milliseconds, from a number or an ISO 8601 string.
+	 */
+	private Long toTimestamp(JsonNode value) {
+		if (value == null || value.isNull())
+			return null;
+		if (value.isNumber())
+			return value.asLong();
+		String text = value.asText();
+		try {
+			if (text.matches("-?\\d+"))
+				return Long.parseLong(text);
+			if (text.length() == 10)
+				return LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+			return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+		} catch (DateTimeParseException | NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static class Partitioning {
+
+		private final String path;
+		private final String field;
+		private final DateTimeFormatter formatter;
+		private final DateTimeFormatter parser;
+		private final ChronoUnit unit;
+
+		private Partitioning(JsonNode config) {
+			JsonNode partition = config.path("elastic").path("partition");
+			String fieldConfig = JSONHelper.getInstance().getString(partition, "field");
+			this.path = fieldConfig.startsWith("$") ? fieldConfig : "$." + fieldConfig;
+			this.field = path.startsWith("$.") ? path.substring(2) : path;
+			String format = partition.has("format") ? JSONHelper.getInstance().getString(partition, "format") : DEFAULT_FORMAT;
+			this.formatter = DateTimeFormatter.ofPattern(format).withZone(ZoneOffset.UTC);
+			// The start of a partition, from its name
+			this.parser = new DateTimeFormatterBuilder()
+				.appendPattern(format)
+				.parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+				.parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+				.toFormatter();
+			if (format.contains("d"))
+				unit = ChronoUnit.DAYS;
+			else if (format.contains("M"))
+				unit = ChronoUnit.MONTHS;
+			else if (format.contains("y"))
+				unit = ChronoUnit.YEARS;
+			else
+				throw new IllegalArgumentException(String.format("The partition format '%s' must contain a year, month or day.", format));
+		}
+
+		private ZonedDateTime parse(String partition) {
+			return LocalDate.parse(partition, parser).atStartOfDay(ZoneOffset.UTC);
+		}
+
+	}
+
+	private static class Partitions {
+
+		private final Set<String> names;
+		private final long loaded = System.nanoTime();
+
+		private Partitions(Set<String> names) {
+			this.names = names;
+		}
+
+	}
+
+}
@@ -5,16 +5,21 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.tracing.Tracer;
 import gov.cdc.helper.common.ServiceException;
 
 @Component
@@ -32,28 +37,46 @@ public class QueryBuilder {
 		return instance;
 	}
 
-	public JSONObject parse(JSONObject config, String query) throws ServiceException {
+	public ObjectNode parse(JsonNode config, String query) throws ServiceException {
+		return Tracer.getInstance().trace("parseQuery", () -> MetricsHelper.getInstance().time(MetricsHelper.METRIC_QUERY_PARSE, "parse", () -> parseQuery(config, query)));
+	}
+
+	/**
+	 * Checks if a parsed query has no clause, and so would match every document.
+	 */
+	public boolean isEmpty(JsonNode query) {
+		if (query == null)
+			return true;
+		Iterator<JsonNode> clauses = query.path("bool").elements();
+		while (clauses.hasNext())
+			if (clauses.next().size() > 0)
+				return false;
+		return true;
+	}
+
+	private ObjectNode parseQuery(JsonNode config, String query) throws ServiceException {
 		logger.debug("Query: " + query);
 
 		if (StringUtils.isEmpty(query))
 			return null;
 
-		JSONObject queryObj = new JSONObject();
-		JSONObject boolObj = JSONHelper.getInstance().getOrCreate(queryObj, "bool");
+		ObjectNode queryObj = JSONHelper.getInstance().createObjectNode();
+		ObjectNode boolObj = JSONHelper.getInstance().getOrCreate(queryObj, "bool");
 
 		// Get filters from config
-		List<JSONObject> postFilters = new ArrayList<>();
-		JSONObject filters = config.getJSONObject("filters");
+		List<JsonNode> postFilters = new ArrayList<>();
 		String processingQuery = (new StringBuilder(query)).toString();
-		for (Object key : filters.keySet()) {
-			JSONObject filter = filters.getJSONObject((String) key);
+		Iterator<Map.Entry<String, JsonNode>> filters = config.path("filters").fields();
+		while (filters.hasNext()) {
+			Map.Entry<String, JsonNode> entry = filters.next();
+			JsonNode filter = entry.getValue();
 			// If it's a traditional filter
-			if (filter.has(QueryBuilder.CONST_REGEX) && filter.get(QueryBuilder.CONST_REGEX) instanceof String) {
-				logger.debug("Applying filter: " + key);
-				JSONObject elkFilter = parseFilter(filter, query);
+			if (filter.path(QueryBuilder.CONST_REGEX).isTextual()) {
+				logger.debug("Applying filter: " + entry.getKey());
+				ObjectNode elkFilter = parseFilter(filter, query, null);
 				append(boolObj, elkFilter);
 				logger.debug(elkFilter);
-				processingQuery = processingQuery.replaceAll((String) filter.get(QueryBuilder.CONST_REGEX), "");
+				processingQuery = processingQuery.replaceAll(filter.get(QueryBuilder.CONST_REGEX).textValue(), "");
 			} else {
 				// If it's a filter that applies on the rest of the query
 				// Save it for later
@@ -63,111 +86,110 @@ public class QueryBuilder {
 
 		String remainingQuery = processingQuery.trim();
 		if (!StringUtils.isEmpty(remainingQuery))
-			for (JSONObject filter : postFilters) {
-				filter.put("value", processingQuery.trim());
-				JSONObject elkFilter = parseFilter(filter, query);
+			for (JsonNode filter : postFilters) {
+				ObjectNode elkFilter = parseFilter(filter, query, remainingQuery);
 				logger.debug(elkFilter);
 				append(boolObj, elkFilter);
 			}
 		return queryObj;
 	}
 
-	private JSONObject parseFilter(JSONObject filter, String query) throws ServiceException {
+	private ObjectNode parseFilter(JsonNode filter, String query, String remainingQuery) throws ServiceException {
 		// Get the list of values
-		List<String> values = extractValues(filter, query);
+		List<String> values = extractValues(filter, query, remainingQuery);
 
 		if (values.isEmpty())
 			return null;
 
-		List<JSONObject> elkFilters = new ArrayList<>();
-		String clause = filter.getString("clause");
-		String queryType = filter.getString("queryType");
+		JSONHelper json = JSONHelper.getInstance();
+		List<ObjectNode> elkFilters = new ArrayList<>();
+		String clause = json.getString(filter, "clause");
+		String queryType = json.getString(filter, "queryType");
 
 		for (String value : values) {
 			// Check if we need to transform the value
-			Object newValue = value;
+			JsonNode newValue = json.getMapper().getNodeFactory().textNode(value);
 			if (filter.has("transform"))
-				newValue = transform(filter.getJSONObject("transform"), value);
+				newValue = transform(filter.get("transform"), value);
 
 			// Create the query type
-			JSONObject queryObj;
+			ObjectNode queryObj;
 			if ("multi_match".equalsIgnoreCase(queryType))
 				queryObj = createMultiMatchQuery(filter, newValue);
 			else if ("range".equalsIgnoreCase(queryType))
 				queryObj = createRangeQuery(filter, newValue);
+			else if ("term".equalsIgnoreCase(queryType))
+				queryObj = createTermQuery(filter, newValue);
 			else
 				throw new ServiceException("The following query type is not supported: " + queryType);
 
 			// Build the clause
-			JSONObject clauseObj = new JSONObject();
-			clauseObj.put(queryType, queryObj);
+			ObjectNode clauseObj = json.createObjectNode();
+			clauseObj.set(queryType, queryObj);
 
 			elkFilters.add(clauseObj);
 		}
 
 		if (elkFilters.size() == 1) {
-			JSONObject parentQuery = new JSONObject();
+			ObjectNode parentQuery = json.createObjectNode();
 
 			// Create the clause
-			JSONArray clauseObjects = new JSONArray();
-			parentQuery.put(clause, clauseObjects);
-			clauseObjects.put(elkFilters.get(0));
+			parentQuery.putArray(clause).add(elkFilters.get(0));
 
 			return parentQuery;
 		} else {
 			// We need to build a SHOULD query
-			JSONObject parentQuery = new JSONObject();
-			JSONArray shouldItems = new JSONArray();
-			parentQuery.put(clause, shouldItems);
+			ObjectNode parentQuery = json.createObjectNode();
+			ArrayNode shouldItems = parentQuery.putArray(clause);
 
-			JSONArray filters = new JSONArray();
-			for (JSONObject elkFilter : elkFilters) {
-				filters.put(elkFilter);
-			}
-			JSONObject shouldItem = new JSONObject();
-			shouldItem.put("bool", new JSONObject());
-			shouldItem.getJSONObject("bool").put("should", filters);
-			shouldItems.put(shouldItem);
+			ObjectNode shouldItem = shouldItems.addObject();
+			ArrayNode filters = shouldItem.putObject("bool").putArray("should");
+			filters.addAll(elkFilters);
 
 			return parentQuery;
 		}
 	}
 
-	private List<String> extractValues(JSONObject filter, String query) {
+	private List<String> extractValues(JsonNode filter, String query, String remainingQuery) {
 		List<String> values = new ArrayList<>();
-		if (filter.has(QueryBuilder.CONST_REGEX) && filter.get(QueryBuilder.CONST_REGEX) instanceof String) {
-			String regex = filter.getString(QueryBuilder.CONST_REGEX);
+		if (filter.path(QueryBuilder.CONST_REGEX).isTextual()) {
+			String regex = filter.get(QueryBuilder.CONST_REGEX).textValue();
 			Pattern p = Pattern.compile(regex);
 			Matcher m = p.matcher(query);
-			int group = filter.getInt("regexGroup");
+			int group = filter.path("regexGroup").asInt();
 			while (m.find()) {
 				values.add(m.group(group));
 			}
 			if (group == 0 && !values.isEmpty())
 				values = Collections.singletonList(values.get(0));
 		} else {
-			values.add(filter.getString("value"));
+			values.add(remainingQuery);
 		}
 		return values;
 	}
 
-	public Object transform(JSONObject config, String value) throws ServiceException {
-		if ("date".equalsIgnoreCase(config.getString("from")))
+	/**
+	 * Transforms a value as described in the configuration, returns null when there is no value to set.
+	 */
+	public JsonNode transform(JsonNode config, String value) throws ServiceException {
+		String from = JSONHelper.getInstance().getString(config, "from");
+		if ("date".equalsIgnoreCase(from))
 			return transformDate(config, value);
-		else if ("string".equalsIgnoreCase(config.getString("from")))
+		else if ("string".equalsIgnoreCase(from))
 			return transformString(config, value);
 		else
-			throw new ServiceException("Impossible to transform the following type: " + config.getString("from"));
+			throw new ServiceException("Impossible to transform the following type: " + from);
 	}
 
-	private Object transformDate(JSONObject config, String value) throws ServiceException {
-		if ("timestamp".equalsIgnoreCase(config.getString("to"))) {
+	private JsonNode transformDate(JsonNode config, String value) throws ServiceException {
+		String to = JSONHelper.getInstance().getString(config, "to");
+		if ("timestamp".equalsIgnoreCase(to)) {
 			if (!StringUtils.isEmpty(value)) {
-				String format = config.getString("format");
+				String format = JSONHelper.getInstance().getString(config, "format");
 				SimpleDateFormat df = new SimpleDateFormat(format);
 				try {
 					Date date = df.parse(value);
-					return date.getTime();
+					return JSONHelper.getInstance().getMapper().getNodeFactory().numberNode(date.getTime());
 				} catch (ParseException e) {
 					logger.error(e);
 					throw new ServiceException(e);
@@ -175,54 +197,61 @@ public class QueryBuilder {
 			} else
 				return null;
 		} else
-			throw new ServiceException("Impossible to transform a date to the following type: " + config.getString("to"));
+			throw new ServiceException("Impossible to transform a date to the following type: " + to);
 	}
 
-	private Object transformString(JSONObject config, String value) throws ServiceException {
-		if ("string".equalsIgnoreCase(config.getString("to"))) {
+	private JsonNode transformString(JsonNode config, String value) throws ServiceException {
+		String to = JSONHelper.getInstance().getString(config, "to");
+		if ("string".equalsIgnoreCase(to)) {
 			String newValue = (new StringBuilder(value)).toString();
-			if (config.has(QueryBuilder.CONST_REGEX)) {
-				String regex = config.getString(QueryBuilder.CONST_REGEX);
-				String replacement = config.has("replacement") ? config.getString("replacement") : "";
-				return newValue.replaceAll(regex, replacement);
+			if (config.hasNonNull(QueryBuilder.CONST_REGEX)) {
+				String regex = JSONHelper.getInstance().getString(config, QueryBuilder.CONST_REGEX);
+				String replacement = config.has("replacement") ? JSONHelper.getInstance().getString(config, "replacement") : "";
+				newValue = newValue.replaceAll(regex, replacement);
 			}
-			return newValue;
+			return JSONHelper.getInstance().getMapper().getNodeFactory().textNode(newValue);
 		} else
-			throw new ServiceException("Impossible to transform a string to the following type: " + config.getString("to"));
+			throw new ServiceException("Impossible to transform a string to the following type: " + to);
 	}
 
-	private JSONObject createMultiMatchQuery(JSONObject filter, Object value) {
-		JSONObject query = new JSONObject();
-		query.put("query", value);
-		query.put("fields", filter.getJSONArray("fields"));
+	private ObjectNode createMultiMatchQuery(JsonNode filter, JsonNode value) {
+		ObjectNode query = JSONHelper.getInstance().createObjectNode();
+		if (value != null)
+			query.set("query", value);
+		query.set("fields", filter.get("fields"));
 		return query;
 	}
 
-	private JSONObject createRangeQuery(JSONObject filter, Object value) {
-		JSONObject query = new JSONObject();
-		JSONObject operator = new JSONObject();
-		operator.put(filter.getString("operator"), value);
-		query.put(filter.getString("field"), operator);
+	private ObjectNode createRangeQuery(JsonNode filter, JsonNode value) {
+		ObjectNode query = JSONHelper.getInstance().createObjectNode();
+		ObjectNode operator = query.putObject(JSONHelper.getInstance().getString(filter, "field"));
+		if (value != null)
+			operator.set(JSONHelper.getInstance().getString(filter, "operator"), value);
 		return query;
 	}
 
-	private void append(JSONObject parent, JSONObject child) throws ServiceException {
+	private ObjectNode createTermQuery(JsonNode filter, JsonNode value) {
+		ObjectNode query = JSONHelper.getInstance().createObjectNode();
+		if (value != null)
+			query.set(JSONHelper.getInstance().getString(filter, "field"), value);
+		return query;
+	}
+
+	private void append(ObjectNode parent, ObjectNode child) throws ServiceException {
 		if (child != null) {
-			String clause = (String) child.keySet().toArray()[0];
+			String clause = child.fieldNames().next();
 			if (parent.has(clause)) {
 				addAll(parent, child, clause);
 			} else
-				parent.put(clause, child.get(clause));
+				parent.set(clause, child.get(clause));
 		}
 	}
 
-	private void addAll(JSONObject parent, JSONObject child, String clause) throws ServiceException {
-		Object clauses = parent.get(clause);
-		if (clauses instanceof JSONArray) {
-			JSONArray newClauses = child.getJSONArray(clause);
-			for (int i = 0; i < newClauses.length(); i++)
-				((JSONArray) clauses).put(newClauses.get(i));
-		} else
+	private void addAll(ObjectNode parent, ObjectNode child, String clause) throws ServiceException {
+		JsonNode clauses = parent.get(clause);
+		if (clauses.isArray())
+			((ArrayNode) clauses).addAll((ArrayNode) child.get(clause));
+		else
 			throw new ServiceException("Unsupported append operation.");
 	}
 
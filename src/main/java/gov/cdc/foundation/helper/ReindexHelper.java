@@ -0,0 +1,134 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builds the Elasticsearch `_reindex` requests, applying the mapping of a configuration with a painless script instead
+ * of going through the Object Microservice.
+ */
+public class ReindexHelper {
+
+	private static ReindexHelper instance;
+
+	// Only plain paths can be evaluated in the script: $.a.b
+	private static final Pattern SIMPLE_PATH = Pattern.compile("^\\$(\\.[^.\\[\\]*]+)+$");
+
+	// Same rules as the mapping applied by the service: only the strings are concatenated, each followed by the separator
+	private static final String SCRIPT = String.join("\n",
+		"def src = ctx._source;",
+		"for (def item : params.sets) {",
+		"  StringBuilder sb = new StringBuilder();",
+		"  for (def field : item.fields) {",
+		"    def value = src;",
+		"    for (def key : field) { value = value instanceof Map ? value.get(key) : null; }",
+		"    if (value instanceof List) {",
+		"      for (def element : value) { if (element instanceof String && !element.isEmpty()) { sb.append(element).append(item.separator); } }",
+		"    } else if (value instanceof String && !value.isEmpty()) {",
+		"      sb.append(value).append(item.separator);",
+		"    }",
+		"  }",
+		"  def target = src;",
+		"  for (int i = 0; i < item.path.size() - 1; i++) {",
+		"    if (!(target.get(item.path.get(i)) instanceof Map)) { target.put(item.path.get(i), new HashMap()); }",
+		"    target = target.get(item.path.get(i));",
+		"  }",
+		"  target.put(item.path.get(item.path.size() - 1), sb.toString());",
+		"}",
+		"for (def path : params.unsets) {",
+		"  def target = src;",
+		"  for (int i = 0; i < path.size() - 1 && target instanceof Map; i++) { target = target.get(path.get(i)); }",
+		"  if (target instanceof Map) { target.remove(path.get(path.size() - 1)); }",
+		"}",
+		"if (params.hash != null) { src.remove(params.hash); }"
+	);
+
+	public static ReindexHelper getInstance() {
+		if (instance == null)
+			instance = new ReindexHelper();
+		return instance;
+	}
+
+	/**
+	 * Builds the body of a reindex from one index to another, with the script of the mapping if requested.
+	 * The destination must belong to the family of the source (`{source}-...`) without being one of its partitions, so the
+	 * documents of a configuration can't be copied into the index of another one.
+	 */
+	public ObjectNode request(JsonNode config, String source, String dest, boolean applyMapping) {
+		if (source.equals(dest))
+			throw new IllegalArgumentException(MessageHelper.ERROR_SAME_INDEX);
+		if (!dest.startsWith(source + "-") || dest.startsWith(PartitionHelper.getPrefix(source)))
+			throw new IllegalArgumentException(MessageHelper.ERROR_FOREIGN_INDEX);
+
+		ObjectNode body = JSONHelper.getInstance().createObjectNode();
+		body.putObject("source").put("index", source);
+		body.putObject("dest").put("index", dest);
+		if (applyMapping) {
+			ObjectNode script = script(config);
+			if (script != null)
+				body.set("script", script);
+		}
+		return body;
+	}
+
+	/**
+	 * Translates the `$set` and `$unset` of a mapping to a painless script, or returns null if there's nothing to apply.
+	 * The transforms and the JsonPath expressions other than plain paths can't be translated.
+	 */
+	public ObjectNode script(JsonNode config) {
+		JsonNode mapping = config.get("mapping");
+		if (mapping == null || (!mapping.has("$set") && !mapping.has("$unset")))
+			return null;
+
+		ObjectNode script = JSONHelper.getInstance().createObjectNode();
+		script.put("lang", "painless");
+		script.put("inline", SCRIPT);
+		ObjectNode params = script.putObject("params");
+
+		ArrayNode sets = params.putArray("sets");
+		Iterator<Map.Entry<String, JsonNode>> elements = mapping.path("$set").fields();
+		while (elements.hasNext()) {
+			Map.Entry<String, JsonNode> element = elements.next();
+			JsonNode elementConfig = element.getValue();
+			if (elementConfig.has("transform"))
+				throw new IllegalArgumentException(String.format("The transform of '%s' can't be applied by Elasticsearch.", element.getKey()));
+
+			ObjectNode set = sets.addObject();
+			set.set("path", split(element.getKey()));
+			set.put("separator", elementConfig.has("separator") ? JSONHelper.getInstance().getString(elementConfig, "separator") : "");
+			ArrayNode fields = set.putArray("fields");
+			for (JsonNode field : elementConfig.path("fields")) {
+				String path = field.asText();
+				if (!SIMPLE_PATH.matcher(path).matches())
+					throw new IllegalArgumentException(String.format("The path '%s' can't be evaluated by Elasticsearch.", path));
+				fields.add(split(path.substring(2)));
+			}
+		}
+
+		ArrayNode unsets = params.putArray("unsets");
+		for (JsonNode key : mapping.path("$unset"))
+			unsets.add(split(key.asText()));
+
+		// The documents are modified, their hash doesn't match anymore
+		HashHelper hashes = HashHelper.getInstance();
+		if (hashes.isEnabled())
+			params.put("hash", hashes.getField());
+		else
+			params.putNull("hash");
+
+		return script;
+	}
+
+	private ArrayNode split(String key) {
+		ArrayNode path = JSONHelper.getInstance().getMapper().createArrayNode();
+		for (String part : key.split("\\."))
+			path.add(part);
+		return path;
+	}
+
+}
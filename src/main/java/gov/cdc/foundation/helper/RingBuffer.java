@@ -0,0 +1,94 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer queue backed by a power-of-two array.
+ * Each slot carries a sequence number telling producers and consumers whether it can be written or read,
+ * so `offer` never blocks and simply fails when the buffer is full.
+ */
+public class RingBuffer<E> {
+
+	private final int mask;
+	private final AtomicReferenceArray<E> items;
+	private final AtomicLongArray sequences;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	public RingBuffer(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity must be positive.");
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+		this.mask = size - 1;
+		this.items = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean offer(E item) {
+		if (item == null)
+			throw new NullPointerException();
+		while (true) {
+			long position = tail.get();
+			int slot = (int) position & mask;
+			long diff = sequences.get(slot) - position;
+			if (diff == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					items.set(slot, item);
+					sequences.set(slot, position + 1);
+					return true;
+				}
+			} else if (diff < 0) {
+				// The consumer hasn't released this slot yet: the buffer is full
+				return false;
+			}
+		}
+	}
+
+	public E poll() {
+		while (true) {
+			long position = head.get();
+			int slot = (int) position & mask;
+			long diff = sequences.get(slot) - (position + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					E item = items.getAndSet(slot, null);
+					sequences.set(slot, position + capacity());
+					return item;
+				}
+			} else if (diff < 0) {
+				return null;
+			}
+		}
+	}
+
+	public int drainTo(Collection<? super E> target, int max) {
+		int count = 0;
+		E item;
+		while (count < max && (item = poll()) != null) {
+			target.add(item);
+			count++;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,91 @@
+package gov.cdc.foundation.helper;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jayway.jsonpath.PathNotFoundException;
+
+/**
+ * Applies the custom routing of a configuration: the documents are routed by the value of a field, and the searches
+ * pinning this field to exact values only query the matching shards.
+ */
+public class RoutingHelper {
+
+	private static RoutingHelper instance;
+
+	public static RoutingHelper getInstance() {
+		if (instance == null)
+			instance = new RoutingHelper();
+		return instance;
+	}
+
+	public boolean isRouted(JsonNode config) {
+		return config.has("routing");
+	}
+
+	/**
+	 * Returns the routing of a mapped document, or null if it isn't routed.
+	 */
+	public String getRouting(JsonNode config, JsonNode document) {
+		if (!isRouted(config))
+			return null;
+		try {
+			Object value = JSONHelper.getInstance().parse(document).read(getPath(config));
+			if (value instanceof JsonNode && ((JsonNode) value).isValueNode() && !((JsonNode) value).isNull())
+				return ((JsonNode) value).asText();
+		} catch (PathNotFoundException e) {
+			// Routed by id
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the routing of a search, when one of the clauses all the results must match pins the routing field to
+	 * exact values, or null to search all the shards.
+	 */
+	public String getSearchRouting(JsonNode config, JsonNode query) {
+		if (!isRouted(config) || query == null)
+			return null;
+		String field = getPath(config).substring(2);
+		JsonNode bool = query.path("bool");
+		for (String clause : new String[] { "must", "filter" })
+			for (JsonNode item : bool.path(clause)) {
+				Set<String> values = getValues(item, field);
+				if (values != null && !values.isEmpty())
+					return String.join(",", values);
+			}
+		return null;
+	}
+
+	private Set<String> getValues(JsonNode clause, String field) {
+		Set<String> values = new LinkedHashSet<>();
+		if (clause.has("term")) {
+			JsonNode term = clause.get("term").get(field);
+			if (term == null)
+				return null;
+			values.add((term.isObject() ? term.path("value") : term).asText());
+		} else if (clause.has("terms")) {
+			JsonNode terms = clause.get("terms").get(field);
+			if (terms == null || !terms.isArray())
+				return null;
+			terms.forEach(term -> values.add(term.asText()));
+		} else if (clause.path("bool").has("should") && clause.size() == 1 && clause.get("bool").size() == 1) {
+			// Several values of the same filter: each alternative must pin the field
+			for (JsonNode alternative : clause.get("bool").get("should")) {
+				Set<String> alternatives = getValues(alternative, field);
+				if (alternatives == null)
+					return null;
+				values.addAll(alternatives);
+			}
+		} else
+			return null;
+		return values;
+	}
+
+	private String getPath(JsonNode config) {
+		String field = JSONHelper.getInstance().getString(config.get("routing"), "field");
+		return field.startsWith("$.") ? field : "$." + field;
+	}
+
+}
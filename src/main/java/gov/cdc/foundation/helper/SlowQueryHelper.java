@@ -0,0 +1,181 @@
+package gov.cdc.foundation.helper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import gov.cdc.foundation.tracing.Tracer;
+
+/**
+ * Reports the requests slower than the threshold of their endpoint with the details needed to understand them:
+ * the user query, the compiled Elasticsearch query and a breakdown of the time spent.
+ */
+@Component
+public class SlowQueryHelper {
+
+	private static final Logger logger = Logger.getLogger(SlowQueryHelper.class);
+
+	private static SlowQueryHelper instance;
+
+	private final long defaultThreshold;
+	private final Map<String, Long> thresholds = new HashMap<>();
+	private final double sampleRate;
+	private final double rateLimit;
+	private final LongSupplier clock;
+	private final DoubleSupplier random;
+
+	// Token bucket used to rate-limit the records
+	private double tokens;
+	private long lastRefill;
+
+	@Autowired
+	public SlowQueryHelper(
+		@Value("${slowquery.threshold}") long defaultThreshold,
+		@Value("${slowquery.thresholds}") String thresholds,
+		@Value("${slowquery.sample.rate}") double sampleRate,
+		@Value("${slowquery.rate.limit}") double rateLimit
+	) {
+		this(defaultThreshold, thresholds, sampleRate, rateLimit, System::nanoTime, () -> ThreadLocalRandom.current().nextDouble());
+		instance = this;
+	}
+
+	SlowQueryHelper(long defaultThreshold, String thresholds, double sampleRate, double rateLimit, LongSupplier clock, DoubleSupplier random) {
+		this.defaultThreshold = defaultThreshold;
+		this.sampleRate = sampleRate;
+		this.rateLimit = rateLimit;
+		this.clock = clock;
+		this.random = random;
+		// Holds at least one token, or a limit under one per second would never record anything
+		this.tokens = Math.max(1, rateLimit);
+		this.lastRefill = clock.getAsLong();
+
+		// Format: method:threshold,method:threshold
+		if (!StringUtils.isEmpty(thresholds))
+			for (String item : thresholds.split(",")) {
+				String[] parts = item.split(":");
+				// Skipped, the method keeps the default threshold
+				if (parts.length != 2) {
+					logger.warn("Invalid slow query threshold: " + item);
+					continue;
+				}
+				try {
+					this.thresholds.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+				} catch (NumberFormatException e) {
+					logger.warn("Invalid slow query threshold: " + item);
+				}
+			}
+	}
+
+	public static SlowQueryHelper getInstance() {
+		if (instance == null)
+			instance = new SlowQueryHelper(0, null, 0, 0);
+		return instance;
+	}
+
+	public long getThreshold(String method) {
+		Long threshold = thresholds.get(method);
+		return threshold != null ? threshold : defaultThreshold;
+	}
+
+	public Request start(String method, String config) {
+		return new Request(method, config);
+	}
+
+	public void finish(Request request) {
+		long totalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - request.start);
+		if (!isRecorded(request.method, totalTime))
+			return;
+		long threshold = getThreshold(request.method);
+
+		Map<String, Object> log = MessageHelper.initializeLog(request.method, request.config);
+		log.put("query", request.query);
+		if (request.elasticQuery != null)
+			log.put("elasticQuery", request.elasticQuery.toString());
+		log.put("elasticTook", request.elasticTook);
+		log.put("hydrationTime", TimeUnit.NANOSECONDS.toMillis(request.hydrationTime));
+		log.put("totalTime", totalTime);
+		log.put("threshold", threshold);
+		log.put("responseSize", request.responseSize);
+		log.put("traceId", request.traceId);
+
+		logger.warn(new JSONObject(log).toString());
+		LoggerHelper.log(MessageHelper.METHOD_SLOWQUERY, log);
+	}
+
+	/**
+	 * Checks if a request taking the time (in milliseconds) is over its threshold, sampled and within the rate limit.
+	 */
+	boolean isRecorded(String method, long totalTime) {
+		long threshold = getThreshold(method);
+		if (threshold <= 0 || totalTime < threshold)
+			return false;
+		if (sampleRate < 1 && random.getAsDouble() >= sampleRate)
+			return false;
+		return acquire();
+	}
+
+	private synchronized boolean acquire() {
+		if (rateLimit <= 0)
+			return true;
+		long now = clock.getAsLong();
+		tokens = Math.min(Math.max(1, rateLimit), tokens + (now - lastRefill) / 1e9 * rateLimit);
+		lastRefill = now;
+		if (tokens < 1)
+			return false;
+		tokens--;
+		return true;
+	}
+
+	public static class Request {
+		private final long start = System.nanoTime();
+		private final String method;
+		private final String config;
+		private final String traceId = Tracer.getInstance().currentTraceId();
+		private String query;
+		private Object elasticQuery;
+		private long elasticTook = -1;
+		private long hydrationTime;
+		private long responseSize = -1;
+
+		private Request(String method, String config) {
+			this.method = method;
+			this.config = config;
+		}
+
+		public Request query(String query) {
+			this.query = query;
+			return this;
+		}
+
+		public Request elasticQuery(Object elasticQuery) {
+			this.elasticQuery = elasticQuery;
+			return this;
+		}
+
+		public Request elasticTook(long took) {
+			this.elasticTook = took;
+			return this;
+		}
+
+		public Request hydrationTime(long nanos) {
+			this.hydrationTime += nanos;
+			return this;
+		}
+
+		public Request responseSize(long size) {
+			this.responseSize = size;
+			return this;
+		}
+	}
+
+}
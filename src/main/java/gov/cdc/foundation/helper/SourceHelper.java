@@ -0,0 +1,164 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies the `source` section of a configuration: the `_source` fields returned by default, the doc values added to
+ * the hits, and the parts of the Elasticsearch responses to keep. The hash field of the documents is never returned.
+ */
+public class SourceHelper {
+
+	private static final String HITS = "hits.hits.";
+
+	// Read by the service itself, kept in every trimmed search response
+	private static final List<String> SEARCH_PATHS = Arrays.asList("took", "_scroll_id", "error", "hits.hits._id");
+	private static final List<String> GET_PATHS = Arrays.asList("_id", "found", "error");
+
+	private static SourceHelper instance;
+
+	public static SourceHelper getInstance() {
+		if (instance == null)
+			instance = new SourceHelper();
+		return instance;
+	}
+
+	/**
+	 * Returns the options to add to the body of a search, before the ones appended by the configuration, or null if
+	 * there's none. The requested fields replace the default includes.
+	 */
+	public ObjectNode getSearchBody(JsonNode config, String fields, JsonNode append) {
+		ObjectNode body = JSONHelper.getInstance().createObjectNode();
+		JsonNode source = config.path("source");
+
+		ArrayNode includes = getIncludes(source, fields);
+		JsonNode excludes = source.path("excludes");
+		if (includes.size() > 0 || excludes.size() > 0) {
+			ObjectNode filter = body.putObject("_source");
+			if (includes.size() > 0)
+				filter.set("includes", includes);
+			if (excludes.size() > 0)
+				filter.set("excludes", excludes.deepCopy());
+		}
+		if (source.path("docvalueFields").size() > 0)
+			body.set("docvalue_fields", source.get("docvalueFields").deepCopy());
+
+		if (append != null)
+			body.setAll((ObjectNode) append);
+		excludeHash(body);
+		return body.size() > 0 ? body : null;
+	}
+
+	/**
+	 * Adds the hash field to the `_source` excludes of a search when the hashes are enabled, whatever the form of the
+	 * `_source` option appended by the configuration.
+	 */
+	private void excludeHash(ObjectNode body) {
+		HashHelper hashes = HashHelper.getInstance();
+		if (!hashes.isEnabled())
+			return;
+
+		JsonNode filter = body.get("_source");
+		ObjectNode excluding;
+		if (filter == null || (filter.isBoolean() && filter.booleanValue()))
+			excluding = JSONHelper.getInstance().createObjectNode();
+		else if (filter.isBoolean())
+			// Nothing returned
+			return;
+		else if (filter.isObject())
+			// Copied, the appended options belong to the configuration
+			excluding = (ObjectNode) filter.deepCopy();
+		else {
+			excluding = JSONHelper.getInstance().createObjectNode();
+			excluding.set("includes", filter.deepCopy());
+		}
+
+		ArrayNode excludes = JSONHelper.getInstance().getMapper().createArrayNode();
+		JsonNode current = excluding.path("excludes");
+		if (current.isArray())
+			excludes.addAll((ArrayNode) current);
+		else if (current.isTextual())
+			excludes.add(current);
+		excludes.add(hashes.getField());
+		excluding.set("excludes", excludes);
+		body.set("_source", excluding);
+	}
+
+	/**
+	 * Returns the parameters trimming a search or scroll response.
+	 */
+	public Map<String, String> getSearchParams(JsonNode config) {
+		JsonNode source = config.path("source");
+		JsonNode filterPath = source.path("filterPath");
+		if (filterPath.size() == 0)
+			return Collections.emptyMap();
+
+		Set<String> paths = new LinkedHashSet<>(SEARCH_PATHS);
+		filterPath.forEach(path -> paths.add(path.asText()));
+		if (source.path("docvalueFields").size() > 0)
+			paths.add(HITS + "fields");
+		return Collections.singletonMap("filter_path", String.join(",", paths));
+	}
+
+	/**
+	 * Returns the parameters filtering and trimming the response of a get. The paths of the hits in `filterPath` apply
+	 * to the document.
+	 */
+	public Map<String, String> getGetParams(JsonNode config, String fields) {
+		Map<String, String> params = new HashMap<>();
+		JsonNode source = config.path("source");
+
+		ArrayNode includes = getIncludes(source, fields);
+		if (includes.size() > 0)
+			params.put("_source_include", join(includes));
+		ArrayNode excludes = JSONHelper.getInstance().getMapper().createArrayNode();
+		source.path("excludes").forEach(excludes::add);
+		if (HashHelper.getInstance().isEnabled())
+			excludes.add(HashHelper.getInstance().getField());
+		if (excludes.size() > 0)
+			params.put("_source_exclude", join(excludes));
+
+		Set<String> paths = new LinkedHashSet<>();
+		for (JsonNode path : source.path("filterPath"))
+			if (path.asText().startsWith(HITS))
+				paths.add(path.asText().substring(HITS.length()));
+		if (!paths.isEmpty()) {
+			paths.addAll(GET_PATHS);
+			params.put("filter_path", String.join(",", paths));
+		}
+		return params;
+	}
+
+	private ArrayNode getIncludes(JsonNode source, String fields) {
+		ArrayNode includes = JSONHelper.getInstance().getMapper().createArrayNode();
+		if (!StringUtils.isEmpty(fields)) {
+			for (String field : fields.split(","))
+				if (!field.trim().isEmpty())
+					includes.add(field.trim());
+		} else
+			source.path("includes").forEach(includes::add);
+		return includes;
+	}
+
+	private String join(JsonNode values) {
+		StringBuilder sb = new StringBuilder();
+		for (JsonNode value : values) {
+			if (sb.length() > 0)
+				sb.append(',');
+			sb.append(value.asText());
+		}
+		return sb.toString();
+	}
+
+}
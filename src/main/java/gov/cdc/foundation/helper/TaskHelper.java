@@ -0,0 +1,54 @@
+package gov.cdc.foundation.helper;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import gov.cdc.helper.common.ServiceException;
+
+/**
+ * Reads the Elasticsearch tasks started by the service (delete by query, reindex), so a configuration only gives access
+ * to its own tasks.
+ */
+public class TaskHelper {
+
+	// The indices read by the task: "delete-by-query [events]" or "reindex from [events] to [events-v2]"
+	private static final Pattern SOURCE = Pattern.compile("^[^\\[]*\\[([^\\]]*)\\]");
+
+	private static TaskHelper instance;
+
+	public static TaskHelper getInstance() {
+		if (instance == null)
+			instance = new TaskHelper();
+		return instance;
+	}
+
+	/**
+	 * Checks if a task read from the tasks API works on the index (or the alias of its partitions).
+	 */
+	public boolean belongsTo(JsonNode task, String index) {
+		Matcher matcher = SOURCE.matcher(task.path("task").path("description").asText(""));
+		if (!matcher.find())
+			return false;
+		String prefix = PartitionHelper.getPrefix(index);
+		for (String source : matcher.group(1).split(",")) {
+			String name = source.trim();
+			if (name.equals(index) || name.startsWith(prefix))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the tasks API failed because the task doesn't exist, or because its id isn't valid.
+	 */
+	public boolean isNotFound(ServiceException e) {
+		JSONObject error = e.getObj() != null ? e.getObj().optJSONObject(MessageHelper.CONST_ERROR) : null;
+		String type = error != null ? error.optString(MessageHelper.CONST_TYPE) : null;
+		return "resource_not_found_exception".equals(type) || "illegal_argument_exception".equals(type);
+	}
+
+}
@@ -0,0 +1,23 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.web.servlet.HandlerMapping;
+
+public class WebHelper {
+
+	private WebHelper() {
+		throw new IllegalAccessError("Helper class");
+	}
+
+	@SuppressWarnings("unchecked")
+	public static String getPathVariable(HttpServletRequest request, String name) {
+		Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		if (variables instanceof Map)
+			return ((Map<String, String>) variables).get(name);
+		return null;
+	}
+
+}
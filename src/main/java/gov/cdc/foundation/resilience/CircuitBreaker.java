@@ -0,0 +1,135 @@
+package gov.cdc.foundation.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker opening after a number of consecutive failures. Once the open duration has elapsed, a
+ * limited number of probe calls are let through (half-open): a successful probe closes the breaker and a
+ * failed one opens it again. The probes that never report back are given up after the open duration.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String name;
+	private final int failureThreshold;
+	private final long openDuration;
+	private final int halfOpenProbes;
+	private final LongSupplier clock;
+
+	private volatile State state = State.CLOSED;
+	private volatile int consecutiveFailures;
+	private long openedAt;
+	private long halfOpenedAt;
+	private int probes;
+	private volatile long trips;
+
+	public CircuitBreaker(String name, int failureThreshold, long openDuration, int halfOpenProbes) {
+		this(name, failureThreshold, openDuration, halfOpenProbes, System::nanoTime);
+	}
+
+	CircuitBreaker(String name, int failureThreshold, long openDuration, int halfOpenProbes, LongSupplier clock) {
+		this.name = name;
+		this.failureThreshold = failureThreshold;
+		this.openDuration = TimeUnit.MILLISECONDS.toNanos(openDuration);
+		this.halfOpenProbes = Math.max(1, halfOpenProbes);
+		this.clock = clock;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isEnabled() {
+		return failureThreshold > 0;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public long getTrips() {
+		return trips;
+	}
+
+	public boolean tryAcquire() {
+		// Lock-free path for the common case
+		if (state == State.CLOSED)
+			return true;
+		synchronized (this) {
+			if (state == State.OPEN) {
+				if (clock.getAsLong() - openedAt < openDuration)
+					return false;
+				state = State.HALF_OPEN;
+				halfOpenedAt = clock.getAsLong();
+				probes = 0;
+			}
+			if (state == State.HALF_OPEN) {
+				if (probes >= halfOpenProbes) {
+					if (clock.getAsLong() - halfOpenedAt < openDuration)
+						return false;
+					// The probes are stuck, let new ones through
+					halfOpenedAt = clock.getAsLong();
+					probes = 0;
+				}
+				probes++;
+			}
+			return true;
+		}
+	}
+
+	public void onSuccess() {
+		if (state == State.CLOSED && consecutiveFailures == 0)
+			return;
+		synchronized (this) {
+			consecutiveFailures = 0;
+			if (state == State.HALF_OPEN)
+				state = State.CLOSED;
+		}
+	}
+
+	public void onFailure() {
+		if (!isEnabled())
+			return;
+		synchronized (this) {
+			if (state == State.HALF_OPEN)
+				open();
+			else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold)
+				open();
+		}
+	}
+
+	/**
+	 * Gives back the slot of a call that ended without a success or a failure being reported, so a half-open breaker
+	 * isn't left without probes.
+	 */
+	public synchronized void release() {
+		if (state == State.HALF_OPEN && probes > 0)
+			probes--;
+	}
+
+	/**
+	 * Returns the number of milliseconds before the next probe is allowed.
+	 */
+	public synchronized long getRetryAfter() {
+		long since;
+		if (state == State.OPEN)
+			since = openedAt;
+		else if (state == State.HALF_OPEN)
+			since = halfOpenedAt;
+		else
+			return 0;
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openDuration - (clock.getAsLong() - since)));
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = clock.getAsLong();
+		consecutiveFailures = 0;
+		trips++;
+	}
+
+}
@@ -0,0 +1,30 @@
+package gov.cdc.foundation.resilience;
+
+/**
+ * Thrown instead of calling a downstream service whose circuit breaker is open.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String breaker;
+	private final long retryAfter;
+
+	public CircuitBreakerOpenException(String breaker, long retryAfter) {
+		super(String.format("The downstream service is unavailable (%s), please retry later.", breaker));
+		this.breaker = breaker;
+		this.retryAfter = retryAfter;
+	}
+
+	public String getBreaker() {
+		return breaker;
+	}
+
+	/**
+	 * Milliseconds before the breaker lets a probe through.
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+
+}
@@ -0,0 +1,173 @@
+package gov.cdc.foundation.resilience;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import gov.cdc.foundation.helper.MetricsHelper;
+import gov.cdc.foundation.helper.Operation;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Guards the calls to the downstream services with one circuit breaker per service and retries the
+ * idempotent calls that failed with a transient error.
+ */
+@Component
+public class Resilience {
+
+	private static final Logger logger = Logger.getLogger(Resilience.class);
+
+	public static final String ELASTIC_READ = "elastic.read";
+	public static final String ELASTIC_WRITE = "elastic.write";
+	public static final String OBJECT = "object";
+
+	public static final String TAG_BREAKER = "breaker";
+
+	private static Resilience instance;
+
+	private final MeterRegistry registry;
+	private final RetryPolicy retryPolicy;
+	private final Map<String, CircuitBreaker> breakers;
+
+	public Resilience(
+		MeterRegistry registry,
+		@Value("${resilience.breaker.failure.threshold}") int failureThreshold,
+		@Value("${resilience.breaker.open.duration}") long openDuration,
+		@Value("${resilience.breaker.half-open.probes}") int halfOpenProbes,
+		@Value("${resilience.retry.max.attempts}") int maxAttempts,
+		@Value("${resilience.retry.base.delay}") long baseDelay,
+		@Value("${resilience.retry.max.delay}") long maxDelay
+	) {
+		logger.debug("Creating circuit breakers...");
+		this.registry = registry;
+		this.retryPolicy = new RetryPolicy(maxAttempts, baseDelay, maxDelay);
+
+		Map<String, CircuitBreaker> map = new LinkedHashMap<>();
+		for (String name : Arrays.asList(ELASTIC_READ, ELASTIC_WRITE, OBJECT)) {
+			CircuitBreaker breaker = new CircuitBreaker(name, failureThreshold, openDuration, halfOpenProbes);
+			Gauge.builder("indexing.breaker.state", breaker, b -> b.getState().ordinal())
+				.description("0 when closed, 1 when open and 2 when half-open")
+				.tag(TAG_BREAKER, name)
+				.register(registry);
+			FunctionCounter.builder("indexing.breaker.trips", breaker, CircuitBreaker::getTrips)
+				.tag(TAG_BREAKER, name)
+				.register(registry);
+			map.put(name, breaker);
+		}
+		this.breakers = Collections.unmodifiableMap(map);
+		instance = this;
+	}
+
+	public static Resilience getInstance() {
+		// Without the Spring context, nothing is retried and the breakers never open
+		if (instance == null)
+			instance = new Resilience(Metrics.globalRegistry, 0, 0, 1, 1, 0, 0);
+		return instance;
+	}
+
+	public CircuitBreaker getBreaker(String name) {
+		return breakers.get(name);
+	}
+
+	/**
+	 * Calls a downstream service through its circuit breaker.
+	 *
+	 * @param name the name of the circuit breaker
+	 * @param idempotent whether the call can be retried
+	 * @param isFailure which exceptions count as a failure of the service, the other ones are client errors
+	 * @param isTransient which exceptions are worth retrying
+	 * @param op the call
+	 */
+	public <T, E extends Exception> T call(String name, boolean idempotent, Predicate<Exception> isFailure, Predicate<Exception> isTransient, Operation<T, E> op) throws E {
+		CircuitBreaker breaker = breakers.get(name);
+		int attempt = 0;
+		while (true) {
+			if (!breaker.tryAcquire()) {
+				registry.counter("indexing.breaker.rejected", TAG_BREAKER, name).increment();
+				throw new CircuitBreakerOpenException(name, breaker.getRetryAfter());
+			}
+
+			boolean reported = false;
+			try {
+				T result = op.execute();
+				breaker.onSuccess();
+				reported = true;
+				return result;
+			} catch (Exception e) {
+				if (isFailure.test(e))
+					breaker.onFailure();
+				else
+					breaker.onSuccess();
+				reported = true;
+
+				attempt++;
+				if (!idempotent || attempt >= retryPolicy.getMaxAttempts() || !isTransient.test(e))
+					throw e;
+
+				registry.counter("indexing.retries", TAG_BREAKER, name).increment();
+				if (!sleep(retryPolicy.delay(attempt)))
+					throw e;
+			} finally {
+				// An error thrown by the call mustn't hold a probe of the half-open breaker forever
+				if (!reported)
+					breaker.release();
+			}
+		}
+	}
+
+	/**
+	 * Calls the Object Microservice, the reads are idempotent and retried.
+	 */
+	public <T, E extends Exception> T callObjectService(String operation, String config, Operation<T, E> op) throws E {
+		return MetricsHelper.getInstance().time(MetricsHelper.METRIC_OBJECT, operation, config,
+			() -> call(OBJECT, true, Resilience::isObjectServiceFailure, Resilience::isObjectServiceTransient, op));
+	}
+
+	static boolean isObjectServiceFailure(Exception e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof HttpStatusCodeException) {
+				int status = ((HttpStatusCodeException) t).getRawStatusCode();
+				return status >= 500 || status == 429;
+			}
+			if (t instanceof ResourceAccessException || t instanceof IOException)
+				return true;
+		}
+		return false;
+	}
+
+	static boolean isObjectServiceTransient(Exception e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof HttpStatusCodeException) {
+				int status = ((HttpStatusCodeException) t).getRawStatusCode();
+				return status == 503 || status == 429;
+			}
+			if (t instanceof ConnectException)
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package gov.cdc.foundation.resilience;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded exponential backoff with full jitter: the delay before the nth retry is drawn uniformly between
+ * zero and `min(maxDelay, baseDelay * 2^(n-1))` so that clients rejected together don't retry together.
+ */
+public class RetryPolicy {
+
+	private final int maxAttempts;
+	private final long baseDelay;
+	private final long maxDelay;
+
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.baseDelay = Math.max(0, baseDelay);
+		this.maxDelay = Math.max(this.baseDelay, maxDelay);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Returns the delay in milliseconds before the given retry (starting at 1).
+	 */
+	public long delay(int retry) {
+		long ceiling = baseDelay << Math.min(Math.max(0, retry - 1), 30);
+		if (ceiling <= 0 || ceiling > maxDelay)
+			ceiling = maxDelay;
+		return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+}
@@ -1,18 +1,120 @@
 package gov.cdc.foundation.security;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
 import org.springframework.stereotype.Component;
 
 @Component("authz")
 @Configuration
 public class Authz {
 
+	public static final String SCOPE_PREFIX = "fdns.indexing.";
+	public static final String PERMISSION_CREATE = "create";
+	public static final String PERMISSION_READ = "read";
+	public static final String PERMISSION_UPDATE = "update";
+	public static final String PERMISSION_DELETE = "delete";
+
+	private static final String WILDCARD = "*";
+	private static final String PUBLIC_PREFIX = "public-";
+	private static final int MAX_SCOPE_SETS = 1024;
+
 	@Value("${security.oauth2.protected}")
 	private String protectedURIs;
 
+	// Tokens with the same scopes share the same permissions
+	private final ConcurrentMap<Set<String>, Permissions> permissions = new ConcurrentHashMap<>();
+
+	public Authz() {
+	}
+
+	Authz(String protectedURIs) {
+		this.protectedURIs = protectedURIs;
+	}
+
 	public boolean isSecured() {
 		return protectedURIs != null && protectedURIs.length() > 0;
 	}
 
+	/**
+	 * Checks if the current user has one of the permissions on a configuration, with the
+	 * `fdns.indexing.{config}.{permission}` scope, or `*` as the configuration or the permission.
+	 * Everything is allowed when the API isn't secured, and `public-` configurations can be used without scope,
+	 * except for deletions.
+	 */
+	public boolean can(String config, String... permissions) {
+		return hasPermission(SecurityContextHolder.getContext().getAuthentication(), config, permissions);
+	}
+
+	public boolean hasPermission(Authentication authentication, String config, String... permissions) {
+		if (!isSecured())
+			return true;
+		if (config.startsWith(PUBLIC_PREFIX) && !contains(permissions, PERMISSION_DELETE))
+			return true;
+		if (!(authentication instanceof OAuth2Authentication))
+			return false;
+
+		Permissions granted = getPermissions(((OAuth2Authentication) authentication).getOAuth2Request().getScope());
+		for (String permission : permissions) {
+			if (granted.allows(config, permission))
+				return true;
+		}
+		return false;
+	}
+
+	private Permissions getPermissions(Set<String> scopes) {
+		Permissions cached = permissions.get(scopes);
+		if (cached == null) {
+			if (permissions.size() >= MAX_SCOPE_SETS)
+				permissions.clear();
+			cached = permissions.computeIfAbsent(scopes, Permissions::new);
+		}
+		return cached;
+	}
+
+	private static boolean contains(String[] values, String value) {
+		for (String v : values) {
+			if (v.equals(value))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Permissions per configuration, parsed from the `fdns.indexing.{config}.{permission}` scopes.
+	 */
+	static final class Permissions {
+
+		private final Map<String, Set<String>> byConfig = new HashMap<>();
+
+		Permissions(Collection<String> scopes) {
+			for (String scope : scopes) {
+				int separator = scope.lastIndexOf('.');
+				if (!scope.startsWith(SCOPE_PREFIX) || separator < SCOPE_PREFIX.length())
+					continue;
+				String config = scope.substring(SCOPE_PREFIX.length(), separator);
+				byConfig.computeIfAbsent(config, key -> new HashSet<>()).add(scope.substring(separator + 1));
+			}
+		}
+
+		boolean allows(String config, String permission) {
+			return allows(byConfig.get(config), permission) || allows(byConfig.get(WILDCARD), permission);
+		}
+
+		private static boolean allows(Set<String> granted, String permission) {
+			return granted != null && (granted.contains(permission) || granted.contains(WILDCARD));
+		}
+
+	}
+
 }
@@ -0,0 +1,132 @@
+package gov.cdc.foundation.security;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import gov.cdc.foundation.helper.ExpiringCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Caches the authentications loaded by another token services, typically the remote introspection.
+ * The entries are keyed by a hash of the token and kept until the token expires, within the TTL. The invalid
+ * tokens are cached for a shorter time, and concurrent requests with the same unknown token share a single
+ * introspection call. Once full, the least recently used tokens are evicted.
+ */
+public class CachingTokenServices implements ResourceServerTokenServices {
+
+	private final ResourceServerTokenServices delegate;
+	private final long ttl;
+	private final long negativeTtl;
+	private final LongSupplier clock;
+
+	private final ExpiringCache<String, Entry> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public CachingTokenServices(ResourceServerTokenServices delegate, int maxSize, long ttl, long negativeTtl) {
+		this(delegate, maxSize, ttl, negativeTtl, System::currentTimeMillis);
+	}
+
+	CachingTokenServices(ResourceServerTokenServices delegate, int maxSize, long ttl, long negativeTtl, LongSupplier clock) {
+		this.delegate = delegate;
+		this.entries = new ExpiringCache<>(maxSize, clock);
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+		this.clock = clock;
+	}
+
+	public CachingTokenServices bindTo(MeterRegistry registry) {
+		Gauge.builder("indexing.token.cache.size", entries, ExpiringCache::size).register(registry);
+		FunctionCounter.builder("indexing.token.cache.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+		FunctionCounter.builder("indexing.token.cache.requests", misses, AtomicLong::get).tag("result", "miss").register(registry);
+		return this;
+	}
+
+	@Override
+	public OAuth2Authentication loadAuthentication(String accessToken) throws AuthenticationException, InvalidTokenException {
+		String key = DigestUtils.sha256Hex(accessToken);
+
+		Entry created = new Entry();
+		Entry entry = entries.putIfAbsent(key, created);
+		if (entry == null) {
+			misses.incrementAndGet();
+			load(accessToken, key, created);
+			entry = created;
+		} else
+			hits.incrementAndGet();
+
+		return get(entry);
+	}
+
+	@Override
+	public OAuth2AccessToken readAccessToken(String accessToken) {
+		return delegate.readAccessToken(accessToken);
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	private void load(String accessToken, String key, Entry entry) {
+		try {
+			OAuth2Authentication authentication = delegate.loadAuthentication(accessToken);
+			long now = clock.getAsLong();
+			long expiresAt = now + ttl;
+			long exp = ExpirationAccessTokenConverter.getExpiration(authentication);
+			if (exp >= 0)
+				expiresAt = Math.min(expiresAt, exp);
+			entry.expiresAt = expiresAt;
+			entry.result.complete(authentication);
+			if (expiresAt <= now)
+				entries.remove(key, entry);
+		} catch (InvalidTokenException e) {
+			entry.expiresAt = clock.getAsLong() + negativeTtl;
+			entry.result.completeExceptionally(e);
+		} catch (Throwable e) {
+			// The introspection failed, the next request tries again. Errors are caught too, or the requests waiting
+			// on the entry would never complete
+			entries.remove(key, entry);
+			entry.result.completeExceptionally(e);
+		}
+	}
+
+	private OAuth2Authentication get(Entry entry) {
+		OAuth2Authentication authentication;
+		try {
+			authentication = entry.result.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof InvalidTokenException)
+				throw new InvalidTokenException(e.getCause().getMessage());
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+		// The authentication manager sets the request details on the returned instance, so each request gets its own
+		return new OAuth2Authentication(authentication.getOAuth2Request(), authentication.getUserAuthentication());
+	}
+
+	private static final class Entry implements ExpiringCache.Expiring {
+		final CompletableFuture<OAuth2Authentication> result = new CompletableFuture<>();
+		// Set before the result is completed
+		volatile long expiresAt = Long.MAX_VALUE;
+
+		@Override
+		public boolean isExpired(long now) {
+			return result.isDone() && expiresAt <= now;
+		}
+	}
+
+}
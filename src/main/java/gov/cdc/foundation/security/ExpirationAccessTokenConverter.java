@@ -0,0 +1,51 @@
+package gov.cdc.foundation.security;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+
+/**
+ * Keeps the expiration of the introspected token (`exp` claim, in seconds since the epoch) in the
+ * extensions of the OAuth 2 request, so the authentication can be cached until the token expires.
+ */
+public class ExpirationAccessTokenConverter extends DefaultAccessTokenConverter {
+
+	public static final String EXTENSION_EXPIRATION = EXP;
+
+	@Override
+	public OAuth2Authentication extractAuthentication(Map<String, ?> map) {
+		OAuth2Authentication authentication = super.extractAuthentication(map);
+		Object exp = map.get(EXP);
+		if (!(exp instanceof Number))
+			return authentication;
+
+		OAuth2Request request = authentication.getOAuth2Request();
+		Map<String, Serializable> extensions = new HashMap<>(request.getExtensions());
+		extensions.put(EXTENSION_EXPIRATION, ((Number) exp).longValue());
+		OAuth2Request extended = new OAuth2Request(
+			request.getRequestParameters(),
+			request.getClientId(),
+			request.getAuthorities(),
+			request.isApproved(),
+			request.getScope(),
+			request.getResourceIds(),
+			request.getRedirectUri(),
+			request.getResponseTypes(),
+			extensions
+		);
+		return new OAuth2Authentication(extended, authentication.getUserAuthentication());
+	}
+
+	/**
+	 * Returns the expiration of the token in milliseconds since the epoch, or a negative value if unknown.
+	 */
+	public static long getExpiration(OAuth2Authentication authentication) {
+		Serializable exp = authentication.getOAuth2Request().getExtensions().get(EXTENSION_EXPIRATION);
+		return exp instanceof Number ? ((Number) exp).longValue() * 1000 : -1;
+	}
+
+}
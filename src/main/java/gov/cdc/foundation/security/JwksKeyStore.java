@@ -0,0 +1,129 @@
+package gov.cdc.foundation.security;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * RSA signing keys of the OAuth 2 provider, loaded from a JSON Web Key Set (a URL or a file) and refreshed
+ * periodically in the background. An unknown key id triggers an early refresh, at most once per minimum interval,
+ * so that rotated keys are picked up without letting invalid tokens hammer the provider.
+ */
+public class JwksKeyStore {
+
+	private static final Logger logger = Logger.getLogger(JwksKeyStore.class);
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private final String source;
+	private final long minRefreshInterval;
+	private ScheduledExecutorService scheduler;
+
+	private volatile Map<String, RSAPublicKey> keys = Collections.emptyMap();
+	private volatile long lastRefresh;
+
+	public JwksKeyStore(String source, long minRefreshInterval) {
+		this.source = source;
+		this.minRefreshInterval = TimeUnit.MILLISECONDS.toNanos(minRefreshInterval);
+		this.lastRefresh = System.nanoTime() - this.minRefreshInterval;
+	}
+
+	/**
+	 * Loads the keys and schedules a refresh every `refreshInterval` milliseconds.
+	 */
+	public JwksKeyStore start(long refreshInterval) {
+		refresh();
+		if (refreshInterval > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "jwks-refresh");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+		}
+		return this;
+	}
+
+	public void stop() {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+	}
+
+	/**
+	 * Returns the key with the given id, or the only key of the set if the token has no key id.
+	 */
+	public RSAPublicKey getKey(String kid) {
+		RSAPublicKey key = find(kid);
+		if (key == null && System.nanoTime() - lastRefresh >= minRefreshInterval) {
+			refreshIfStale();
+			// Possibly loaded by a concurrent refresh
+			key = find(kid);
+		}
+		return key;
+	}
+
+	/**
+	 * Refreshes the keys unless it was done less than the minimum interval ago. Checked under the lock, so the
+	 * concurrent requests missing a key only trigger one load.
+	 */
+	private synchronized void refreshIfStale() {
+		if (System.nanoTime() - lastRefresh >= minRefreshInterval)
+			refresh();
+	}
+
+	public synchronized void refresh() {
+		lastRefresh = System.nanoTime();
+		try (InputStream is = open()) {
+			keys = parse(mapper.readTree(is));
+			logger.debug("Loaded " + keys.size() + " signing keys from " + source);
+		} catch (Exception e) {
+			// Keep the previous keys
+			logger.error("Unable to load the JWKS from " + source, e);
+		}
+	}
+
+	private RSAPublicKey find(String kid) {
+		Map<String, RSAPublicKey> current = keys;
+		if (kid == null)
+			return current.size() == 1 ? current.values().iterator().next() : null;
+		return current.get(kid);
+	}
+
+	InputStream open() throws IOException {
+		if (source.startsWith("http:") || source.startsWith("https:") || source.startsWith("file:"))
+			return new URL(source).openStream();
+		return new File(source).toURI().toURL().openStream();
+	}
+
+	static Map<String, RSAPublicKey> parse(JsonNode jwks) throws Exception {
+		Map<String, RSAPublicKey> parsed = new HashMap<>();
+		KeyFactory factory = KeyFactory.getInstance("RSA");
+		for (JsonNode jwk : jwks.path("keys")) {
+			if (!"RSA".equals(jwk.path("kty").asText()) || !"sig".equals(jwk.path("use").asText("sig")))
+				continue;
+			BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("n").asText()));
+			BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("e").asText()));
+			RSAPublicKey key = (RSAPublicKey) factory.generatePublic(new RSAPublicKeySpec(modulus, exponent));
+			parsed.put(jwk.path("kid").asText(""), key);
+		}
+		return parsed;
+	}
+
+}
@@ -0,0 +1,99 @@
+package gov.cdc.foundation.security;
+
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.jwt.Jwt;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Validates JWT access tokens locally: the RS256, RS384 or RS512 signature is checked against the keys of the
+ * provider's JWKS, then the expiration and the issuer. The scopes are read from a configurable claim.
+ */
+public class JwtTokenServices implements ResourceServerTokenServices {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+	private static final TypeReference<Map<String, Object>> CLAIMS_TYPE = new TypeReference<Map<String, Object>>() {};
+
+	private static final Map<String, String> ALGORITHMS = new HashMap<>();
+	static {
+		ALGORITHMS.put("RS256", "SHA256withRSA");
+		ALGORITHMS.put("RS384", "SHA384withRSA");
+		ALGORITHMS.put("RS512", "SHA512withRSA");
+	}
+
+	private final JwksKeyStore keyStore;
+	private final String issuer;
+	private final long clockSkew;
+	private final LongSupplier clock;
+	private final DefaultAccessTokenConverter converter = new ExpirationAccessTokenConverter();
+
+	public JwtTokenServices(JwksKeyStore keyStore, String issuer, String scopeClaim, long clockSkew) {
+		this(keyStore, issuer, scopeClaim, clockSkew, System::currentTimeMillis);
+	}
+
+	JwtTokenServices(JwksKeyStore keyStore, String issuer, String scopeClaim, long clockSkew, LongSupplier clock) {
+		this.keyStore = keyStore;
+		this.issuer = issuer;
+		this.clockSkew = clockSkew;
+		this.clock = clock;
+		converter.setScopeAttribute(scopeClaim);
+	}
+
+	@Override
+	public OAuth2Authentication loadAuthentication(String accessToken) throws AuthenticationException, InvalidTokenException {
+		return converter.extractAuthentication(verify(accessToken));
+	}
+
+	@Override
+	public OAuth2AccessToken readAccessToken(String accessToken) {
+		return converter.extractAccessToken(accessToken, verify(accessToken));
+	}
+
+	private Map<String, Object> verify(String accessToken) {
+		Map<String, Object> claims;
+		try {
+			Map<String, String> headers = JwtHelper.headers(accessToken);
+			String algorithm = ALGORITHMS.get(headers.get("alg"));
+			if (algorithm == null)
+				throw new InvalidTokenException("Unsupported signature algorithm: " + headers.get("alg"));
+			RSAPublicKey key = keyStore.getKey(headers.get("kid"));
+			if (key == null)
+				throw new InvalidTokenException("Unknown signing key: " + headers.get("kid"));
+
+			Jwt jwt = JwtHelper.decodeAndVerify(accessToken, new RsaVerifier(key, algorithm));
+			claims = mapper.readValue(jwt.getClaims(), CLAIMS_TYPE);
+		} catch (InvalidTokenException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new InvalidTokenException("Invalid access token: " + e.getMessage());
+		}
+
+		long now = clock.getAsLong();
+		if (!(claims.get("exp") instanceof Number) || ((Number) claims.get("exp")).longValue() * 1000 + clockSkew <= now)
+			throw new InvalidTokenException("Access token expired");
+		if (claims.get("nbf") instanceof Number && ((Number) claims.get("nbf")).longValue() * 1000 - clockSkew > now)
+			throw new InvalidTokenException("Access token not valid yet");
+		if (issuer != null && !issuer.isEmpty() && !issuer.equals(claims.get("iss")))
+			throw new InvalidTokenException("Invalid issuer: " + claims.get("iss"));
+
+		// Tokens issued to a client without a user may only carry the subject
+		if (!claims.containsKey(AccessTokenConverter.CLIENT_ID) && claims.containsKey("sub"))
+			claims.put(AccessTokenConverter.CLIENT_ID, claims.get("sub"));
+		return claims;
+	}
+
+}
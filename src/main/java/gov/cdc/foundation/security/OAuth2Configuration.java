@@ -1,5 +1,7 @@
 package gov.cdc.foundation.security;
 
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,11 +14,15 @@ import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
 import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
 
 import gov.cdc.security.SSLCertificateValidation;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 public class OAuth2Configuration extends ResourceServerConfigurerAdapter {
 
+	private static final String MODE_JWT = "jwt";
+	private static final long JWKS_MIN_REFRESH = 10000;
+
 	@Value("${security.oauth2.protected}")
 	private String protectedURIs;
 	@Value("${security.oauth2.resource.user-info-uri}")
@@ -27,6 +33,26 @@ public class OAuth2Configuration extends ResourceServerConfigurerAdapter {
 	private String clientSecret;
 	@Value("${ssl.verifying.disable}")
 	private boolean disableSSL;
+	@Value("${security.oauth2.mode}")
+	private String mode;
+	@Value("${security.oauth2.jwt.jwks}")
+	private String jwks;
+	@Value("${security.oauth2.jwt.jwks.refresh}")
+	private long jwksRefresh;
+	@Value("${security.oauth2.jwt.issuer}")
+	private String jwtIssuer;
+	@Value("${security.oauth2.jwt.scope-claim}")
+	private String jwtScopeClaim;
+	@Value("${security.oauth2.jwt.clock-skew}")
+	private long jwtClockSkew;
+	@Value("${security.oauth2.cache.size}")
+	private int cacheSize;
+	@Value("${security.oauth2.cache.ttl}")
+	private long cacheTtl;
+	@Value("${security.oauth2.cache.negative-ttl}")
+	private long cacheNegativeTtl;
+
+	private JwksKeyStore keyStore;
 	
 	@Override
 	public void configure(HttpSecurity http) throws Exception {
@@ -47,12 +73,23 @@ public class OAuth2Configuration extends ResourceServerConfigurerAdapter {
 	}
 
 	@Bean
-	public ResourceServerTokenServices userInfoTokenServices() {
-		RemoteTokenServices tokenServices = new RemoteTokenServices();
-		tokenServices.setCheckTokenEndpointUrl(userInfoUri);
-		tokenServices.setClientId(clientId);
-		tokenServices.setClientSecret(clientSecret);
-		return tokenServices;
+	public ResourceServerTokenServices userInfoTokenServices(MeterRegistry registry) {
+		ResourceServerTokenServices tokenServices;
+		if (MODE_JWT.equalsIgnoreCase(mode)) {
+			// Local validation, the provider is only called to refresh its keys
+			keyStore = new JwksKeyStore(jwks, JWKS_MIN_REFRESH).start(jwksRefresh);
+			tokenServices = new JwtTokenServices(keyStore, jwtIssuer, jwtScopeClaim, jwtClockSkew);
+		} else {
+			RemoteTokenServices remoteTokenServices = new RemoteTokenServices();
+			remoteTokenServices.setCheckTokenEndpointUrl(userInfoUri);
+			remoteTokenServices.setClientId(clientId);
+			remoteTokenServices.setClientSecret(clientSecret);
+			remoteTokenServices.setAccessTokenConverter(new ExpirationAccessTokenConverter());
+			tokenServices = remoteTokenServices;
+		}
+		if (cacheSize <= 0)
+			return tokenServices;
+		return new CachingTokenServices(tokenServices, cacheSize, cacheTtl, cacheNegativeTtl).bindTo(registry);
 	}
 
 	@Override
@@ -60,4 +97,11 @@ public class OAuth2Configuration extends ResourceServerConfigurerAdapter {
 		resources.resourceId(clientId);
 	}
 
+	@PreDestroy
+	public void shutdown() {
+		// Stop refreshing the keys in the background
+		if (keyStore != null)
+			keyStore.stop();
+	}
+
 }
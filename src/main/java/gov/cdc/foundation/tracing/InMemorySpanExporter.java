@@ -0,0 +1,45 @@
+package gov.cdc.foundation.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the most recent spans in memory, mostly useful for tests.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+	private static final int DEFAULT_CAPACITY = 10000;
+
+	private final int capacity;
+	private final ConcurrentLinkedDeque<Span> spans = new ConcurrentLinkedDeque<>();
+
+	public InMemorySpanExporter() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public InMemorySpanExporter(int capacity) {
+		this.capacity = capacity;
+	}
+
+	@Override
+	public void export(Span span) {
+		spans.addLast(span);
+		while (spans.size() > capacity)
+			spans.pollFirst();
+	}
+
+	public List<Span> getSpans() {
+		return new ArrayList<>(spans);
+	}
+
+	public List<Span> getSpans(String traceId) {
+		return spans.stream().filter(span -> span.getTraceId().equals(traceId)).collect(Collectors.toList());
+	}
+
+	public void reset() {
+		spans.clear();
+	}
+
+}
@@ -0,0 +1,28 @@
+package gov.cdc.foundation.tracing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+
+public class LoggingSpanExporter implements SpanExporter {
+
+	private static final Logger logger = Logger.getLogger(LoggingSpanExporter.class);
+
+	@Override
+	public void export(Span span) {
+		if (!logger.isInfoEnabled())
+			return;
+
+		JSONObject json = new JSONObject();
+		json.put("traceId", span.getTraceId());
+		json.put("spanId", span.getSpanId());
+		json.put("parentId", span.getParentId());
+		json.put("name", span.getName());
+		json.put("start", span.getStartTime());
+		json.put("durationMs", TimeUnit.NANOSECONDS.toMicros(span.getDuration()) / 1000.0);
+		json.put("attributes", span.getAttributes());
+		logger.info(json.toString());
+	}
+
+}
@@ -0,0 +1,93 @@
+package gov.cdc.foundation.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Span implements AutoCloseable {
+
+	private final Tracer tracer;
+	private final Span parent;
+	private final String traceId;
+	private final String spanId;
+	private final String parentId;
+	private final String name;
+	private final boolean sampled;
+	private final long startTime;
+	private final long startNanos;
+	private long duration = -1;
+	private Map<String, Object> attributes;
+
+	Span(Tracer tracer, Span parent, String traceId, String spanId, String parentId, String name, boolean sampled) {
+		this.tracer = tracer;
+		this.parent = parent;
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.parentId = parentId;
+		this.name = name;
+		this.sampled = sampled;
+		this.startTime = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+	}
+
+	public Span tag(String key, Object value) {
+		if (sampled) {
+			if (attributes == null)
+				attributes = new LinkedHashMap<>();
+			attributes.put(key, value);
+		}
+		return this;
+	}
+
+	@Override
+	public void close() {
+		if (duration < 0) {
+			duration = System.nanoTime() - startNanos;
+			tracer.end(this);
+		}
+	}
+
+	Span getParent() {
+		return parent;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public String getSpanId() {
+		return spanId;
+	}
+
+	public String getParentId() {
+		return parentId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isSampled() {
+		return sampled;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Duration in nanoseconds, or -1 while the span is still open.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public Map<String, Object> getAttributes() {
+		return attributes == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(attributes);
+	}
+
+	public String toTraceparent() {
+		return String.format("00-%s-%s-%s", traceId, spanId, sampled ? "01" : "00");
+	}
+
+}
@@ -0,0 +1,8 @@
+package gov.cdc.foundation.tracing;
+
+@FunctionalInterface
+public interface SpanExporter {
+
+	void export(Span span);
+
+}
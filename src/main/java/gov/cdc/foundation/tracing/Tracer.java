@@ -0,0 +1,117 @@
+package gov.cdc.foundation.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.foundation.helper.Operation;
+
+/**
+ * Minimal tracer propagating the W3C `traceparent` header. The current span is kept per thread,
+ * spans started while another one is open become its children.
+ */
+@Component
+public class Tracer {
+
+	private static final Logger logger = Logger.getLogger(Tracer.class);
+
+	public static final String HEADER_TRACEPARENT = "traceparent";
+
+	private static final Pattern TRACEPARENT = Pattern.compile("^([0-9a-f]{2})-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})(-.*)?$");
+	private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+	private static final String INVALID_SPAN_ID = "0000000000000000";
+
+	private static Tracer instance;
+
+	private final ThreadLocal<Span> current = new ThreadLocal<>();
+	private final SpanExporter exporter;
+	private final double probability;
+
+	public Tracer(SpanExporter exporter, @Value("${tracing.sampler.probability}") double probability) {
+		this.exporter = exporter;
+		this.probability = probability;
+		instance = this;
+	}
+
+	public static Tracer getInstance() {
+		if (instance == null)
+			instance = new Tracer(span -> {}, 0);
+		return instance;
+	}
+
+	/**
+	 * Starts the root span of a request, continuing the remote trace if the `traceparent` header is valid.
+	 */
+	public Span startRootSpan(String name, String traceparent) {
+		if (traceparent != null) {
+			Matcher m = TRACEPARENT.matcher(traceparent.trim());
+			if (m.matches() && !"ff".equals(m.group(1)) && !INVALID_TRACE_ID.equals(m.group(2)) && !INVALID_SPAN_ID.equals(m.group(3))) {
+				boolean sampled = (Integer.parseInt(m.group(4), 16) & 1) == 1;
+				return start(null, m.group(2), m.group(3), name, sampled);
+			}
+		}
+		return start(null, newTraceId(), null, name, sample());
+	}
+
+	public Span startSpan(String name) {
+		Span parent = current.get();
+		if (parent == null)
+			return start(null, newTraceId(), null, name, sample());
+		return start(parent, parent.getTraceId(), parent.getSpanId(), name, parent.isSampled());
+	}
+
+	public <T, E extends Exception> T trace(String name, Operation<T, E> op) throws E {
+		try (Span span = startSpan(name)) {
+			return op.execute();
+		}
+	}
+
+	public Span currentSpan() {
+		return current.get();
+	}
+
+	public String currentTraceId() {
+		Span span = current.get();
+		return span != null ? span.getTraceId() : null;
+	}
+
+	private Span start(Span parent, String traceId, String parentId, String name, boolean sampled) {
+		Span span = new Span(this, parent, traceId, newSpanId(), parentId, name, sampled);
+		current.set(span);
+		return span;
+	}
+
+	void end(Span span) {
+		if (current.get() == span) {
+			if (span.getParent() != null)
+				current.set(span.getParent());
+			else
+				current.remove();
+		}
+
+		if (span.isSampled())
+			try {
+				exporter.export(span);
+			} catch (Exception e) {
+				logger.error(e);
+			}
+	}
+
+	private boolean sample() {
+		return probability >= 1 || (probability > 0 && ThreadLocalRandom.current().nextDouble() < probability);
+	}
+
+	private static String newTraceId() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return String.format("%016x%016x", random.nextLong(), random.nextLong() | 1);
+	}
+
+	private static String newSpanId() {
+		return String.format("%016x", ThreadLocalRandom.current().nextLong() | 1);
+	}
+
+}
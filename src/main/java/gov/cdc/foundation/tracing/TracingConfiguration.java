@@ -0,0 +1,38 @@
+package gov.cdc.foundation.tracing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class TracingConfiguration {
+
+	public static final String EXPORTER_LOG = "log";
+	public static final String EXPORTER_MEMORY = "memory";
+	public static final String EXPORTER_NONE = "none";
+
+	@Bean
+	@ConditionalOnMissingBean(SpanExporter.class)
+	public SpanExporter spanExporter(@Value("${tracing.exporter}") String exporter) {
+		if (EXPORTER_LOG.equalsIgnoreCase(exporter))
+			return new LoggingSpanExporter();
+		else if (EXPORTER_MEMORY.equalsIgnoreCase(exporter))
+			return new InMemorySpanExporter();
+		else if (EXPORTER_NONE.equalsIgnoreCase(exporter))
+			return span -> {};
+		else
+			throw new IllegalArgumentException("The following span exporter is not supported: " + exporter);
+	}
+
+	@Bean
+	public FilterRegistrationBean<TracingFilter> tracingFilter(Tracer tracer) {
+		// Runs before the security filters so the root span includes the token validation
+		FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(new TracingFilter(tracer));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+		return registration;
+	}
+
+}
@@ -0,0 +1,29 @@
+package gov.cdc.foundation.tracing;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+public class TracingFilter extends OncePerRequestFilter {
+
+	private final Tracer tracer;
+
+	public TracingFilter(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+		try (Span span = tracer.startRootSpan(request.getMethod() + " " + request.getRequestURI(), request.getHeader(Tracer.HEADER_TRACEPARENT))) {
+			response.setHeader(Tracer.HEADER_TRACEPARENT, span.toTraceparent());
+			filterChain.doFilter(request, response);
+			span.tag("status", response.getStatus());
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package gov.cdc.foundation.warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.controller.IndexingController;
+import gov.cdc.foundation.helper.AggregationHelper;
+import gov.cdc.foundation.helper.ElasticFormat;
+import gov.cdc.foundation.helper.ElasticHelper;
+import gov.cdc.foundation.helper.JSONHelper;
+import gov.cdc.foundation.helper.MetricsHelper;
+import gov.cdc.foundation.helper.QueryBuilder;
+import gov.cdc.foundation.helper.RoutingHelper;
+import gov.cdc.foundation.helper.SourceHelper;
+import gov.cdc.helper.ObjectHelper;
+
+/**
+ * Warms the service up once it's started: opens the connections to Elasticsearch and the Object Microservice, reads
+ * the configurations and runs their parsing, mapping and serialization code paths until they're compiled. The health
+ * is reported out of service until then, so the instance only gets traffic once it's warm.
+ */
+@Component
+public class Warmup implements HealthIndicator {
+
+	private static final Logger logger = Logger.getLogger(Warmup.class);
+
+	private static final int MAX_CONFIGS = 1000;
+
+	private final IndexingController controller;
+	private final boolean enabled;
+	private final int iterations;
+	private final int connections;
+	private final String database;
+	private final String collection;
+
+	private volatile boolean ready;
+
+	public Warmup(
+		IndexingController controller,
+		@Value("${indexing.warmup.enabled}") boolean enabled,
+		@Value("${indexing.warmup.iterations}") int iterations,
+		@Value("${indexing.warmup.connections}") int connections,
+		@Value("${object.db}") String database,
+		@Value("${object.collection}") String collection
+	) {
+		this.controller = controller;
+		this.enabled = enabled;
+		this.iterations = iterations;
+		this.connections = Math.max(1, connections);
+		this.database = database;
+		this.collection = collection;
+		this.ready = !enabled;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	@Override
+	public Health health() {
+		return ready ? Health.up().build() : Health.outOfService().withDetail("warmup", "in progress").build();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void run() {
+		if (ready)
+			return;
+		long start = System.nanoTime();
+		try {
+			connect();
+			exercise(loadConfigurations());
+		} catch (Exception e) {
+			// Never keeps the instance out of service
+			logger.warn("The warm-up didn't complete: " + e.getMessage());
+		} finally {
+			ready = true;
+			logger.info(String.format("Warm-up done in %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		}
+	}
+
+	/**
+	 * Opens several pooled connections to Elasticsearch at once. The failures are only logged: the retries and
+	 * circuit breakers aren't involved, so a cluster still starting doesn't trip them.
+	 */
+	void connect() throws InterruptedException {
+		ElasticHelper elastic = ElasticHelper.getInstance();
+		if (elastic == null)
+			return;
+		ExecutorService executor = Executors.newFixedThreadPool(connections);
+		try {
+			List<Future<?>> pings = new ArrayList<>();
+			for (int i = 0; i < connections; i++)
+				pings.add(executor.submit(() -> {
+					elastic.ping();
+					return null;
+				}));
+			for (Future<?> ping : pings)
+				try {
+					ping.get(10, TimeUnit.SECONDS);
+				} catch (Exception e) {
+					logger.warn("Elasticsearch isn't reachable yet: " + e.getMessage());
+					break;
+				}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads all the configurations from the Object Microservice collection, which also opens its connection.
+	 */
+	List<JsonNode> loadConfigurations() {
+		List<JsonNode> configs = new ArrayList<>();
+		try {
+			JSONObject found = ObjectHelper.getInstance().find(new JSONObject(), database, collection, 0, MAX_CONFIGS);
+			for (JsonNode config : JSONHelper.getInstance().toJsonNode(found.getJSONArray("items"))) {
+				configs.add(config);
+				MetricsHelper.getInstance().registerConfig(config.path("_id").asText());
+			}
+			if (configs.size() >= MAX_CONFIGS)
+				logger.warn(String.format("Only the first %d configurations out of %d are warmed up", MAX_CONFIGS, found.optInt("total", configs.size())));
+		} catch (Exception e) {
+			logger.warn("The configurations couldn't be loaded: " + e.getMessage());
+		}
+		logger.debug("Configurations loaded for the warm-up: " + configs.size());
+		return configs;
+	}
+
+	/**
+	 * Runs the code paths of the requests on synthetic documents and queries, spreading the iterations over the
+	 * configurations. Their timers aren't recorded, so the metrics only report the actual requests.
+	 */
+	void exercise(List<JsonNode> configs) throws Exception {
+		MetricsHelper.getInstance().untimed(() -> {
+			iterate(configs.isEmpty() ? Collections.singletonList(JSONHelper.getInstance().createObjectNode()) : configs);
+			return null;
+		});
+	}
+
+	private void iterate(List<JsonNode> configs) throws Exception {
+		ObjectMapper mapper = JSONHelper.getInstance().getMapper();
+		ElasticFormat format = ElasticHelper.getInstance() != null ? ElasticHelper.getInstance().getFormat() : ElasticFormat.JSON;
+
+		for (int i = 0; i < iterations; i++) {
+			JsonNode config = mapper.readTree(mapper.writeValueAsBytes(configs.get(i % configs.size())));
+
+			ObjectNode document = document(i);
+			controller.prepareObject(document, config);
+			RoutingHelper.getInstance().getRouting(config, document);
+			format.getMapper().readTree(format.getMapper().writeValueAsBytes(document));
+
+			ObjectNode query = QueryBuilder.getInstance().parse(config, "warmup " + i);
+			SourceHelper.getInstance().getSearchBody(config, null, config.get("appendToQuery"));
+			if (config.has("aggregations"))
+				try {
+					AggregationHelper.getInstance().getAggregations(config, null);
+				} catch (IllegalArgumentException e) {
+					// Reported on request
+				}
+
+			ObjectNode response = JSONHelper.getInstance().createObjectNode();
+			response.putObject("hits").putArray("hits").addObject().set("_source", document);
+			if (query != null)
+				response.set("query", query);
+			mapper.writeValueAsBytes(response);
+		}
+	}
+
+	private ObjectNode document(int i) {
+		ObjectNode document = JSONHelper.getInstance().createObjectNode();
+		document.putObject("_id").put("$oid", String.format("%024x", i));
+		document.put("name", "Warm-up " + i);
+		document.put("date", "2018-03-12T10:00:00Z");
+		document.putObject("nested").put("value", i);
+		document.putArray("tags").add("a").add("b");
+		return document;
+	}
+
+}
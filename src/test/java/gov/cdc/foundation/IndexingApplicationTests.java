@@ -80,7 +80,7 @@ public class IndexingApplicationTests {
 		// Add the config and load it
 		String payload = getConfig("test.json");
 		ConfigurationHelper.getInstance().createConfiguration("test", payload, null);
-		JSONObject config = ConfigurationHelper.getInstance().getConfiguration("test", null);
+		JsonNode config = ConfigurationHelper.getInstance().getConfiguration("test", null);
 
 		// Delete the collection
 		deleteCollection(config);
@@ -95,7 +95,7 @@ public class IndexingApplicationTests {
 
 	private String createObject(String objectId) throws Exception {
 		// Load test configuration
-		JSONObject config = ConfigurationHelper.getInstance().getConfiguration(configurationProfileName, null);
+		JsonNode config = ConfigurationHelper.getInstance().getConfiguration(configurationProfileName, null);
 		Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
 		String database = JsonPath.read(document, "$.mongo.database");
 		String collection = JsonPath.read(document, "$.mongo.collection");
@@ -116,7 +116,7 @@ public class IndexingApplicationTests {
 		return response.getString("_id");
 	}
 
-	private void deleteCollection(JSONObject config) throws Exception {
+	private void deleteCollection(JsonNode config) throws Exception {
 		// Parse test configuration
 		Object document = Configuration.defaultConfiguration().jsonProvider().parse(config.toString());
 		String database = JsonPath.read(document, "$.mongo.database");
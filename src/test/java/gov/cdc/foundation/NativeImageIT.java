@@ -0,0 +1,138 @@
+package gov.cdc.foundation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gov.cdc.foundation.stub.ElasticStub;
+import gov.cdc.foundation.stub.ObjectServiceStub;
+
+/**
+ * Smoke test of the native image, run by the native build (-Dnative) against local stubs of Elasticsearch and the
+ * Object Microservice. The command is set with -Dnative.command, so the same test can run the JVM jar
+ * ("java -jar target/fast-start/...jar").
+ */
+public class NativeImageIT {
+
+	private static final Logger logger = Logger.getLogger(NativeImageIT.class);
+
+	private static final String CONFIG = "simple";
+	private static final String ID = "5bf2e1f1c2a3b4d5e6f70001";
+	private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private String command;
+
+	@Before
+	public void enabled() {
+		command = System.getProperty("native.command");
+		Assume.assumeTrue(command != null && !command.trim().isEmpty());
+	}
+
+	@Test
+	public void startsAndServes() throws Exception {
+		try (ElasticStub elastic = new ElasticStub(); ObjectServiceStub objects = new ObjectServiceStub()) {
+			objects.put("settings", "indexing", CONFIG, mapper.readTree(getClass().getClassLoader().getResource("config/simple.json")));
+			objects.put("test", "simple", ID, mapper.createObjectNode().put("foo", "smoke").put("bar", "test"));
+
+			int port = freePort();
+			String url = "http://127.0.0.1:" + port + "/";
+			long start = System.nanoTime();
+			Process process = start(port, elastic, objects);
+			try {
+				waitUntilHealthy(url, process);
+				long startup = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				logger.info(String.format("Native image healthy in %d ms", startup));
+
+				assertThat(request("POST", url + "api/1.0/index/" + CONFIG + "/" + ID).path("_id").asText()).isEqualTo(ID);
+				assertThat(elastic.getIndexed()).isEqualTo(1);
+				assertThat(request("GET", url + "api/1.0/get/" + CONFIG + "/" + ID).path("_source").path("foobar").asText()).isEqualTo("smoketest");
+				assertThat(request("POST", url + "api/1.0/search/" + CONFIG + "?query=smoke").path("hits").path("hits").size()).isGreaterThan(0);
+			} finally {
+				process.destroy();
+				if (!process.waitFor(10, TimeUnit.SECONDS))
+					process.destroyForcibly();
+			}
+		}
+	}
+
+	private Process start(int port, ElasticStub elastic, ObjectServiceStub objects) throws IOException {
+		List<String> arguments = new ArrayList<>(Arrays.asList(command.trim().split("\\s+")));
+		ProcessBuilder builder = new ProcessBuilder(arguments).redirectErrorStream(true).redirectOutput(new File("target/native-smoke.log"));
+		Map<String, String> environment = builder.environment();
+		environment.put("SPRING_PROFILES_ACTIVE", "fast-start,native");
+		environment.put("INDEXING_PORT", String.valueOf(port));
+		environment.put("INDEXING_ELASTIC_HOST", "127.0.0.1");
+		environment.put("INDEXING_ELASTIC_PORT", String.valueOf(elastic.getPort()));
+		environment.put("INDEXING_ELASTIC_PROTOCOL", "http");
+		environment.put("OBJECT_URL", objects.getUrl());
+		environment.put("INDEXING_FLUENTD_HOST", "127.0.0.1");
+		environment.put("INDEXING_FLUENTD_PORT", "24224");
+		environment.put("INDEXING_PROXY_HOSTNAME", "");
+		environment.put("OAUTH2_ACCESS_TOKEN_URI", "");
+		environment.put("OAUTH2_PROTECTED_URIS", "");
+		environment.put("OAUTH2_CLIENT_ID", "");
+		environment.put("OAUTH2_CLIENT_SECRET", "");
+		environment.put("SSL_VERIFYING_DISABLE", "false");
+		return builder.start();
+	}
+
+	private void waitUntilHealthy(String url, Process process) throws Exception {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (System.currentTimeMillis() < deadline) {
+			assertThat(process.isAlive()).as("process running, see target/native-smoke.log").isTrue();
+			try {
+				HttpURLConnection connection = (HttpURLConnection) new URL(url + "actuator/health").openConnection();
+				if (connection.getResponseCode() == 200)
+					return;
+			} catch (IOException e) {
+				// Not listening yet
+			}
+			Thread.sleep(50);
+		}
+		throw new AssertionError("Not healthy after " + TIMEOUT + " ms, see target/native-smoke.log");
+	}
+
+	private JsonNode request(String method, String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod(method);
+		if ("POST".equals(method)) {
+			connection.setDoOutput(true);
+			try (OutputStream output = connection.getOutputStream()) {
+				output.write(new byte[0]);
+			}
+		}
+		assertThat(connection.getResponseCode()).as(method + " " + url).isEqualTo(200);
+		try (InputStream input = connection.getInputStream()) {
+			return mapper.readTree(IOUtils.toString(input, StandardCharsets.UTF_8));
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package gov.cdc.foundation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures the startup of the fast start profile against the default one, in the same JVM so the machine doesn't
+ * matter. Only run by the fast-start build (-Dfast-start). After a first startup that loads the classes, the profiles
+ * are started in turn and the fastest startup of each is compared. -Dstartup.max-ms adds a limit in ms.
+ */
+public class StartupTimeTest {
+
+	private static final String FAST_START = "fast-start";
+	private static final int RUNS = 2;
+
+	@Before
+	public void enabled() {
+		Assume.assumeTrue(Boolean.getBoolean("startup.test"));
+	}
+
+	@Test
+	public void fasterThanDefault() {
+		start(null);
+		long fastStart = Long.MAX_VALUE;
+		long standard = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			standard = Math.min(standard, start(null));
+			fastStart = Math.min(fastStart, start(FAST_START));
+		}
+		assertThat(fastStart).as("startup time of the fast start profile in ms, the default one took %d ms", standard).isLessThan(standard);
+
+		Long max = Long.getLong("startup.max-ms");
+		if (max != null)
+			assertThat(fastStart).as("startup time of the fast start profile in ms").isLessThan(max);
+	}
+
+	/**
+	 * Starts and stops the service with the given profile (null for the default one), and returns its startup time in ms.
+	 */
+	private long start(String profile) {
+		long start = System.nanoTime();
+		SpringApplicationBuilder builder = new SpringApplicationBuilder(IndexingApplication.class);
+		if (profile != null)
+			builder.profiles(profile);
+		ConfigurableApplicationContext context = builder
+			.initializers(applicationContext -> TestPropertyValues.of(
+				"server.port=0",
+				"indexing.warmup.enabled=false",
+				"logging.fluentd.host=fluentd",
+				"logging.fluentd.port=24224",
+				"elastic.host=elastic",
+				"elastic.port=9200",
+				"elastic.protocol=http",
+				"proxy.hostname=",
+				"security.oauth2.resource.user-info-uri=",
+				"security.oauth2.protected=",
+				"security.oauth2.client.client-id=",
+				"security.oauth2.client.client-secret=",
+				"ssl.verifying.disable=false").applyTo(applicationContext))
+			.run();
+		try {
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			if (FAST_START.equals(profile))
+				assertThat(context.getEnvironment().getProperty("indexing.startup.lazy")).isEqualTo("true");
+			return elapsed;
+		} finally {
+			context.close();
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package gov.cdc.foundation.admission;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveLimiterTest {
+
+	private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+	@Test
+	public void rejectOverLimit() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, TARGET, 0.5);
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.tryAcquire()).isFalse();
+		assertThat(limiter.getInFlight()).isEqualTo(2);
+
+		limiter.release(-1, false);
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+		assertThat(limiter.getLimit()).isEqualTo(2);
+		assertThat(limiter.tryAcquire()).isTrue();
+	}
+
+	@Test
+	public void additiveIncrease() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 3, TARGET, 0.5);
+		for (int i = 0; i < 5; i++) {
+			limiter.tryAcquire();
+			limiter.tryAcquire();
+			limiter.release(FAST, false);
+			limiter.release(FAST, false);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(3);
+	}
+
+	@Test
+	public void multiplicativeDecrease() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(8, 2, 10, TARGET, 0.5);
+		limiter.tryAcquire();
+		limiter.release(SLOW, false);
+		assertThat(limiter.getLimit()).isEqualTo(4);
+
+		limiter.tryAcquire();
+		limiter.release(FAST, true);
+		assertThat(limiter.getLimit()).isEqualTo(2);
+
+		limiter.tryAcquire();
+		limiter.release(SLOW, false);
+		assertThat(limiter.getLimit()).isEqualTo(2);
+	}
+
+}
@@ -0,0 +1,83 @@
+package gov.cdc.foundation.admission;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import gov.cdc.foundation.helper.MetricsHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AdmissionControlTest {
+
+	private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(500);
+	private static final long CALL = TimeUnit.MILLISECONDS.toNanos(300);
+
+	@After
+	public void stop() {
+		AdmissionControl.stopObservation();
+	}
+
+	@Test
+	public void noCall() {
+		AdmissionControl.startObservation();
+		assertThat(AdmissionControl.stopObservation().latency).isNegative();
+	}
+
+	@Test
+	public void multiCallRequest() {
+		AdmissionControl.startObservation();
+		AdmissionControl.recordElasticLatency(CALL);
+		AdmissionControl.recordElasticLatency(TimeUnit.MILLISECONDS.toNanos(100));
+		AdmissionControl.recordElasticLatency(CALL);
+		AdmissionControl.Observation observation = AdmissionControl.stopObservation();
+		assertThat(observation.latency).isEqualTo(CALL);
+
+		// Each call is under the target, so the limit keeps growing
+		AdaptiveLimiter limiter = new AdaptiveLimiter(4, 2, 10, TARGET, 0.5);
+		for (int i = 0; i < 4; i++)
+			limiter.tryAcquire();
+		limiter.release(observation.latency, observation.overloaded);
+		assertThat(limiter.getLimit()).isEqualTo(5);
+	}
+
+	@Test
+	public void slowCall() {
+		AdmissionControl.startObservation();
+		AdmissionControl.recordElasticLatency(CALL);
+		AdmissionControl.recordElasticLatency(TimeUnit.MILLISECONDS.toNanos(600));
+		AdmissionControl.Observation observation = AdmissionControl.stopObservation();
+
+		AdaptiveLimiter limiter = new AdaptiveLimiter(4, 2, 10, TARGET, 0.5);
+		limiter.tryAcquire();
+		limiter.release(observation.latency, observation.overloaded);
+		assertThat(limiter.getLimit()).isEqualTo(2);
+	}
+
+	@Test
+	public void limiterPerConfig() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MetricsHelper metrics = new MetricsHelper(registry, 2);
+		metrics.registerConfig("first");
+		metrics.registerConfig("second");
+		AdmissionControl control = new AdmissionControl(registry, true, 20, 2, 200, 500, 0.9, 1);
+
+		// Each registered configuration gets its own limiter
+		AdaptiveLimiter first = control.getLimiter("first", AdmissionClass.SEARCH);
+		assertThat(control.getLimiter("first", AdmissionClass.SEARCH)).isSameAs(first);
+		assertThat(control.getLimiter("second", AdmissionClass.SEARCH)).isNotSameAs(first);
+		assertThat(control.getLimiterCount()).isEqualTo(2);
+
+		// Any other name, even an existing configuration past the metrics limit, shares a limiter per class
+		AdaptiveLimiter overflow = control.getLimiter("unknown", AdmissionClass.SEARCH);
+		metrics.registerConfig("third");
+		assertThat(control.getLimiter("third", AdmissionClass.SEARCH)).isSameAs(overflow);
+		assertThat(control.getLimiter(null, AdmissionClass.SEARCH)).isSameAs(overflow);
+		assertThat(control.getLimiter("unknown", AdmissionClass.INDEX)).isNotSameAs(overflow);
+		assertThat(overflow).isNotSameAs(first);
+		assertThat(control.getLimiterCount()).isEqualTo(2);
+	}
+
+}
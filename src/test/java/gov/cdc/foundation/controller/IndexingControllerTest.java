@@ -0,0 +1,239 @@
+package gov.cdc.foundation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.IndexingApplication;
+import gov.cdc.foundation.stub.ElasticStub;
+import gov.cdc.foundation.stub.ObjectServiceStub;
+
+/**
+ * Runs the endpoints against the stubs of Elasticsearch and the Object Microservice, whose failures are injected.
+ */
+public class IndexingControllerTest {
+
+	private static final String TEST = "test";
+	private static final String ROUTED = "routed";
+	private static final String ID = "5bf2e1f1c2a3b4d5e6f70100";
+	private static final String NDJSON = "application/x-ndjson";
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private static ElasticStub elastic;
+	private static ObjectServiceStub objects;
+	private static ServerSocket fluentd;
+	private static ConfigurableApplicationContext context;
+	private static CloseableHttpClient client;
+	private static String url;
+
+	@BeforeClass
+	public static void start() throws IOException {
+		elastic = new ElasticStub();
+		objects = new ObjectServiceStub();
+		// Accepts the Fluentd connections, the logs are never read
+		fluentd = new ServerSocket(0);
+
+		// The date of the objects is transformed to a timestamp by the mapping
+		objects.put("settings", "indexing", TEST, mapper.readTree(IndexingControllerTest.class.getClassLoader().getResource("config/test.json")));
+		ObjectNode routed = (ObjectNode) mapper.readTree(IndexingControllerTest.class.getClassLoader().getResource("config/simple.json"));
+		((ObjectNode) routed.get("elastic")).put("index", ROUTED);
+		routed.putObject("routing").put("field", "foo");
+		objects.put("settings", "indexing", ROUTED, routed);
+
+		System.setProperty("OBJECT_URL", objects.getUrl());
+		context = new SpringApplicationBuilder(IndexingApplication.class)
+			.initializers(applicationContext -> TestPropertyValues.of(
+				"server.port=0",
+				"logging.fluentd.host=127.0.0.1",
+				"logging.fluentd.port=" + fluentd.getLocalPort(),
+				"elastic.host=127.0.0.1",
+				"elastic.port=" + elastic.getPort(),
+				"elastic.protocol=http",
+				"indexing.warmup.enabled=false",
+				"indexing.bulk.chunk-size=2",
+				// The injected failures are answered right away and never open the circuit breakers
+				"resilience.retry.max.attempts=1",
+				"resilience.breaker.failure.threshold=1000",
+				"proxy.hostname=",
+				"security.oauth2.resource.user-info-uri=",
+				"security.oauth2.protected=",
+				"security.oauth2.client.client-id=",
+				"security.oauth2.client.client-secret=",
+				"ssl.verifying.disable=false").applyTo(applicationContext))
+			.run();
+		url = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port") + "/api/1.0/";
+		client = HttpClients.createDefault();
+	}
+
+	@AfterClass
+	public static void stop() throws IOException {
+		client.close();
+		context.close();
+		fluentd.close();
+		objects.close();
+		elastic.close();
+	}
+
+	@After
+	public void recover() {
+		elastic.recover();
+		objects.recover();
+	}
+
+	@Test
+	public void deleteLookupFailure() throws Exception {
+		elastic.fail("GET", "/" + ROUTED + "/_search", Integer.MAX_VALUE, 503, "es_rejected_execution_exception");
+
+		// The object may well be indexed: the lookup failure isn't reported as a missing object
+		assertThat(send(request("DELETE", url + "index/" + ROUTED + "/" + ID, null)).status).isGreaterThanOrEqualTo(500);
+
+		Result bulk = send(request("DELETE", url + "index/bulk/" + ROUTED, ID + "\n"));
+		assertThat(bulk.status).isEqualTo(200);
+		List<JsonNode> lines = bulk.lines();
+		assertThat(lines).hasSize(2);
+		assertThat(lines.get(0).path("id").asText()).isEqualTo(ID);
+		assertThat(lines.get(0).path("status").asInt()).isGreaterThanOrEqualTo(500);
+		assertThat(lines.get(1).path("failed").asInt()).isEqualTo(1);
+	}
+
+	@Test
+	public void bulkIndexUnmappedObject() throws Exception {
+		objects.put("test", "junit", id(1), object("20180312"));
+		objects.put("test", "junit", id(2), object("not a date"));
+		objects.put("test", "junit", id(3), object("20180313"));
+
+		// The first chunk holds the object that can't be mapped
+		Result result = send(request("POST", url + "index/bulk/" + TEST, id(1) + "\n" + id(2) + "\n" + id(3) + "\n"));
+		assertThat(result.status).isEqualTo(200);
+		assertThat(result.statuses()).containsEntry(id(1), 201).containsEntry(id(2), 400).containsEntry(id(3), 201).hasSize(3);
+		assertThat(result.summary().path("indexed").asInt()).isEqualTo(2);
+		assertThat(result.summary().path("failed").asInt()).isEqualTo(1);
+		assertThat(elastic.getDocument("test", "junit", id(1))).isNotNull();
+		assertThat(elastic.getDocument("test", "junit", id(2))).isNull();
+	}
+
+	@Test
+	public void bulkIndexFailedChunk() throws Exception {
+		for (int i = 4; i < 8; i++)
+			objects.put("test", "junit", id(i), object("20180312"));
+		elastic.fail("POST", "/_bulk", 1, 503, "es_rejected_execution_exception");
+
+		// Only the first chunk fails, the stream goes on with the next one
+		Result result = send(request("POST", url + "index/bulk/" + TEST, id(4) + "\n" + id(5) + "\n" + id(6) + "\n" + id(7) + "\n"));
+		assertThat(result.status).isEqualTo(200);
+		assertThat(result.statuses()).containsEntry(id(4), 500).containsEntry(id(5), 500).containsEntry(id(6), 201).containsEntry(id(7), 201);
+		assertThat(result.summary().path("success").asBoolean()).isTrue();
+		assertThat(result.summary().path("indexed").asInt()).isEqualTo(2);
+		assertThat(result.summary().path("failed").asInt()).isEqualTo(2);
+	}
+
+	@Test
+	public void ingestUnmappedDocument() throws Exception {
+		StringBuilder stream = new StringBuilder();
+		for (int i = 8; i < 11; i++)
+			stream.append(object(i == 9 ? "not a date" : "20180312").put("_id", id(i))).append('\n');
+
+		// Only the document that can't be mapped is rejected
+		Result result = send(request("POST", url + "ingest/" + TEST, stream.toString()));
+		assertThat(result.status).isEqualTo(200);
+		assertThat(result.statuses()).containsEntry(id(8), 201).containsEntry(id(9), 400).containsEntry(id(10), 201).hasSize(3);
+		assertThat(result.summary().path("success").asBoolean()).isTrue();
+		assertThat(result.summary().path("indexed").asInt()).isEqualTo(2);
+		assertThat(result.summary().path("failed").asInt()).isEqualTo(1);
+		assertThat(elastic.getDocument("test", "junit", id(8)).path("start").isNumber()).isTrue();
+		assertThat(elastic.getDocument("test", "junit", id(9))).isNull();
+		assertThat(elastic.getDocument("test", "junit", id(10))).isNotNull();
+	}
+
+	private static String id(int i) {
+		return String.format("5bf2e1f1c2a3b4d5e6f7%04x", i);
+	}
+
+	private ObjectNode object(String date) {
+		return mapper.createObjectNode().put("value", "junit").put("date", date);
+	}
+
+	private HttpUriRequest request(String method, String uri, String ndjson) {
+		HttpEntityEnclosingRequestBase request = new HttpEntityEnclosingRequestBase() {
+			@Override
+			public String getMethod() {
+				return method;
+			}
+		};
+		request.setURI(URI.create(uri));
+		if (ndjson != null)
+			request.setEntity(new StringEntity(ndjson, ContentType.create(NDJSON, StandardCharsets.UTF_8)));
+		return request;
+	}
+
+	private Result send(HttpUriRequest request) throws IOException {
+		try (CloseableHttpResponse response = client.execute(request)) {
+			return new Result(response.getStatusLine().getStatusCode(), EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private static class Result {
+
+		private final int status;
+		private final String body;
+
+		Result(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		List<JsonNode> lines() throws IOException {
+			List<JsonNode> lines = new ArrayList<>();
+			for (String line : body.split("\n"))
+				if (!line.trim().isEmpty())
+					lines.add(mapper.readTree(line));
+			return lines;
+		}
+
+		/**
+		 * Returns the status of each id, from the result lines.
+		 */
+		Map<String, Integer> statuses() throws IOException {
+			Map<String, Integer> statuses = new HashMap<>();
+			for (JsonNode line : lines())
+				if (line.has("id"))
+					statuses.put(line.path("id").asText(), line.path("status").asInt());
+			return statuses;
+		}
+
+		JsonNode summary() throws IOException {
+			List<JsonNode> lines = lines();
+			return lines.get(lines.size() - 1);
+		}
+
+	}
+
+}
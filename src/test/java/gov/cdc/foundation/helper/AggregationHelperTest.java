@@ -0,0 +1,58 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AggregationHelperTest {
+
+	private JsonNode parse(String json) throws Exception {
+		return JSONHelper.getInstance().getMapper().readTree(json);
+	}
+
+	private JsonNode config() throws Exception {
+		return parse("{\"aggregations\":{"
+			+ "\"byStatus\":{\"terms\":{\"field\":\"status\"},\"aggs\":{\"patients\":{\"cardinality\":{\"field\":\"patient\"}}}},"
+			+ "\"perMonth\":{\"date_histogram\":{\"field\":\"start\",\"interval\":\"month\"}},"
+			+ "\"script\":{\"scripted_metric\":{}}}}");
+	}
+
+	@Test
+	public void selection() throws Exception {
+		AggregationHelper helper = new AggregationHelper(new SimpleMeterRegistry(), 0, 1);
+
+		assertThat(helper.getAggregations(config(), Arrays.asList("byStatus", "perMonth")).size()).isEqualTo(2);
+		assertThat(helper.getAggregations(config(), Arrays.asList("perMonth")).has("byStatus")).isFalse();
+		assertThatThrownBy(() -> helper.getAggregations(config(), Arrays.asList("missing"))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> helper.getAggregations(config(), Arrays.asList("script"))).isInstanceOf(IllegalArgumentException.class);
+		// All of them, including the unsupported one
+		assertThatThrownBy(() -> helper.getAggregations(config(), null)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> helper.getAggregations(parse("{}"), null)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void cache() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AggregationHelper helper = new AggregationHelper(registry, 60000, 1);
+		AtomicInteger calls = new AtomicInteger();
+		Operation<JsonNode, RuntimeException> operation = () -> JSONHelper.getInstance().createObjectNode().put("call", calls.incrementAndGet());
+
+		assertThat(helper.get("a", operation).get("call").asInt()).isEqualTo(1);
+		assertThat(helper.get("a", operation).get("call").asInt()).isEqualTo(1);
+		// Evicts the first key
+		assertThat(helper.get("b", operation).get("call").asInt()).isEqualTo(2);
+		assertThat(helper.get("a", operation).get("call").asInt()).isEqualTo(3);
+
+		assertThat(registry.get("indexing.aggregations.cache.requests").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+		assertThat(registry.get("indexing.aggregations.cache.size").gauge().value()).isEqualTo(1);
+	}
+
+}
@@ -0,0 +1,189 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.stub.ElasticStub;
+
+public class BulkHelperTest {
+
+	private static ElasticStub elastic;
+
+	private BulkHelper bulk = new BulkHelper(2);
+
+	@BeforeClass
+	public static void start() throws IOException {
+		elastic = new ElasticStub();
+	}
+
+	@AfterClass
+	public static void stop() {
+		elastic.close();
+	}
+
+	@Before
+	public void connect() {
+		new ElasticHelper("127.0.0.1", elastic.getPort(), "http", "json");
+	}
+
+	@Test
+	public void readIds() {
+		String input = "5bf2e1f1c2a3b4d5e6f70001\n"
+			+ "\n"
+			+ "  \"5bf2e1f1c2a3b4d5e6f70002\"  \n"
+			+ "{ \"id\": \"5bf2e1f1c2a3b4d5e6f70003\" }\n"
+			+ "{ \"_id\": { \"$oid\": \"5bf2e1f1c2a3b4d5e6f70004\" }, \"value\": 1 }\n"
+			+ "{ \"_id\": \"5bf2e1f1c2a3b4d5e6f70005\", \"id\": 12 }\n"
+			+ "{ not json\n"
+			+ "{ \"value\": 1 }";
+		Iterator<JsonNode> lines = bulk.readLines(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+		List<String> ids = new ArrayList<>();
+		while (lines.hasNext())
+			ids.add(bulk.getId(lines.next()));
+		assertThat(ids).containsExactly(
+			"5bf2e1f1c2a3b4d5e6f70001",
+			"5bf2e1f1c2a3b4d5e6f70002",
+			"5bf2e1f1c2a3b4d5e6f70003",
+			"5bf2e1f1c2a3b4d5e6f70004",
+			"5bf2e1f1c2a3b4d5e6f70005",
+			"{ not json",
+			null
+		);
+	}
+
+	@Test
+	public void indexAndDelete() throws Exception {
+		new HashHelper(false, "_hash", 0);
+		bulk.request().index("bulk", "junit", "bulk-2", null, document("a")).execute();
+		BulkHelper.Request request = bulk.request()
+			.index("bulk", "junit", "bulk-1", null, document("a"))
+			.delete("bulk", "junit", "bulk-2", null);
+
+		assertThat(request.size()).isEqualTo(2);
+		assertThat(request.getIds()).containsExactly("bulk-1", "bulk-2");
+		List<ObjectNode> results = request.execute();
+		assertThat(results).hasSize(2);
+		assertThat(results.get(0).path("status").asInt()).isEqualTo(201);
+		assertThat(results.get(0).path("result").asText()).isEqualTo("created");
+		assertThat(results.get(1).path("result").asText()).isEqualTo("deleted");
+		assertThat(elastic.getDocument("bulk", "junit", "bulk-1")).isEqualTo(document("a"));
+		assertThat(elastic.getDocument("bulk", "junit", "bulk-2")).isNull();
+	}
+
+	@Test
+	public void locatedDeletes() throws Exception {
+		new HashHelper(false, "_hash", 0);
+		bulk.request()
+			.index("located-2018.03", "junit", "located-1", "a", document("a"))
+			.index("located-undated", "junit", "located-2", null, document("a"))
+			.index("located", "junit", "located-3", null, document("a"))
+			.execute();
+		Map<String, JsonNode> locations = ElasticHelper.getInstance().locate("located", "junit", Arrays.asList("located-1", "located-2", "located-4"));
+
+		BulkHelper.Request request = bulk.request();
+		assertThat(request.delete("located", "junit", Arrays.asList("located-1", "located-2", "located-4"), locations)).containsExactly("located-4");
+		assertThat(request.getIds()).containsExactly("located-1", "located-2");
+		request.execute();
+		assertThat(elastic.getDocument("located-2018.03", "junit", "located-1", "a")).isNull();
+		assertThat(elastic.getDocument("located-undated", "junit", "located-2")).isNull();
+
+		// Without lookup, the ids are deleted from the index itself
+		request = bulk.request();
+		assertThat(request.delete("located", "junit", Arrays.asList("located-3", "located-4"), null)).isEmpty();
+		request.execute();
+		assertThat(elastic.getDocument("located", "junit", "located-3")).isNull();
+	}
+
+	@Test
+	public void movedDeletes() throws Exception {
+		HashHelper hashes = new HashHelper(true, "_hash", 10);
+		bulk.request()
+			.index("moved-2018.03", "junit", "1", null, document("a"))
+			.index("moved-2018.04", "junit", "2", null, document("a"))
+			.index("moved-2018.04", "junit", "3", "a", document("a"))
+			.execute();
+		HashHelper.Document previous = hashes.document("moved-2018.03", "junit", "1", null, hashes.hash(document("a")));
+
+		// 1 moved to another partition and 3 to another routing, their previous copies are deleted but not reported
+		List<ObjectNode> results = bulk.request().removeMoved("moved")
+			.index("moved-2018.04", "junit", "1", null, document("b"))
+			.index("moved-2018.04", "junit", "2", null, document("b"))
+			.index("moved-2018.04", "junit", "3", "b", document("b"))
+			.index("moved-2018.04", "junit", "4", null, document("b"))
+			.execute();
+		assertThat(results.stream().map(result -> result.path("id").asText()).collect(Collectors.toList())).containsExactly("1", "2", "3", "4");
+		assertThat(elastic.getDocument("moved-2018.03", "junit", "1")).isNull();
+		assertThat(elastic.getDocument("moved-2018.04", "junit", "3", "a")).isNull();
+		assertThat(elastic.getDocument("moved-2018.04", "junit", "1").path("value").asText()).isEqualTo("b");
+		assertThat(elastic.getDocument("moved-2018.04", "junit", "2").path("value").asText()).isEqualTo("b");
+		assertThat(elastic.getDocument("moved-2018.04", "junit", "3", "b").path("value").asText()).isEqualTo("b");
+
+		// The hash of the deleted copy is forgotten, so it's looked up and not found
+		assertThat(hashes.findUnchanged(Arrays.asList(previous))).isEmpty();
+	}
+
+	@Test
+	public void hashedDocument() throws Exception {
+		HashHelper hashes = new HashHelper(true, "_hash", 0);
+		String hash = hashes.hash(document("a"));
+		bulk.request().index("hashed", "junit", "hashed-1", null, document("a")).execute();
+		assertThat(elastic.getDocument("hashed", "junit", "hashed-1").path("_hash").asText()).isEqualTo(hash);
+
+		// Indexed with the same hash, the document isn't sent again
+		long writes = elastic.getWrites();
+		List<ObjectNode> results = bulk.request().index("hashed", "junit", "hashed-1", null, document("a")).execute();
+		assertThat(results.get(0).path("result").asText()).isEqualTo(BulkHelper.RESULT_NOOP);
+		assertThat(elastic.getWrites()).isEqualTo(writes);
+	}
+
+	@Test
+	public void binaryBody() throws Exception {
+		new HashHelper(false, "_hash", 0);
+		new ElasticHelper("127.0.0.1", elastic.getPort(), "http", "smile");
+		bulk.request().index("binary", "junit", "smile-1", null, document("a")).execute();
+		assertThat(elastic.getBulkContentType()).startsWith(ElasticFormat.SMILE.getMediaType());
+		assertThat(elastic.getDocument("binary", "junit", "smile-1")).isEqualTo(document("a"));
+
+		// No separator in CBOR: NDJSON instead
+		new ElasticHelper("127.0.0.1", elastic.getPort(), "http", "cbor");
+		bulk.request().index("binary", "junit", "cbor-1", null, document("a")).execute();
+		assertThat(elastic.getBulkContentType()).startsWith(BulkHelper.CONTENT_TYPE_NDJSON);
+		assertThat(elastic.getDocument("binary", "junit", "cbor-1")).isEqualTo(document("a"));
+	}
+
+	private ObjectNode document(String value) {
+		return JSONHelper.getInstance().createObjectNode().put("value", value);
+	}
+
+	@Test
+	public void writeResults() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		bulk.writeLine(output, bulk.result("1", 404, "Not found"));
+		bulk.writeLine(output, bulk.result("2", 201, null).put("result", "created"));
+
+		assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(
+			"{\"id\":\"1\",\"status\":404,\"error\":\"Not found\"}\n"
+			+ "{\"id\":\"2\",\"status\":201,\"result\":\"created\"}\n"
+		);
+	}
+
+}
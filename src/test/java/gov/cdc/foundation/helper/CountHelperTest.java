@@ -0,0 +1,102 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class CountHelperTest {
+
+	private ObjectMapper mapper = new ObjectMapper();
+	private CountHelper counts = CountHelper.getInstance();
+
+	@Test
+	public void noLimit() {
+		ObjectNode result = search(1500);
+		counts.limitTotalHits(result, null);
+		assertThat(result.path("hits").path("total").asLong()).isEqualTo(1500);
+		assertThat(result.path("hits").has("relation")).isFalse();
+	}
+
+	@Test
+	public void noTotal() {
+		// count=false
+		ObjectNode result = search(1500);
+		counts.limitTotalHits(result, 0);
+		assertThat(result.path("hits").has("total")).isFalse();
+		assertThat(result.path("hits").has("relation")).isFalse();
+		assertThat(result.path("hits").has("hits")).isTrue();
+	}
+
+	@Test
+	public void totalAboveLimit() {
+		ObjectNode result = search(1500);
+		counts.limitTotalHits(result, 1000);
+		assertThat(result.path("hits").path("total").asLong()).isEqualTo(1000);
+		assertThat(result.path("hits").path("relation").asText()).isEqualTo(CountHelper.RELATION_GTE);
+	}
+
+	@Test
+	public void totalBelowLimit() {
+		ObjectNode result = search(1000);
+		counts.limitTotalHits(result, 1000);
+		assertThat(result.path("hits").path("total").asLong()).isEqualTo(1000);
+		assertThat(result.path("hits").path("relation").asText()).isEqualTo(CountHelper.RELATION_EQ);
+
+		result = search(12);
+		counts.limitTotalHits(result, 1000);
+		assertThat(result.path("hits").path("total").asLong()).isEqualTo(12);
+		assertThat(result.path("hits").path("relation").asText()).isEqualTo(CountHelper.RELATION_EQ);
+	}
+
+	@Test
+	public void countWithoutLimit() {
+		ObjectNode result = mapper.createObjectNode().put("count", 1500);
+		counts.limitCount(result, 0);
+		assertThat(result.path("count").asLong()).isEqualTo(1500);
+		assertThat(result.path("relation").asText()).isEqualTo(CountHelper.RELATION_EQ);
+	}
+
+	@Test
+	public void countPastLimit() {
+		// terminate_after is applied per shard: 5 shards stopping at 1000 each
+		ObjectNode result = mapper.createObjectNode().put("count", 5000).put("terminated_early", true);
+		counts.limitCount(result, 1000);
+		assertThat(result.path("count").asLong()).isEqualTo(1000);
+		assertThat(result.path("relation").asText()).isEqualTo(CountHelper.RELATION_GTE);
+
+		// Some shards stopped, the others didn't reach the limit
+		result = mapper.createObjectNode().put("count", 1700);
+		counts.limitCount(result, 1000);
+		assertThat(result.path("count").asLong()).isEqualTo(1000);
+		assertThat(result.path("relation").asText()).isEqualTo(CountHelper.RELATION_GTE);
+	}
+
+	@Test
+	public void countTerminatedAtLimit() {
+		// A single shard stopped exactly at the limit: there may be more documents
+		ObjectNode result = mapper.createObjectNode().put("count", 1000).put("terminated_early", true);
+		counts.limitCount(result, 1000);
+		assertThat(result.path("count").asLong()).isEqualTo(1000);
+		assertThat(result.path("relation").asText()).isEqualTo(CountHelper.RELATION_GTE);
+	}
+
+	@Test
+	public void countBelowLimit() {
+		ObjectNode result = mapper.createObjectNode().put("count", 12).put("terminated_early", false);
+		counts.limitCount(result, 1000);
+		assertThat(result.path("count").asLong()).isEqualTo(12);
+		assertThat(result.path("relation").asText()).isEqualTo(CountHelper.RELATION_EQ);
+	}
+
+	private ObjectNode search(long total) {
+		ObjectNode result = mapper.createObjectNode();
+		ObjectNode hits = result.putObject("hits");
+		hits.put("total", total);
+		hits.putArray("hits");
+		return result;
+	}
+
+}
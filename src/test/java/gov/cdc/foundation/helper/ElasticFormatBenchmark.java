@@ -0,0 +1,99 @@
+package gov.cdc.foundation.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Compares the wire formats with Elasticsearch: parsing a search response and writing a bulk request of the same
+ * documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticFormatBenchmark {
+
+	@Param({ "JSON", "SMILE", "CBOR" })
+	private ElasticFormat format;
+
+	@Param({ "100" })
+	private int hits;
+
+	private byte[] response;
+	private List<JsonNode> bulk;
+
+	@Setup
+	public void setup() throws Exception {
+		ObjectNode search = JSONHelper.getInstance().createObjectNode();
+		search.put("took", 12);
+		ObjectNode hitsNode = search.putObject("hits");
+		hitsNode.put("total", 12345);
+		ArrayNode hitsArray = hitsNode.putArray("hits");
+		bulk = new ArrayList<>();
+		for (int i = 0; i < hits; i++) {
+			ObjectNode hit = hitsArray.addObject();
+			hit.put("_index", "events-2018.03");
+			hit.put("_type", "event");
+			hit.put("_id", "5bf2e1f1c2a3b4d5e6f7" + String.format("%04d", i));
+			hit.put("_score", 1.5 + i);
+			ObjectNode source = document(i);
+			hit.set("_source", source);
+			ObjectNode action = JSONHelper.getInstance().createObjectNode();
+			action.putObject("index").put("_index", "events-2018.03").put("_type", "event").put("_id", hit.get("_id").asText());
+			bulk.add(action);
+			bulk.add(source);
+		}
+		response = format.getMapper().writeValueAsBytes(search);
+	}
+
+	private ObjectNode document(int i) {
+		ObjectNode document = JSONHelper.getInstance().createObjectNode();
+		document.put("name", "Event " + i);
+		document.put("status", i % 2 == 0 ? "open" : "closed");
+		document.put("start", 1520000000000L + i * 60000L);
+		document.put("count", i);
+		document.put("ratio", i / 7.0);
+		ObjectNode patient = document.putObject("patient");
+		patient.put("id", "P" + i);
+		patient.put("age", 20 + i % 60);
+		ArrayNode tags = document.putArray("tags");
+		for (int j = 0; j < 5; j++)
+			tags.add("tag" + j);
+		document.put("notes", "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt.");
+		return document;
+	}
+
+	@Benchmark
+	public JsonNode parseResponse() throws Exception {
+		return format.getMapper().readTree(response);
+	}
+
+	@Benchmark
+	public byte[] writeBulk() throws Exception {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (JsonNode line : bulk)
+			format.writeBulkLine(body, line);
+		return body.toByteArray();
+	}
+
+}
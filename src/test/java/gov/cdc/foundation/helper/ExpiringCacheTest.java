@@ -0,0 +1,60 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	public void leastRecentlyUsed() {
+		ExpiringCache<String, Value> cache = new ExpiringCache<>(2, clock::get);
+		Value a = new Value(100);
+		cache.put("a", a);
+		cache.put("b", new Value(100));
+		assertThat(cache.get("a")).isSameAs(a);
+
+		// "b" is the least recently used
+		cache.put("c", new Value(100));
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.get("b")).isNull();
+		assertThat(cache.get("a")).isSameAs(a);
+	}
+
+	@Test
+	public void expiration() {
+		ExpiringCache<String, Value> cache = new ExpiringCache<>(10, clock::get);
+		Value a = new Value(100);
+		assertThat(cache.putIfAbsent("a", a)).isNull();
+		assertThat(cache.putIfAbsent("a", new Value(200))).isSameAs(a);
+
+		clock.set(100);
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.size()).isEqualTo(0);
+
+		Value other = new Value(200);
+		assertThat(cache.putIfAbsent("a", other)).isNull();
+		assertThat(cache.remove("a", a)).isFalse();
+		assertThat(cache.remove("a", other)).isTrue();
+	}
+
+	private static class Value implements ExpiringCache.Expiring {
+
+		private final long expiresAt;
+
+		Value(long expiresAt) {
+			this.expiresAt = expiresAt;
+		}
+
+		@Override
+		public boolean isExpired(long now) {
+			return expiresAt <= now;
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class HashHelperTest {
+
+	private final HashHelper hashes = new HashHelper(true, "_hash", 10);
+
+	private ObjectNode parse(String json) throws Exception {
+		return (ObjectNode) JSONHelper.getInstance().getMapper().readTree(json);
+	}
+
+	@Test
+	public void stableHash() throws Exception {
+		String hash = hashes.hash(parse("{\"a\":1,\"b\":{\"c\":\"x\",\"d\":[1,2]}}"));
+
+		assertThat(hash).hasSize(16);
+		assertThat(hashes.hash(parse("{\"b\":{\"d\":[1,2],\"c\":\"x\"},\"a\":1}"))).isEqualTo(hash);
+		assertThat(hashes.hash(parse("{\"a\":1,\"b\":{\"c\":\"x\",\"d\":[2,1]}}"))).isNotEqualTo(hash);
+		assertThat(hashes.hash(parse("{\"a\":1,\"b\":{\"c\":\"x\",\"d\":[1,2]},\"_hash\":\"0\"}"))).isEqualTo(hash);
+	}
+
+	@Test
+	public void stamp() throws Exception {
+		ObjectNode document = parse("{\"a\":1}");
+		String hash = hashes.stamp(document);
+
+		assertThat(document.path("_hash").asText()).isEqualTo(hash);
+		assertThat(hashes.stamp(document)).isEqualTo(hash);
+	}
+
+	@Test
+	public void localStore() throws Exception {
+		String hash = hashes.hash(parse("{\"a\":1}"));
+		HashHelper.Document same = hashes.document("test", "junit", "1", null, hash);
+		HashHelper.Document changed = hashes.document("test", "junit", "2", null, hashes.hash(parse("{\"a\":2}")));
+		hashes.remember(same);
+		hashes.remember(hashes.document("test", "junit", "2", null, hash));
+
+		// Both ids are known locally, so Elasticsearch isn't queried
+		assertThat(hashes.findUnchanged(Arrays.asList(same, changed))).containsExactly(same);
+
+		hashes.forget("test", "junit", "1");
+		hashes.forget("test", "junit", "2");
+		hashes.remember(changed);
+		assertThat(hashes.findUnchanged(Arrays.asList(changed))).containsExactly(changed);
+	}
+
+}
@@ -0,0 +1,54 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.cdc.helper.common.ServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MetricsHelperTest {
+
+	private SimpleMeterRegistry registry;
+	private MetricsHelper metrics;
+
+	@Before
+	public void setup() {
+		registry = new SimpleMeterRegistry();
+		metrics = new MetricsHelper(registry, 2);
+	}
+
+	@Test
+	public void boundedConfigTags() {
+		metrics.registerConfig("first");
+		metrics.registerConfig("second");
+		metrics.registerConfig("third");
+
+		assertThat(metrics.configTag("first")).isEqualTo("first");
+		assertThat(metrics.configTag("second")).isEqualTo("second");
+		assertThat(metrics.configTag("third")).isEqualTo(MetricsHelper.CONFIG_OTHER);
+		assertThat(metrics.configTag(null)).isEqualTo(MetricsHelper.CONFIG_NONE);
+	}
+
+	@Test
+	public void timeOperations() {
+		metrics.registerConfig("first");
+		String result = metrics.time(MetricsHelper.METRIC_ELASTIC, "search", "first", () -> "ok");
+		assertThat(result).isEqualTo("ok");
+		assertThat(registry.get(MetricsHelper.METRIC_ELASTIC).tag(MetricsHelper.TAG_CONFIG, "first").tag(MetricsHelper.TAG_OUTCOME, "success").timer().count()).isEqualTo(1);
+
+		try {
+			metrics.time(MetricsHelper.METRIC_ELASTIC, "search", "first", () -> {
+				throw new ServiceException("failure");
+			});
+			fail("The exception should have been propagated");
+		} catch (ServiceException e) {
+			assertThat(e.getMessage()).isEqualTo("failure");
+		}
+		assertThat(registry.get(MetricsHelper.METRIC_ELASTIC).tag(MetricsHelper.TAG_OUTCOME, "error").timer().count()).isEqualTo(1);
+		assertThat(registry.get(MetricsHelper.METRIC_ERRORS).tag(MetricsHelper.TAG_EXCEPTION, "ServiceException").counter().count()).isEqualTo(1.0);
+	}
+
+}
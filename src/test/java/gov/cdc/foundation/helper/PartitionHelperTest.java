@@ -0,0 +1,55 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class PartitionHelperTest {
+
+	private final PartitionHelper partitions = PartitionHelper.getInstance();
+
+	private JsonNode parse(String json) throws Exception {
+		return JSONHelper.getInstance().getMapper().readTree(json);
+	}
+
+	private long millis(String date) {
+		return Instant.parse(date).toEpochMilli();
+	}
+
+	@Test
+	public void partitionOfDocument() throws Exception {
+		JsonNode config = parse("{\"elastic\":{\"index\":\"events\",\"partition\":{\"field\":\"start\"}}}");
+
+		assertThat(partitions.isPartitioned(config)).isTrue();
+		assertThat(partitions.getPartition(config, parse("{\"start\":" + millis("2018-03-31T23:59:59Z") + "}"))).isEqualTo("2018.03");
+		assertThat(partitions.getPartition(config, parse("{\"start\":\"2018-04-01T00:00:00Z\"}"))).isEqualTo("2018.04");
+		assertThat(partitions.getPartition(config, parse("{\"start\":\"2018-04-02\"}"))).isEqualTo("2018.04");
+		assertThat(partitions.getPartition(config, parse("{\"other\":1}"))).isEqualTo(PartitionHelper.UNDATED);
+		assertThat(partitions.isPartitioned(parse("{\"elastic\":{\"index\":\"events\"}}"))).isFalse();
+	}
+
+	@Test
+	public void prunedSearch() throws Exception {
+		JsonNode config = parse("{\"elastic\":{\"index\":\"events\",\"partition\":{\"field\":\"start\",\"format\":\"yyyy.MM\"}}}");
+		JsonNode query = parse("{\"bool\":{\"must\":[{\"range\":{\"start\":{\"gte\":" + millis("2018-02-15T00:00:00Z") + "}}}],"
+			+ "\"filter\":[{\"range\":{\"start\":{\"lt\":" + millis("2018-04-01T00:00:00Z") + "}}}]}}");
+
+		assertThat(partitions.select(config, "events", query, () -> Arrays.asList("events-p-2018.04", "events-p-2018.01", "events-p-2018.03", "events-p-undated", "events-p-2018.02", "events-2018.03", "events-archive")))
+			.containsExactly("events-p-2018.02", "events-p-2018.03");
+	}
+
+	@Test
+	public void unrestrictedSearch() throws Exception {
+		JsonNode config = parse("{\"elastic\":{\"index\":\"events\",\"partition\":{\"field\":\"start\",\"format\":\"yyyy\"}}}");
+		JsonNode query = parse("{\"bool\":{\"should\":[{\"range\":{\"start\":{\"gte\":0}}}]}}");
+
+		assertThat(partitions.select(config, "events", query, () -> Arrays.asList("events-p-2018"))).isNull();
+		assertThat(partitions.getSearchIndices(config, "events", null)).isEqualTo("events");
+	}
+
+}
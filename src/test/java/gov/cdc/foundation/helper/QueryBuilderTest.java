@@ -0,0 +1,64 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class QueryBuilderTest {
+
+	private JsonNode config;
+
+	@Before
+	public void setup() throws Exception {
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream("config/test.json")) {
+			config = JSONHelper.getInstance().getMapper().readTree(is);
+		}
+	}
+
+	@Test
+	public void filtersAndRemainingQuery() throws Exception {
+		JsonNode query = QueryBuilder.getInstance().parse(config, "val:foo start: 01-02-2018 bar");
+		long start = new SimpleDateFormat("MM-dd-yyyy").parse("01-02-2018").getTime();
+
+		JsonNode must = query.path("bool").path("must");
+		assertThat(must.size()).isEqualTo(2);
+		assertThat(must.get(0).path("multi_match").path("query").asText()).isEqualTo("foo");
+		assertThat(must.get(0).path("multi_match").path("fields").get(0).asText()).isEqualTo("value");
+		assertThat(must.get(1).path("range").path("start").path("gte").asLong()).isEqualTo(start);
+
+		JsonNode filter = query.path("bool").path("filter");
+		assertThat(filter.size()).isEqualTo(1);
+		assertThat(filter.get(0).path("multi_match").path("query").asText()).isEqualTo("bar");
+
+		// The configuration is left untouched
+		assertThat(config.path("filters").path("everything").has("value")).isFalse();
+	}
+
+	@Test
+	public void transformedValues() throws Exception {
+		JsonNode query = QueryBuilder.getInstance().parse(config, "foo OR bar");
+
+		JsonNode should = query.path("bool").path("should");
+		assertThat(should.size()).isEqualTo(1);
+		assertThat(should.get(0).path("multi_match").path("query").asText()).isEqualTo("foo bar");
+		assertThat(query.path("bool").has("filter")).isFalse();
+	}
+
+	@Test
+	public void emptyQuery() throws Exception {
+		assertThat(QueryBuilder.getInstance().parse(config, "")).isNull();
+		assertThat(QueryBuilder.getInstance().isEmpty(null)).isTrue();
+
+		// Without any clause the query would match every document, and a delete by query would delete them all
+		assertThat(QueryBuilder.getInstance().isEmpty(QueryBuilder.getInstance().parse(config, "   "))).isTrue();
+		assertThat(QueryBuilder.getInstance().isEmpty(QueryBuilder.getInstance().parse(config, "foo"))).isFalse();
+		assertThat(QueryBuilder.getInstance().isEmpty(QueryBuilder.getInstance().parse(config, "val:foo"))).isFalse();
+	}
+
+}
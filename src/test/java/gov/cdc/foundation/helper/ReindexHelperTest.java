@@ -0,0 +1,66 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class ReindexHelperTest {
+
+	private JsonNode parse(String json) throws Exception {
+		return JSONHelper.getInstance().getMapper().readTree(json);
+	}
+
+	@Test
+	public void mappingScript() throws Exception {
+		new HashHelper(true, "_hash", 0);
+		JsonNode config = parse("{\"mapping\":{\"$unset\":[\"other.useless\"],\"$set\":{\"a.b\":{\"fields\":[\"$.first\",\"$.other.useless\"],\"separator\":\" \"}}}}");
+
+		ObjectNode request = ReindexHelper.getInstance().request(config, "test", "test-v2", true);
+		assertThat(request.path("source").path("index").asText()).isEqualTo("test");
+		assertThat(request.path("dest").path("index").asText()).isEqualTo("test-v2");
+
+		JsonNode params = request.path("script").path("params");
+		assertThat(params.path("sets").get(0).path("path").toString()).isEqualTo("[\"a\",\"b\"]");
+		assertThat(params.path("sets").get(0).path("fields").toString()).isEqualTo("[[\"first\"],[\"other\",\"useless\"]]");
+		assertThat(params.path("sets").get(0).path("separator").asText()).isEqualTo(" ");
+		assertThat(params.path("unsets").toString()).isEqualTo("[[\"other\",\"useless\"]]");
+		assertThat(params.path("hash").asText()).isEqualTo("_hash");
+	}
+
+	@Test
+	public void withoutMapping() throws Exception {
+		JsonNode config = parse("{\"mapping\":{\"$set\":{\"a\":{\"fields\":[\"$.b\"]}}}}");
+
+		assertThat(ReindexHelper.getInstance().request(config, "test", "test-v2", false).has("script")).isFalse();
+		assertThat(ReindexHelper.getInstance().script(parse("{}"))).isNull();
+	}
+
+	@Test
+	public void untranslatableMapping() throws Exception {
+		assertThatThrownBy(() -> ReindexHelper.getInstance().script(parse("{\"mapping\":{\"$set\":{\"a\":{\"fields\":[\"$.b[*].c\"]}}}}")))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> ReindexHelper.getInstance().script(parse("{\"mapping\":{\"$set\":{\"a\":{\"fields\":[\"$.b\"],\"transform\":{}}}}}")))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void foreignDestination() throws Exception {
+		JsonNode config = parse("{}");
+
+		assertThatThrownBy(() -> ReindexHelper.getInstance().request(config, "test", "test", false))
+			.isInstanceOf(IllegalArgumentException.class).hasMessage(MessageHelper.ERROR_SAME_INDEX);
+		assertThatThrownBy(() -> ReindexHelper.getInstance().request(config, "test", "other", false))
+			.isInstanceOf(IllegalArgumentException.class).hasMessage(MessageHelper.ERROR_FOREIGN_INDEX);
+		assertThatThrownBy(() -> ReindexHelper.getInstance().request(config, "test", "testing", false))
+			.isInstanceOf(IllegalArgumentException.class).hasMessage(MessageHelper.ERROR_FOREIGN_INDEX);
+		assertThatThrownBy(() -> ReindexHelper.getInstance().request(config, "test", ".security", false))
+			.isInstanceOf(IllegalArgumentException.class).hasMessage(MessageHelper.ERROR_FOREIGN_INDEX);
+		assertThatThrownBy(() -> ReindexHelper.getInstance().request(config, "test", "test-p-2018.01", false))
+			.isInstanceOf(IllegalArgumentException.class).hasMessage(MessageHelper.ERROR_FOREIGN_INDEX);
+	}
+
+}
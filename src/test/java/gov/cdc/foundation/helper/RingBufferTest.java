@@ -0,0 +1,60 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+	@Test
+	public void boundedCapacity() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(3);
+		assertThat(buffer.capacity()).isEqualTo(4);
+
+		for (int i = 0; i < 4; i++)
+			assertThat(buffer.offer(i)).isTrue();
+		assertThat(buffer.offer(4)).isFalse();
+		assertThat(buffer.size()).isEqualTo(4);
+
+		assertThat(buffer.poll()).isEqualTo(0);
+		assertThat(buffer.offer(4)).isTrue();
+
+		List<Integer> items = new ArrayList<>();
+		assertThat(buffer.drainTo(items, 10)).isEqualTo(4);
+		assertThat(items).containsExactly(1, 2, 3, 4);
+		assertThat(buffer.poll()).isNull();
+		assertThat(buffer.isEmpty()).isTrue();
+	}
+
+	@Test
+	public void concurrentProducers() throws InterruptedException {
+		RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+		int producers = 4;
+		int itemsPerProducer = 10000;
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(producers);
+
+		for (int p = 0; p < producers; p++) {
+			new Thread(() -> {
+				for (int i = 0; i < itemsPerProducer; i++)
+					if (!buffer.offer(i))
+						rejected.incrementAndGet();
+				done.countDown();
+			}).start();
+		}
+
+		int consumed = 0;
+		while (done.getCount() > 0 || !buffer.isEmpty()) {
+			if (buffer.poll() != null)
+				consumed++;
+		}
+
+		assertThat(consumed + rejected.get()).isEqualTo(producers * itemsPerProducer);
+	}
+
+}
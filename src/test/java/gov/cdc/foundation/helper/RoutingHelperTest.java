@@ -0,0 +1,40 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class RoutingHelperTest {
+
+	private final RoutingHelper routing = RoutingHelper.getInstance();
+
+	private JsonNode parse(String json) throws Exception {
+		return JSONHelper.getInstance().getMapper().readTree(json);
+	}
+
+	private JsonNode config() throws Exception {
+		return parse("{\"routing\":{\"field\":\"$.tenant\"},\"filters\":{"
+			+ "\"tenant\":{\"regex\":\"tenant:(\\\\w+)\",\"regexGroup\":1,\"queryType\":\"term\",\"clause\":\"filter\",\"field\":\"tenant\"},"
+			+ "\"everything\":{\"regex\":null,\"queryType\":\"multi_match\",\"clause\":\"must\",\"fields\":[\"value\"]}}}");
+	}
+
+	@Test
+	public void documentRouting() throws Exception {
+		assertThat(routing.getRouting(config(), parse("{\"tenant\":\"cdc\"}"))).isEqualTo("cdc");
+		assertThat(routing.getRouting(config(), parse("{\"tenant\":12}"))).isEqualTo("12");
+		assertThat(routing.getRouting(config(), parse("{\"other\":\"cdc\"}"))).isNull();
+		assertThat(routing.getRouting(parse("{}"), parse("{\"tenant\":\"cdc\"}"))).isNull();
+	}
+
+	@Test
+	public void searchRouting() throws Exception {
+		JsonNode config = config();
+
+		assertThat(routing.getSearchRouting(config, QueryBuilder.getInstance().parse(config, "tenant:cdc foo"))).isEqualTo("cdc");
+		assertThat(routing.getSearchRouting(config, QueryBuilder.getInstance().parse(config, "tenant:cdc tenant:fda foo"))).isEqualTo("cdc,fda");
+		assertThat(routing.getSearchRouting(config, QueryBuilder.getInstance().parse(config, "foo"))).isNull();
+	}
+
+}
@@ -0,0 +1,104 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class SlowQueryHelperTest {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void thresholds() {
+		SlowQueryHelper helper = helper(1000, "search: 200, get:50", 1, 0);
+		assertThat(helper.getThreshold("search")).isEqualTo(200);
+		assertThat(helper.getThreshold("get")).isEqualTo(50);
+		assertThat(helper.getThreshold("scroll")).isEqualTo(1000);
+
+		assertThat(helper.isRecorded("search", 199)).isFalse();
+		assertThat(helper.isRecorded("search", 200)).isTrue();
+		assertThat(helper.isRecorded("scroll", 999)).isFalse();
+	}
+
+	@Test
+	public void malformedThresholds() {
+		// The invalid entries are skipped instead of failing the startup
+		SlowQueryHelper helper = helper(1000, "search:fast,get,:,scroll:1:2,aggregate:300,", 1, 0);
+		assertThat(helper.getThreshold("search")).isEqualTo(1000);
+		assertThat(helper.getThreshold("get")).isEqualTo(1000);
+		assertThat(helper.getThreshold("scroll")).isEqualTo(1000);
+		assertThat(helper.getThreshold("aggregate")).isEqualTo(300);
+	}
+
+	@Test
+	public void disabled() {
+		SlowQueryHelper helper = helper(0, "get:0", 1, 0);
+		assertThat(helper.isRecorded("search", Long.MAX_VALUE)).isFalse();
+		assertThat(helper.isRecorded("get", Long.MAX_VALUE)).isFalse();
+	}
+
+	@Test
+	public void sampling() {
+		double[] draw = { 0 };
+		SlowQueryHelper helper = new SlowQueryHelper(100, null, 0.25, 0, now::get, () -> draw[0]);
+		draw[0] = 0.1;
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		draw[0] = 0.25;
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+		draw[0] = 0.9;
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+	}
+
+	@Test
+	public void rateLimit() {
+		SlowQueryHelper helper = helper(100, null, 1, 2);
+		// The bucket starts full
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+
+		// Two tokens per second
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(499));
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+
+		// Never more than the limit at once
+		now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+
+		// The fast requests don't use tokens
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertThat(helper.isRecorded("search", 99)).isFalse();
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+	}
+
+	@Test
+	public void slowRateLimit() {
+		// One record every two seconds
+		SlowQueryHelper helper = helper(100, null, 1, 0.5);
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+		assertThat(helper.isRecorded("search", 100)).isTrue();
+		assertThat(helper.isRecorded("search", 100)).isFalse();
+	}
+
+	private SlowQueryHelper helper(long threshold, String thresholds, double sampleRate, double rateLimit) {
+		return new SlowQueryHelper(threshold, thresholds, sampleRate, rateLimit, now::get, () -> 0);
+	}
+
+}
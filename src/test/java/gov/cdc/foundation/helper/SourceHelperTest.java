@@ -0,0 +1,76 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class SourceHelperTest {
+
+	private final SourceHelper source = SourceHelper.getInstance();
+
+	private JsonNode parse(String json) throws Exception {
+		return JSONHelper.getInstance().getMapper().readTree(json);
+	}
+
+	private JsonNode config() throws Exception {
+		return parse("{\"source\":{\"includes\":[\"name\",\"status\"],\"excludes\":[\"raw.*\"],\"docvalueFields\":[\"start\"],"
+			+ "\"filterPath\":[\"hits.total\",\"hits.hits._source\"]}}");
+	}
+
+	@Before
+	@After
+	public void disableHashes() {
+		new HashHelper(false, "_hash", 0);
+	}
+
+	@Test
+	public void searchBody() throws Exception {
+		ObjectNode body = source.getSearchBody(config(), null, null);
+		assertThat(body.toString()).isEqualTo("{\"_source\":{\"includes\":[\"name\",\"status\"],\"excludes\":[\"raw.*\"]},\"docvalue_fields\":[\"start\"]}");
+
+		// The requested fields replace the includes, and the configuration still wins
+		body = source.getSearchBody(config(), "id, name", parse("{\"_source\":false}"));
+		assertThat(body.get("_source").asBoolean(true)).isFalse();
+		assertThat(source.getSearchBody(config(), "id, name", null).path("_source").path("includes").toString()).isEqualTo("[\"id\",\"name\"]");
+
+		assertThat(source.getSearchBody(parse("{}"), null, null)).isNull();
+	}
+
+	@Test
+	public void params() throws Exception {
+		assertThat(source.getSearchParams(config()).get("filter_path")).isEqualTo("took,_scroll_id,error,hits.hits._id,hits.total,hits.hits._source,hits.hits.fields");
+		assertThat(source.getSearchParams(parse("{}"))).isEmpty();
+
+		Map<String, String> params = source.getGetParams(config(), "name");
+		assertThat(params.get("_source_include")).isEqualTo("name");
+		assertThat(params.get("_source_exclude")).isEqualTo("raw.*");
+		assertThat(params.get("filter_path")).isEqualTo("_source,_id,found,error");
+		assertThat(source.getGetParams(parse("{}"), null)).isEmpty();
+	}
+
+	@Test
+	public void hiddenHash() throws Exception {
+		new HashHelper(true, "_hash", 0);
+
+		assertThat(source.getSearchBody(config(), null, null).path("_source").path("excludes").toString()).isEqualTo("[\"raw.*\",\"_hash\"]");
+		assertThat(source.getSearchBody(parse("{}"), null, null).toString()).isEqualTo("{\"_source\":{\"excludes\":[\"_hash\"]}}");
+		assertThat(source.getSearchBody(parse("{}"), null, parse("{\"_source\":false}")).toString()).isEqualTo("{\"_source\":false}");
+		assertThat(source.getSearchBody(parse("{}"), null, parse("{\"_source\":[\"name\"]}")).toString()).isEqualTo("{\"_source\":{\"includes\":[\"name\"],\"excludes\":[\"_hash\"]}}");
+
+		// The appended options of the configuration are left untouched
+		JsonNode append = parse("{\"_source\":{\"excludes\":\"raw.*\"}}");
+		assertThat(source.getSearchBody(parse("{}"), null, append).toString()).isEqualTo("{\"_source\":{\"excludes\":[\"raw.*\",\"_hash\"]}}");
+		assertThat(append.toString()).isEqualTo("{\"_source\":{\"excludes\":\"raw.*\"}}");
+
+		assertThat(source.getGetParams(config(), null).get("_source_exclude")).isEqualTo("raw.*,_hash");
+		assertThat(source.getGetParams(parse("{}"), null).get("_source_exclude")).isEqualTo("_hash");
+	}
+
+}
@@ -0,0 +1,54 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.helper.common.ServiceException;
+
+public class TaskHelperTest {
+
+	private TaskHelper tasks = TaskHelper.getInstance();
+
+	@Test
+	public void ownTasks() throws Exception {
+		assertThat(tasks.belongsTo(task("delete-by-query [events]"), "events")).isTrue();
+		assertThat(tasks.belongsTo(task("delete-by-query [events-p-2018.03, events-p-2018.04]"), "events")).isTrue();
+		assertThat(tasks.belongsTo(task("reindex from [events] to [events-v2]"), "events")).isTrue();
+	}
+
+	@Test
+	public void otherTasks() throws Exception {
+		assertThat(tasks.belongsTo(task("delete-by-query [other]"), "events")).isFalse();
+		assertThat(tasks.belongsTo(task("delete-by-query [events-archive]"), "events")).isFalse();
+		// Reindexed into the index, from another one
+		assertThat(tasks.belongsTo(task("reindex from [other] to [events]"), "events")).isFalse();
+		assertThat(tasks.belongsTo(task(null), "events")).isFalse();
+	}
+
+	@Test
+	public void notFound() {
+		assertThat(tasks.isNotFound(error("resource_not_found_exception"))).isTrue();
+		assertThat(tasks.isNotFound(error("illegal_argument_exception"))).isTrue();
+		assertThat(tasks.isNotFound(error("search_phase_execution_exception"))).isFalse();
+		assertThat(tasks.isNotFound(new ServiceException(new IOException("Connection refused")))).isFalse();
+	}
+
+	private static JsonNode task(String description) throws Exception {
+		JsonNode task = JSONHelper.getInstance().getMapper().readTree("{\"completed\":false,\"task\":{\"action\":\"indices:data/write/delete/byquery\"}}");
+		if (description != null)
+			((ObjectNode) task.get("task")).put("description", description);
+		return task;
+	}
+
+	private static ServiceException error(String type) {
+		return new ServiceException(new JSONObject().put("error", new JSONObject().put("type", type).put("reason", "task [x] isn't running")).put("status", 404));
+	}
+
+}
@@ -0,0 +1,90 @@
+package gov.cdc.foundation.load;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated by the threads of the service. The threads are sampled periodically, so the allocations
+ * of the short-lived ones (like the asynchronous index/all) are counted up to their last sample.
+ */
+class AllocationSampler implements Closeable {
+
+	private static final long INTERVAL = 10;
+
+	private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private final Predicate<String> counted;
+	private final Map<Long, Boolean> names = new HashMap<>();
+	private final Map<Long, Long> baseline = new HashMap<>();
+	private final Map<Long, Long> latest = new HashMap<>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "load-sampler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Counts the threads whose name matches.
+	 */
+	AllocationSampler(Predicate<String> counted) {
+		this.counted = counted;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		scheduler.scheduleAtFixedRate(this::sample, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts a new measure from the current allocations.
+	 */
+	synchronized void reset() {
+		sample();
+		baseline.clear();
+		baseline.putAll(latest);
+	}
+
+	/**
+	 * Returns the bytes allocated since the last reset.
+	 */
+	synchronized long allocated() {
+		sample();
+		long total = 0;
+		for (Map.Entry<Long, Long> entry : latest.entrySet())
+			total += entry.getValue() - baseline.getOrDefault(entry.getKey(), 0L);
+		return total;
+	}
+
+	private synchronized void sample() {
+		long[] ids = threads.getAllThreadIds();
+		long[] bytes = threads.getThreadAllocatedBytes(ids);
+		for (int i = 0; i < ids.length; i++) {
+			if (bytes[i] < 0 || !isCounted(ids[i]))
+				continue;
+			latest.put(ids[i], bytes[i]);
+		}
+	}
+
+	private boolean isCounted(long id) {
+		Boolean known = names.get(id);
+		if (known == null) {
+			ThreadInfo info = threads.getThreadInfo(id);
+			if (info == null)
+				return false;
+			known = counted.test(info.getThreadName());
+			names.put(id, known);
+		}
+		return known;
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+}
@@ -0,0 +1,185 @@
+package gov.cdc.foundation.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Sends requests at a fixed rate, whatever the response times (open model). The latency of a request is measured from
+ * the time it was scheduled, so the time spent waiting for a free worker when the service falls behind is counted.
+ */
+public class LoadGenerator implements Closeable {
+
+	private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+	private final CloseableHttpClient client;
+	private final ThreadPoolExecutor workers;
+
+	public LoadGenerator(int threads) {
+		client = HttpClients.custom().setMaxConnTotal(threads).setMaxConnPerRoute(threads).disableAutomaticRetries().build();
+		AtomicInteger count = new AtomicInteger();
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "load-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Sends the requests for the duration at the rate (per second), and waits for the last responses.
+	 */
+	public Result run(String name, Supplier<HttpUriRequest> requests, double rate, long duration, TimeUnit unit) throws InterruptedException {
+		Result result = new Result(name, rate);
+		AtomicInteger pending = new AtomicInteger();
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+		long start = System.nanoTime();
+		long end = start + unit.toNanos(duration);
+
+		for (long scheduled = start; scheduled < end; scheduled += interval) {
+			long wait = scheduled - System.nanoTime();
+			if (wait > 0)
+				LockSupport.parkNanos(wait);
+			long intended = scheduled;
+			HttpUriRequest request = requests.get();
+			pending.incrementAndGet();
+			workers.execute(() -> {
+				try {
+					int status = execute(request);
+					result.record(status, System.nanoTime() - intended);
+				} finally {
+					pending.decrementAndGet();
+				}
+			});
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+		while (pending.get() > 0 && System.nanoTime() < deadline)
+			Thread.sleep(10);
+		result.elapsed = System.nanoTime() - start;
+		return result;
+	}
+
+	private int execute(HttpUriRequest request) {
+		try (CloseableHttpResponse response = client.execute(request)) {
+			EntityUtils.consume(response.getEntity());
+			return response.getStatusLine().getStatusCode();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		workers.shutdownNow();
+		client.close();
+	}
+
+	public static class Result {
+
+		private final String name;
+		private final double rate;
+		private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY, 3);
+		private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+		private long elapsed;
+		private long allocated;
+		private long writes;
+
+		Result(String name, double rate) {
+			this.name = name;
+			this.rate = rate;
+		}
+
+		void record(int status, long latency) {
+			latencies.recordValue(Math.min(MAX_LATENCY, TimeUnit.NANOSECONDS.toMicros(latency)));
+			statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public double getRate() {
+			return rate;
+		}
+
+		public long getRequests() {
+			return latencies.getTotalCount();
+		}
+
+		public long getErrors() {
+			return statuses.entrySet().stream().filter(entry -> entry.getKey() < 200 || entry.getKey() >= 400).mapToLong(entry -> entry.getValue().sum()).sum();
+		}
+
+		/**
+		 * Returns the number of responses per status, -1 for the connection errors.
+		 */
+		public Map<Integer, Long> getStatuses() {
+			Map<Integer, Long> counts = new TreeMap<>();
+			statuses.forEach((status, count) -> counts.put(status, count.sum()));
+			return counts;
+		}
+
+		/**
+		 * Returns the duration of the run, in nanoseconds.
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		public double getThroughput() {
+			return getRequests() / (elapsed / 1e9);
+		}
+
+		/**
+		 * Returns the latency at the percentile, in milliseconds.
+		 */
+		public double getLatency(double percentile) {
+			return latencies.getValueAtPercentile(percentile) / 1000.0;
+		}
+
+		public double getMaxLatency() {
+			return latencies.getMaxValue() / 1000.0;
+		}
+
+		/**
+		 * Returns the bytes allocated by the service threads per request, beyond their background allocations.
+		 */
+		public long getAllocationPerRequest() {
+			return getRequests() > 0 ? allocated / getRequests() : 0;
+		}
+
+		void setAllocated(long allocated) {
+			this.allocated = allocated;
+		}
+
+		/**
+		 * Returns the documents written to Elasticsearch per second.
+		 */
+		public double getWriteThroughput() {
+			return writes / (elapsed / 1e9);
+		}
+
+		void setWrites(long writes) {
+			this.writes = writes;
+		}
+
+	}
+
+}
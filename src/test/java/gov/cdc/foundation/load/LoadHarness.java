@@ -0,0 +1,290 @@
+package gov.cdc.foundation.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.IndexingApplication;
+import gov.cdc.foundation.stub.ElasticStub;
+import gov.cdc.foundation.stub.ObjectServiceStub;
+
+/**
+ * Load test of the service against local stubs of Elasticsearch and the Object Microservice. Each scenario is sent at
+ * its target rate after a warm-up, and reported with its throughput, latency percentiles and allocation per request.
+ * The settings are system properties (see the README); the exit code is 1 when a threshold isn't met.
+ */
+public class LoadHarness {
+
+	private static final String CONFIG = "load";
+	private static final String DATABASE = "test";
+	private static final String COLLECTION = "simple";
+	private static final long IDLE = 2;
+	// Scenarios expected to write documents
+	private static final List<String> WRITES = Arrays.asList("bulk", "all");
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final List<String> scenarios = property("load.scenarios", "search,get,bulk,all");
+	private final double rate = Double.parseDouble(System.getProperty("load.rate", "100"));
+	private final long duration = Long.getLong("load.duration", 30);
+	private final long warmup = Long.getLong("load.warmup", 10);
+	private final int threads = Integer.getInteger("load.threads", 32);
+	private final long latency = Long.getLong("load.latency", 2);
+	private final int payload = Integer.getInteger("load.payload", 1024);
+	private final int hits = Integer.getInteger("load.hits", 10);
+	private final int objects = Integer.getInteger("load.objects", 1000);
+	private final int bulkSize = Integer.getInteger("load.bulk-size", 100);
+	private final double maxP99 = Double.parseDouble(System.getProperty("load.max-p99", "0"));
+	private final double minThroughput = Double.parseDouble(System.getProperty("load.min-throughput-ratio", "0"));
+	private final double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "1"));
+	private final String report = System.getProperty("load.report", "target/load-report.json");
+
+	public static void main(String[] args) throws Exception {
+		System.exit(new LoadHarness().run() ? 0 : 1);
+	}
+
+	private boolean run() throws Exception {
+		List<LoadGenerator.Result> results = new ArrayList<>();
+		try (ElasticStub elastic = new ElasticStub(); ObjectServiceStub objectService = new ObjectServiceStub(); ServerSocket fluentd = discard()) {
+			elastic.setLatency(latency, TimeUnit.MILLISECONDS);
+			elastic.setPayloadSize(payload);
+			elastic.setHits(hits);
+			objectService.setLatency(latency, TimeUnit.MILLISECONDS);
+			objectService.put("settings", "indexing", CONFIG, mapper.readTree(getClass().getClassLoader().getResource("config/simple.json")));
+			for (int i = 0; i < objects; i++)
+				objectService.put(DATABASE, COLLECTION, id(i), object(elastic, i));
+
+			ConfigurableApplicationContext context = start(elastic, objectService, fluentd.getLocalPort());
+			String url = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port") + "/api/1.0/";
+			try (LoadGenerator generator = new LoadGenerator(threads); AllocationSampler sampler = new AllocationSampler(LoadHarness::isServiceThread)) {
+				for (String scenario : scenarios) {
+					Supplier<HttpUriRequest> requests = requests(scenario, url);
+					double scenarioRate = Double.parseDouble(System.getProperty("load.rate." + scenario, String.valueOf("all".equals(scenario) ? Math.max(1, rate / 50) : rate)));
+					generator.run(scenario, requests, scenarioRate, warmup, TimeUnit.SECONDS);
+					awaitWrites(elastic);
+
+					// Background allocations of the service (metrics, connection monitors...), not counted per request
+					sampler.reset();
+					Thread.sleep(TimeUnit.SECONDS.toMillis(IDLE));
+					double idle = (double) sampler.allocated() / TimeUnit.SECONDS.toNanos(IDLE);
+
+					sampler.reset();
+					long writes = elastic.getWrites();
+					LoadGenerator.Result result = generator.run(scenario, requests, scenarioRate, duration, TimeUnit.SECONDS);
+					awaitWrites(elastic);
+					result.setAllocated(Math.max(0, sampler.allocated() - (long) (idle * result.getElapsed())));
+					result.setWrites(elastic.getWrites() - writes);
+					results.add(result);
+					System.out.println(String.format("%s done: %d requests, statuses %s", scenario, result.getRequests(), result.getStatuses()));
+				}
+			} finally {
+				context.close();
+			}
+		}
+		print(results);
+		write(results);
+		return check(results);
+	}
+
+	private ConfigurableApplicationContext start(ElasticStub elastic, ObjectServiceStub objectService, int fluentdPort) {
+		System.setProperty("OBJECT_URL", objectService.getUrl());
+		return new SpringApplicationBuilder(IndexingApplication.class)
+			.initializers(applicationContext -> TestPropertyValues.of(
+				"server.port=0",
+				"logging.fluentd.host=127.0.0.1",
+				"logging.fluentd.port=" + fluentdPort,
+				"elastic.host=127.0.0.1",
+				"elastic.port=" + elastic.getPort(),
+				"elastic.protocol=http",
+				// The warm-up indexes every object, the measured runs would skip them all as unchanged
+				"indexing.hash.enabled=false",
+				"proxy.hostname=",
+				"security.oauth2.resource.user-info-uri=",
+				"security.oauth2.protected=",
+				"security.oauth2.client.client-id=",
+				"security.oauth2.client.client-secret=",
+				"ssl.verifying.disable=false").applyTo(applicationContext))
+			.run();
+	}
+
+	/**
+	 * Accepts the Fluentd connections and discards the logs, so the service logs as it would in production.
+	 */
+	private ServerSocket discard() throws IOException {
+		ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread thread = new Thread(() -> {
+			while (!server.isClosed())
+				try {
+					Socket socket = server.accept();
+					Thread reader = new Thread(() -> {
+						byte[] buffer = new byte[8192];
+						try (InputStream input = socket.getInputStream()) {
+							while (input.read(buffer) != -1)
+								continue;
+						} catch (IOException e) {
+							// Closed
+						}
+					}, "load-fluentd-reader");
+					reader.setDaemon(true);
+					reader.start();
+				} catch (IOException e) {
+					// Closed
+				}
+		}, "load-fluentd");
+		thread.setDaemon(true);
+		thread.start();
+		return server;
+	}
+
+	private Supplier<HttpUriRequest> requests(String scenario, String url) {
+		switch (scenario) {
+		case "search":
+			return () -> new HttpPost(url + "search/" + CONFIG + "?size=" + hits + "&query=" + random("foo", "bar", "load"));
+		case "get":
+			return () -> new HttpGet(url + "get/" + CONFIG + "/" + id(ThreadLocalRandom.current().nextInt(objects)));
+		case "bulk":
+			return () -> {
+				ArrayNode ids = mapper.createArrayNode();
+				int first = ThreadLocalRandom.current().nextInt(objects);
+				for (int i = 0; i < bulkSize; i++)
+					ids.add(id((first + i) % objects));
+				HttpPost post = new HttpPost(url + "index/bulk/" + CONFIG);
+				post.setEntity(new StringEntity(ids.toString(), ContentType.APPLICATION_JSON));
+				return post;
+			};
+		case "all":
+			return () -> new HttpPut(url + "index/all/" + CONFIG);
+		default:
+			throw new IllegalArgumentException("Unknown scenario: " + scenario);
+		}
+	}
+
+	private ObjectNode object(ElasticStub elastic, int i) {
+		ObjectNode object = elastic.document(id(i));
+		object.put("foo", random("foo", "bar", "load"));
+		object.put("bar", String.valueOf(i));
+		return object;
+	}
+
+	/**
+	 * Waits until the asynchronous writes (index/all) are over.
+	 */
+	private void awaitWrites(ElasticStub elastic) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+		long writes = -1;
+		while (writes != elastic.getWrites() && System.currentTimeMillis() < deadline) {
+			writes = elastic.getWrites();
+			Thread.sleep(500);
+		}
+	}
+
+	private void print(List<LoadGenerator.Result> results) {
+		System.out.println();
+		System.out.println(String.format("%-8s %9s %9s %8s %8s %8s %8s %8s %7s %10s %9s", "scenario", "target/s", "actual/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "alloc/req", "writes/s"));
+		for (LoadGenerator.Result result : results)
+			System.out.println(String.format("%-8s %9.1f %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f %7d %9dK %9.1f",
+				result.getName(), result.getRate(), result.getThroughput(), result.getLatency(50), result.getLatency(90),
+				result.getLatency(99), result.getLatency(99.9), result.getMaxLatency(), result.getErrors(),
+				result.getAllocationPerRequest() / 1024, result.getWriteThroughput()));
+		System.out.println();
+	}
+
+	private void write(List<LoadGenerator.Result> results) throws Exception {
+		ObjectNode root = mapper.createObjectNode();
+		ObjectNode settings = root.putObject("settings");
+		settings.put("duration", duration);
+		settings.put("threads", threads);
+		settings.put("latency", latency);
+		settings.put("payload", payload);
+		settings.put("hits", hits);
+		settings.put("objects", objects);
+		settings.put("bulkSize", bulkSize);
+		ArrayNode array = root.putArray("results");
+		for (LoadGenerator.Result result : results) {
+			ObjectNode node = array.addObject();
+			node.put("scenario", result.getName());
+			node.put("rate", result.getRate());
+			node.put("throughput", result.getThroughput());
+			node.put("requests", result.getRequests());
+			node.put("errors", result.getErrors());
+			node.set("statuses", mapper.valueToTree(result.getStatuses()));
+			ObjectNode latencies = node.putObject("latency");
+			latencies.put("p50", result.getLatency(50));
+			latencies.put("p90", result.getLatency(90));
+			latencies.put("p99", result.getLatency(99));
+			latencies.put("p99.9", result.getLatency(99.9));
+			latencies.put("max", result.getMaxLatency());
+			node.put("allocationPerRequest", result.getAllocationPerRequest());
+			node.put("writeThroughput", result.getWriteThroughput());
+		}
+		File file = new File(report);
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		mapper.writerWithDefaultPrettyPrinter().writeValue(file, root);
+		System.out.println("Report written to " + file.getPath());
+	}
+
+	private boolean check(List<LoadGenerator.Result> results) {
+		boolean passed = true;
+		for (LoadGenerator.Result result : results) {
+			List<String> failures = new ArrayList<>();
+			if (maxP99 > 0 && result.getLatency(99) > maxP99)
+				failures.add(String.format("p99 %.2f ms > %.2f ms", result.getLatency(99), maxP99));
+			if (minThroughput > 0 && result.getThroughput() < result.getRate() * minThroughput)
+				failures.add(String.format("throughput %.1f/s < %.0f%% of %.1f/s", result.getThroughput(), minThroughput * 100, result.getRate()));
+			if (result.getRequests() > 0 && (double) result.getErrors() / result.getRequests() > maxErrorRate)
+				failures.add(String.format("%d errors out of %d requests", result.getErrors(), result.getRequests()));
+			if (WRITES.contains(result.getName()) && result.getWriteThroughput() == 0)
+				failures.add("no document written");
+			if (!failures.isEmpty()) {
+				System.out.println(String.format("FAILED %s: %s", result.getName(), String.join(", ", failures)));
+				passed = false;
+			}
+		}
+		return passed;
+	}
+
+	private static boolean isServiceThread(String name) {
+		return !name.startsWith("load-") && !name.endsWith("Stub") && !name.startsWith("HTTP-Dispatcher") && !"main".equals(name);
+	}
+
+	private static String id(int i) {
+		return String.format("%024x", i);
+	}
+
+	private static String random(String... values) {
+		return values[ThreadLocalRandom.current().nextInt(values.length)];
+	}
+
+	private static List<String> property(String name, String defaultValue) {
+		List<String> values = new ArrayList<>();
+		for (String value : System.getProperty(name, defaultValue).split(","))
+			if (!value.trim().isEmpty())
+				values.add(value.trim());
+		return values;
+	}
+
+}
@@ -0,0 +1,130 @@
+package gov.cdc.foundation.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CircuitBreakerTest {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	public void openAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 3, 1000, 1, clock::get);
+		breaker.onFailure();
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+		breaker.onFailure();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+		breaker.onFailure();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(breaker.getTrips()).isEqualTo(1);
+		assertThat(breaker.tryAcquire()).isFalse();
+		assertThat(breaker.getRetryAfter()).isEqualTo(1000);
+	}
+
+	@Test
+	public void halfOpenProbe() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1000, 1, clock::get);
+		breaker.onFailure();
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+		// Only one probe at a time
+		assertThat(breaker.tryAcquire()).isTrue();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+		assertThat(breaker.tryAcquire()).isFalse();
+
+		// A failed probe opens the breaker again
+		breaker.onFailure();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(breaker.getTrips()).isEqualTo(2);
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+		assertThat(breaker.tryAcquire()).isTrue();
+		breaker.onSuccess();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(breaker.tryAcquire()).isTrue();
+	}
+
+	@Test
+	public void releaseProbe() {
+		CircuitBreaker probed = new CircuitBreaker("test", 1, 1000, 1, clock::get);
+		probed.onFailure();
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+		assertThat(probed.tryAcquire()).isTrue();
+
+		// A call ending with an error gives its probe back
+		probed.release();
+		assertThat(probed.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+		assertThat(probed.tryAcquire()).isTrue();
+
+		// A probe that never reports back is given up after the open duration
+		assertThat(probed.tryAcquire()).isFalse();
+		assertThat(probed.getRetryAfter()).isEqualTo(1000);
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+		assertThat(probed.tryAcquire()).isTrue();
+	}
+
+	@Test
+	public void disabled() {
+		CircuitBreaker breaker = new CircuitBreaker("test", 0, 1000, 1, clock::get);
+		for (int i = 0; i < 10; i++)
+			breaker.onFailure();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	public void retryBackoff() {
+		RetryPolicy policy = new RetryPolicy(5, 10, 50);
+		for (int i = 0; i < 100; i++) {
+			assertThat(policy.delay(1)).isBetween(0L, 10L);
+			assertThat(policy.delay(2)).isBetween(0L, 20L);
+			assertThat(policy.delay(10)).isBetween(0L, 50L);
+		}
+	}
+
+	@Test
+	public void retryTransientFailures() throws IOException {
+		Resilience resilience = new Resilience(new SimpleMeterRegistry(), 5, 1000, 1, 3, 0, 0);
+		AtomicInteger calls = new AtomicInteger();
+		String result = resilience.call(Resilience.ELASTIC_READ, true, e -> true, e -> true, () -> {
+			if (calls.incrementAndGet() < 3)
+				throw new IOException("rejected");
+			return "ok";
+		});
+		assertThat(result).isEqualTo("ok");
+		assertThat(calls.get()).isEqualTo(3);
+
+		// Non idempotent calls aren't retried
+		calls.set(0);
+		assertThatThrownBy(() -> resilience.call(Resilience.ELASTIC_WRITE, false, e -> true, e -> true, () -> {
+			calls.incrementAndGet();
+			throw new IOException("rejected");
+		})).isInstanceOf(IOException.class);
+		assertThat(calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void rejectWhenOpen() {
+		Resilience resilience = new Resilience(new SimpleMeterRegistry(), 2, 1000, 1, 1, 0, 0);
+		for (int i = 0; i < 2; i++) {
+			assertThatThrownBy(() -> resilience.call(Resilience.OBJECT, true, e -> true, e -> false, () -> {
+				throw new IOException("down");
+			})).isInstanceOf(IOException.class);
+		}
+		assertThatThrownBy(() -> resilience.call(Resilience.OBJECT, true, e -> true, e -> false, () -> "ok"))
+			.isInstanceOf(CircuitBreakerOpenException.class);
+		assertThat(resilience.getBreaker(Resilience.ELASTIC_READ).getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+}
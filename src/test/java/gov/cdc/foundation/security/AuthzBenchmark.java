@@ -0,0 +1,72 @@
+package gov.cdc.foundation.security;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+
+/**
+ * Compares the `@PreAuthorize` expressions chaining `hasScope` calls with the `Authz.can` method, called
+ * from an expression as in the controller and directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthzBenchmark {
+
+	private Authz authz;
+	private OAuth2Authentication authentication;
+	private Expression legacy;
+	private Expression can;
+
+	@Setup
+	public void setup() {
+		authz = new Authz("/api/1.0/**");
+		authentication = AuthzTest.authentication(new HashSet<>(Arrays.asList(
+			"fdns.indexing",
+			"fdns.indexing.config1.read",
+			"fdns.indexing.config2.*",
+			"fdns.indexing.config3.create",
+			"fdns.indexing.config4.update",
+			"fdns.indexing.myconfig.read",
+			"fdns.object.myconfig.read"
+		)));
+		// Thread scoped state: set up by the thread running the benchmark
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+		legacy = LegacyExpressions.parse(true, "read");
+		can = new SpelExpressionParser().parseExpression("@authz.can(#configName, 'read')");
+	}
+
+	@Benchmark
+	public boolean legacyExpression() {
+		return LegacyExpressions.evaluate(legacy, authz, authentication, "myconfig");
+	}
+
+	@Benchmark
+	public boolean authzExpression() {
+		return LegacyExpressions.evaluate(can, authz, authentication, "myconfig");
+	}
+
+	@Benchmark
+	public boolean authzDirect() {
+		return authz.can("myconfig", "read");
+	}
+
+}
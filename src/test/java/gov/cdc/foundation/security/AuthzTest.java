@@ -0,0 +1,88 @@
+package gov.cdc.foundation.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.expression.Expression;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+
+public class AuthzTest {
+
+	private static final List<String> SCOPES = Arrays.asList(
+		"fdns.indexing",
+		"fdns.indexing.myconfig.read",
+		"fdns.indexing.myconfig.*",
+		"fdns.indexing.other.create",
+		"fdns.indexing.*.read",
+		"fdns.indexing.*.delete",
+		"fdns.indexing.*.*",
+		"fdns.indexing.public-config.delete",
+		"fdns.indexing.my.config.update",
+		"fdns.object.myconfig.read"
+	);
+	private static final List<String> CONFIGS = Arrays.asList("myconfig", "other", "public-config", "my.config", "config", "*");
+	private static final String[][] PERMISSIONS = {
+		{ "create" }, { "read" }, { "delete" }, { "create", "update" }
+	};
+
+	@Test
+	public void unsecured() {
+		Authz authz = new Authz("");
+		assertThat(authz.hasPermission(null, "myconfig", "delete")).isTrue();
+	}
+
+	@Test
+	public void publicConfigurations() {
+		Authz authz = new Authz("/api/1.0/**");
+		assertThat(authz.hasPermission(null, "public-config", "read")).isTrue();
+		assertThat(authz.hasPermission(null, "public-config", "create", "update")).isTrue();
+		assertThat(authz.hasPermission(null, "public-config", "delete")).isFalse();
+		assertThat(authz.hasPermission(new UsernamePasswordAuthenticationToken("user", "password"), "myconfig", "read")).isFalse();
+	}
+
+	@Test
+	public void sameDecisionsAsTheExpressions() {
+		// Every combination of up to 2 scopes, and then every scope but one
+		List<Set<String>> scopeSets = new ArrayList<>();
+		scopeSets.add(new HashSet<>());
+		for (int i = 0; i < SCOPES.size(); i++) {
+			for (int j = i; j < SCOPES.size(); j++)
+				scopeSets.add(new HashSet<>(Arrays.asList(SCOPES.get(i), SCOPES.get(j))));
+			Set<String> allButOne = new HashSet<>(SCOPES);
+			allButOne.remove(SCOPES.get(i));
+			scopeSets.add(allButOne);
+		}
+
+		for (String protectedURIs : Arrays.asList("", "/api/1.0/**")) {
+			Authz authz = new Authz(protectedURIs);
+			for (String[] permissions : PERMISSIONS) {
+				boolean publicRule = !Arrays.asList(permissions).contains("delete");
+				Expression expression = LegacyExpressions.parse(publicRule, permissions);
+				for (Set<String> scopes : scopeSets) {
+					Authentication authentication = authentication(scopes);
+					for (String config : CONFIGS) {
+						boolean expected = LegacyExpressions.evaluate(expression, authz, authentication, config);
+						assertThat(authz.hasPermission(authentication, config, permissions))
+							.as("%s %s on %s with %s", protectedURIs, Arrays.toString(permissions), config, scopes)
+							.isEqualTo(expected);
+					}
+				}
+			}
+		}
+	}
+
+	static OAuth2Authentication authentication(Set<String> scopes) {
+		OAuth2Request request = new OAuth2Request(null, "client", null, true, scopes, null, null, null, null);
+		return new OAuth2Authentication(request, null);
+	}
+
+}
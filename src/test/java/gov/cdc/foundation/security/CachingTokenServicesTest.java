@@ -0,0 +1,178 @@
+package gov.cdc.foundation.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+public class CachingTokenServicesTest {
+
+	private final AtomicLong clock = new AtomicLong(1_000_000);
+
+	@Test
+	public void cacheValidTokens() {
+		StubTokenServices stub = new StubTokenServices(-1);
+		CachingTokenServices services = new CachingTokenServices(stub, 10, 1000, 100, clock::get);
+
+		OAuth2Authentication first = services.loadAuthentication("token");
+		OAuth2Authentication second = services.loadAuthentication("token");
+		assertThat(stub.calls.get()).isEqualTo(1);
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getOAuth2Request().getScope()).containsExactly("fdns.indexing.*.*");
+
+		clock.addAndGet(1000);
+		services.loadAuthentication("token");
+		assertThat(stub.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void expireWithToken() {
+		// The token expires in 10 seconds, before the TTL
+		StubTokenServices stub = new StubTokenServices(clock.get() / 1000 + 10);
+		CachingTokenServices services = new CachingTokenServices(stub, 10, 60000, 100, clock::get);
+
+		services.loadAuthentication("token");
+		clock.addAndGet(9000);
+		services.loadAuthentication("token");
+		assertThat(stub.calls.get()).isEqualTo(1);
+
+		clock.addAndGet(1000);
+		services.loadAuthentication("token");
+		assertThat(stub.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void cacheInvalidTokens() {
+		StubTokenServices stub = new StubTokenServices(-1);
+		CachingTokenServices services = new CachingTokenServices(stub, 10, 1000, 100, clock::get);
+
+		for (int i = 0; i < 3; i++)
+			assertThatThrownBy(() -> services.loadAuthentication("invalid")).isInstanceOf(InvalidTokenException.class);
+		assertThat(stub.calls.get()).isEqualTo(1);
+
+		clock.addAndGet(100);
+		assertThatThrownBy(() -> services.loadAuthentication("invalid")).isInstanceOf(InvalidTokenException.class);
+		assertThat(stub.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void boundedSize() {
+		StubTokenServices stub = new StubTokenServices(-1);
+		CachingTokenServices services = new CachingTokenServices(stub, 10, 1000, 100, clock::get);
+		for (int i = 0; i < 50; i++)
+			services.loadAuthentication("token" + i);
+		assertThat(services.size()).isEqualTo(10);
+
+		// The least recently used tokens are evicted
+		services.loadAuthentication("token40");
+		services.loadAuthentication("token50");
+		services.loadAuthentication("token40");
+		assertThat(stub.calls.get()).isEqualTo(51);
+		services.loadAuthentication("token41");
+		assertThat(stub.calls.get()).isEqualTo(52);
+	}
+
+	@Test
+	public void coalesceConcurrentMisses() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		StubTokenServices stub = new StubTokenServices(-1) {
+			@Override
+			public OAuth2Authentication loadAuthentication(String accessToken) {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.loadAuthentication(accessToken);
+			}
+		};
+		CachingTokenServices services = new CachingTokenServices(stub, 10, 1000, 100, clock::get);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<OAuth2Authentication>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				futures.add(executor.submit(() -> services.loadAuthentication("token")));
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<OAuth2Authentication> future : futures)
+				assertThat(future.get(5, TimeUnit.SECONDS).isAuthenticated()).isTrue();
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(stub.calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void retryAfterError() throws Exception {
+		StubTokenServices stub = new StubTokenServices(-1) {
+			@Override
+			public OAuth2Authentication loadAuthentication(String accessToken) {
+				if (calls.get() == 0) {
+					calls.incrementAndGet();
+					throw new NoClassDefFoundError("broken");
+				}
+				return super.loadAuthentication(accessToken);
+			}
+		};
+		CachingTokenServices services = new CachingTokenServices(stub, 10, 1000, 100, clock::get);
+
+		assertThatThrownBy(() -> services.loadAuthentication("token")).isInstanceOf(NoClassDefFoundError.class);
+		// The failed entry isn't kept, so the next request doesn't wait on it
+		assertThat(services.size()).isEqualTo(0);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertThat(executor.submit(() -> services.loadAuthentication("token")).get(5, TimeUnit.SECONDS).isAuthenticated()).isTrue();
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(stub.calls.get()).isEqualTo(2);
+	}
+
+	private static class StubTokenServices implements ResourceServerTokenServices {
+
+		final AtomicInteger calls = new AtomicInteger();
+		private final long exp;
+
+		StubTokenServices(long exp) {
+			this.exp = exp;
+		}
+
+		@Override
+		public OAuth2Authentication loadAuthentication(String accessToken) {
+			calls.incrementAndGet();
+			if (accessToken.startsWith("invalid"))
+				throw new InvalidTokenException(accessToken);
+
+			Map<String, Object> map = new HashMap<>();
+			map.put("client_id", "test");
+			map.put("scope", "fdns.indexing.*.*");
+			if (exp >= 0)
+				map.put("exp", exp);
+			return new ExpirationAccessTokenConverter().extractAuthentication(map);
+		}
+
+		@Override
+		public OAuth2AccessToken readAccessToken(String accessToken) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,93 @@
+package gov.cdc.foundation.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JwksKeyStoreTest {
+
+	private static final int THREADS = 16;
+
+	private byte[] jwks;
+
+	@Before
+	public void setup() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		KeyPair keyPair = generator.generateKeyPair();
+		jwks = JwtTokenServicesTest.jwks(keyPair, "key1").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void concurrentMisses() throws Exception {
+		CountingKeyStore keyStore = new CountingKeyStore(TimeUnit.MINUTES.toMillis(1));
+		List<Thread> threads = new ArrayList<>();
+		AtomicInteger found = new AtomicInteger();
+		// Holds the lock until every thread has missed the key and waits for the refresh
+		synchronized (keyStore) {
+			for (int i = 0; i < THREADS; i++) {
+				Thread thread = new Thread(() -> {
+					if (keyStore.getKey("unknown") != null)
+						found.incrementAndGet();
+				});
+				thread.start();
+				threads.add(thread);
+			}
+			long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+			while (threads.stream().anyMatch(thread -> thread.getState() != Thread.State.BLOCKED) && System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+		}
+		for (Thread thread : threads)
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+
+		// Only the first miss loads the keys, the others find the refresh done
+		assertThat(found.get()).isZero();
+		assertThat(keyStore.loads.get()).isEqualTo(1);
+		assertThat(keyStore.getKey("key1")).isNotNull();
+		assertThat(keyStore.getKey("unknown")).isNull();
+		assertThat(keyStore.loads.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void stop() throws Exception {
+		CountingKeyStore keyStore = new CountingKeyStore(0);
+		keyStore.start(10);
+		Thread.sleep(100);
+		keyStore.stop();
+		Thread.sleep(50);
+		int loads = keyStore.loads.get();
+		assertThat(loads).isGreaterThan(1);
+
+		Thread.sleep(100);
+		assertThat(keyStore.loads.get()).isEqualTo(loads);
+	}
+
+	private class CountingKeyStore extends JwksKeyStore {
+
+		private final AtomicInteger loads = new AtomicInteger();
+
+		private CountingKeyStore(long minRefreshInterval) {
+			super("jwks.json", minRefreshInterval);
+		}
+
+		@Override
+		InputStream open() throws IOException {
+			loads.incrementAndGet();
+			return new ByteArrayInputStream(jwks);
+		}
+
+	}
+
+}
@@ -0,0 +1,123 @@
+package gov.cdc.foundation.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.RsaSigner;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+
+public class JwtTokenServicesTest {
+
+	private static final long NOW = 1_500_000_000_000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private KeyPair keyPair;
+	private JwtTokenServices services;
+
+	@Before
+	public void setup() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		keyPair = generator.generateKeyPair();
+
+		File jwks = folder.newFile("jwks.json");
+		Files.write(jwks.toPath(), jwks(keyPair, "key1").toString().getBytes(StandardCharsets.UTF_8));
+		JwksKeyStore keyStore = new JwksKeyStore(jwks.getAbsolutePath(), 0).start(0);
+		services = new JwtTokenServices(keyStore, "https://issuer/", "scp", 1000, () -> NOW);
+	}
+
+	@Test
+	public void validToken() {
+		OAuth2Authentication authentication = services.loadAuthentication(sign(claims(NOW / 1000 + 60), "key1", keyPair));
+		assertThat(authentication.isAuthenticated()).isTrue();
+		assertThat(authentication.getOAuth2Request().getClientId()).isEqualTo("client");
+		assertThat(authentication.getOAuth2Request().getScope()).containsOnly("fdns.indexing", "fdns.indexing.myconfig.read");
+		assertThat(ExpirationAccessTokenConverter.getExpiration(authentication)).isEqualTo(NOW + 60000);
+	}
+
+	@Test
+	public void expiredToken() {
+		String token = sign(claims(NOW / 1000 - 60), "key1", keyPair);
+		assertThatThrownBy(() -> services.loadAuthentication(token)).isInstanceOf(InvalidTokenException.class);
+	}
+
+	@Test
+	public void invalidIssuer() {
+		Map<String, Object> claims = claims(NOW / 1000 + 60);
+		claims.put("iss", "https://other/");
+		String token = sign(claims, "key1", keyPair);
+		assertThatThrownBy(() -> services.loadAuthentication(token)).isInstanceOf(InvalidTokenException.class);
+	}
+
+	@Test
+	public void invalidSignature() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		KeyPair other = generator.generateKeyPair();
+
+		String forged = sign(claims(NOW / 1000 + 60), "key1", other);
+		assertThatThrownBy(() -> services.loadAuthentication(forged)).isInstanceOf(InvalidTokenException.class);
+		String unknown = sign(claims(NOW / 1000 + 60), "key2", keyPair);
+		assertThatThrownBy(() -> services.loadAuthentication(unknown)).isInstanceOf(InvalidTokenException.class);
+		assertThatThrownBy(() -> services.loadAuthentication("not.a.token")).isInstanceOf(InvalidTokenException.class);
+	}
+
+	private static Map<String, Object> claims(long exp) {
+		Map<String, Object> claims = new HashMap<>();
+		claims.put("iss", "https://issuer/");
+		claims.put("client_id", "client");
+		claims.put("scp", new String[] { "fdns.indexing", "fdns.indexing.myconfig.read" });
+		claims.put("exp", exp);
+		return claims;
+	}
+
+	private static String sign(Map<String, Object> claims, String kid, KeyPair keyPair) {
+		Map<String, String> headers = new HashMap<>();
+		headers.put("kid", kid);
+		return JwtHelper.encode(new JSONObject(claims).toString(), new RsaSigner((RSAPrivateKey) keyPair.getPrivate()), headers).getEncoded();
+	}
+
+	static JSONObject jwks(KeyPair keyPair, String kid) {
+		RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		JSONObject jwk = new JSONObject();
+		jwk.put("kty", "RSA");
+		jwk.put("use", "sig");
+		jwk.put("alg", "RS256");
+		jwk.put("kid", kid);
+		jwk.put("n", encoder.encodeToString(toUnsigned(key.getModulus().toByteArray())));
+		jwk.put("e", encoder.encodeToString(toUnsigned(key.getPublicExponent().toByteArray())));
+		return new JSONObject().put("keys", new JSONArray().put(jwk));
+	}
+
+	private static byte[] toUnsigned(byte[] bytes) {
+		if (bytes.length > 1 && bytes[0] == 0) {
+			byte[] unsigned = new byte[bytes.length - 1];
+			System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+			return unsigned;
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,44 @@
+package gov.cdc.foundation.security;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.provider.expression.OAuth2SecurityExpressionMethods;
+
+/**
+ * The `@PreAuthorize` expressions used before the `Authz.can` method, evaluated like the method security does.
+ */
+final class LegacyExpressions {
+
+	private static final SpelExpressionParser parser = new SpelExpressionParser();
+
+	private LegacyExpressions() {
+	}
+
+	static Expression parse(boolean publicRule, String... permissions) {
+		StringBuilder sb = new StringBuilder("!@authz.isSecured()");
+		if (publicRule)
+			sb.append(" or #configName.startsWith('public-')");
+		for (String permission : permissions)
+			sb.append(" or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.").append(permission).append("'))");
+		sb.append(" or #oauth2.hasScope('fdns.indexing.'.concat(#configName).concat('.*'))");
+		for (String permission : permissions)
+			sb.append(" or #oauth2.hasScope('fdns.indexing.*.").append(permission).append("')");
+		sb.append(" or #oauth2.hasScope('fdns.indexing.*.*')");
+		return parser.parseExpression(sb.toString());
+	}
+
+	static StandardEvaluationContext context(Authz authz, Authentication authentication, String config) {
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		context.setBeanResolver((ctx, name) -> authz);
+		context.setVariable("oauth2", new OAuth2SecurityExpressionMethods(authentication));
+		context.setVariable("configName", config);
+		return context;
+	}
+
+	static boolean evaluate(Expression expression, Authz authz, Authentication authentication, String config) {
+		return expression.getValue(context(authz, authentication, config), Boolean.class);
+	}
+
+}
@@ -0,0 +1,277 @@
+package gov.cdc.foundation.stub;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import gov.cdc.foundation.helper.ElasticFormat;
+
+/**
+ * Stub of the Elasticsearch 5.5 REST API used by the service, in JSON except for the SMILE bulk requests. The indexed
+ * documents are kept per index, id and routing, and found by the `ids` searches; the other ones, and the hits of every
+ * other search, are generated with the configured payload size.
+ */
+public class ElasticStub extends StubServer {
+
+	private final Map<String, JsonNode> documents = new ConcurrentHashMap<>();
+	private final AtomicLong writes = new AtomicLong();
+
+	private volatile String bulkContentType;
+	private volatile int hits = 10;
+	private volatile int payloadSize = 512;
+
+	public ElasticStub() throws IOException {
+		on("GET", "/", request -> Response.ok(info()));
+		on("HEAD", "/", request -> Response.ok(info()));
+		on("GET", "/_alias/([^/]+)", request -> Response.ok(mapper.createObjectNode()));
+		on("GET", "/_tasks/([^/]+)", request -> Response.ok(mapper.createObjectNode().put("completed", true)));
+		on("POST", "/_bulk", request -> Response.ok(bulk(request)));
+		on("POST", "/_mget", this::mget);
+		on("POST", "/_search/scroll", request -> Response.ok(search(0)));
+		on("DELETE", "/_search/scroll", request -> Response.ok(mapper.createObjectNode().put("succeeded", true)));
+		on("PUT", "/_template/([^/]+)", request -> acknowledged());
+		on("PUT", "/([^/_][^/]*)/_mapping/([^/]+)", request -> acknowledged());
+		on("GET", "/([^/]+)/_search", request -> Response.ok(search(request.json(), Integer.parseInt(request.param("size", String.valueOf(hits))))));
+		on("POST", "/([^/]+)/_search", request -> Response.ok(search(request.json(), request.json().path("size").asInt(hits))));
+		on("POST", "/([^/]+)/_count", request -> Response.ok(mapper.createObjectNode().put("count", hits)));
+		on("POST", "/([^/]+)/_delete_by_query", request -> Response.ok(mapper.createObjectNode().put("deleted", 0)));
+		on("PUT", "/([^/_][^/]*)", request -> acknowledged());
+		on("DELETE", "/([^/_][^/]*)", request -> acknowledged());
+		on("PUT", "/([^/]+)/([^/]+)/([^/]+)", request -> {
+			store(request.group(1), request.group(2), request.group(3), request.param("routing", null), request.json());
+			return Response.json(201, result(request.group(1), request.group(2), request.group(3), "created"));
+		});
+		on("GET", "/([^/]+)/([^/]+)/([^/]+)", request -> Response.ok(get(request.group(1), request.group(2), request.group(3), request.param("routing", null))));
+		on("DELETE", "/([^/]+)/([^/]+)/([^/]+)", request -> {
+			remove(request.group(1), request.group(2), request.group(3), request.param("routing", null));
+			return Response.ok(result(request.group(1), request.group(2), request.group(3), "deleted"));
+		});
+	}
+
+	/**
+	 * Sets the number of hits of every search.
+	 */
+	public void setHits(int hits) {
+		this.hits = hits;
+	}
+
+	/**
+	 * Sets the approximate size in bytes of the generated documents.
+	 */
+	public void setPayloadSize(int payloadSize) {
+		this.payloadSize = payloadSize;
+	}
+
+	/**
+	 * Answers the next matching requests with an Elasticsearch error of the given status and type.
+	 */
+	public void fail(String method, String path, int times, int status, String type) throws IOException {
+		ObjectNode body = mapper.createObjectNode();
+		ObjectNode error = body.putObject("error");
+		error.put("type", type);
+		error.put("reason", "Stub " + type);
+		body.put("status", status);
+		fail(method, path, times, Response.json(status, body));
+	}
+
+	public int getIndexed() {
+		return documents.size();
+	}
+
+	/**
+	 * Returns the number of documents written, by single or bulk requests.
+	 */
+	public long getWrites() {
+		return writes.get();
+	}
+
+	/**
+	 * Returns the content type of the last bulk request.
+	 */
+	public String getBulkContentType() {
+		return bulkContentType;
+	}
+
+	/**
+	 * Returns an indexed document without routing, or null if it isn't indexed.
+	 */
+	public JsonNode getDocument(String index, String type, String id) {
+		return getDocument(index, type, id, null);
+	}
+
+	public JsonNode getDocument(String index, String type, String id, String routing) {
+		return documents.get(key(index, type, id, routing));
+	}
+
+	public ObjectNode document(String id) {
+		ObjectNode document = mapper.createObjectNode();
+		document.put("name", "Document " + id);
+		document.put("status", id.hashCode() % 2 == 0 ? "open" : "closed");
+		document.put("date", "2018-03-12T10:00:00Z");
+		document.putObject("nested").put("value", id.length());
+		document.putArray("tags").add("a").add("b");
+		StringBuilder padding = new StringBuilder();
+		while (padding.length() < payloadSize - 150)
+			padding.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+		document.put("notes", padding.toString());
+		return document;
+	}
+
+	private ObjectNode info() {
+		ObjectNode info = mapper.createObjectNode();
+		info.put("cluster_name", "stub");
+		info.putObject("version").put("number", "5.5.3");
+		info.put("tagline", "You Know, for Search");
+		return info;
+	}
+
+	private Response acknowledged() throws IOException {
+		return Response.ok(mapper.createObjectNode().put("acknowledged", true));
+	}
+
+	private ObjectNode result(String index, String type, String id, String result) {
+		ObjectNode node = mapper.createObjectNode();
+		node.put("_index", index);
+		node.put("_type", type);
+		node.put("_id", id);
+		node.put("_version", 1);
+		node.put("result", result);
+		return node;
+	}
+
+	private ObjectNode get(String index, String type, String id, String routing) {
+		ObjectNode node = result(index, type, id, null);
+		node.remove("result");
+		node.put("found", true);
+		JsonNode source = documents.get(key(index, type, id, routing));
+		node.set("_source", source != null ? source : document(id));
+		return node;
+	}
+
+	private ObjectNode search(JsonNode request, int size) {
+		JsonNode ids = request.path("query").path("ids").path("values");
+		return ids.isArray() ? located(ids) : search(size);
+	}
+
+	private ObjectNode search(int size) {
+		ObjectNode response = mapper.createObjectNode();
+		response.put("took", 1);
+		response.put("timed_out", false);
+		ObjectNode hitsNode = response.putObject("hits");
+		hitsNode.put("total", hits);
+		hitsNode.put("max_score", 1.0);
+		ArrayNode array = hitsNode.putArray("hits");
+		for (int i = 0; i < Math.min(size, hits); i++) {
+			ObjectNode hit = array.addObject();
+			hit.put("_index", "stub");
+			hit.put("_type", "stub");
+			hit.put("_id", String.valueOf(i));
+			hit.put("_score", 1.0);
+			hit.set("_source", document(String.valueOf(i)));
+		}
+		return response;
+	}
+
+	/**
+	 * Finds the indexed documents with the given ids, in every index.
+	 */
+	private ObjectNode located(JsonNode ids) {
+		Set<String> wanted = new HashSet<>();
+		ids.forEach(id -> wanted.add(id.asText()));
+		ObjectNode response = mapper.createObjectNode();
+		response.put("took", 1);
+		response.put("timed_out", false);
+		ObjectNode hitsNode = response.putObject("hits");
+		ArrayNode array = hitsNode.putArray("hits");
+		for (String key : documents.keySet()) {
+			String[] parts = key.split("/", -1);
+			if (!wanted.contains(parts[2]))
+				continue;
+			ObjectNode hit = array.addObject();
+			hit.put("_index", parts[0]);
+			hit.put("_type", parts[1]);
+			hit.put("_id", parts[2]);
+			hit.put("_score", 1.0);
+			if (!parts[3].isEmpty())
+				hit.put("_routing", parts[3]);
+		}
+		hitsNode.put("total", array.size());
+		return response;
+	}
+
+	private Response mget(Request request) throws IOException {
+		ObjectNode response = mapper.createObjectNode();
+		ArrayNode docs = response.putArray("docs");
+		for (JsonNode doc : request.json().path("docs"))
+			docs.add(get(doc.path("_index").asText(), doc.path("_type").asText(), doc.path("_id").asText(), doc.path("_routing").asText(null)));
+		return Response.ok(response);
+	}
+
+	private ObjectNode bulk(Request request) throws IOException {
+		ObjectNode response = mapper.createObjectNode();
+		response.put("took", 1);
+		response.put("errors", false);
+		ArrayNode items = response.putArray("items");
+		bulkContentType = request.contentType();
+		Iterator<JsonNode> lines = lines(request).iterator();
+		while (lines.hasNext()) {
+			JsonNode action = lines.next();
+			String operation = action.fieldNames().next();
+			JsonNode meta = action.get(operation);
+			String index = meta.path("_index").asText();
+			String type = meta.path("_type").asText();
+			String id = meta.path("_id").asText();
+			String routing = meta.path("_routing").asText(null);
+			if ("delete".equals(operation))
+				remove(index, type, id, routing);
+			else
+				store(index, type, id, routing, lines.next());
+			ObjectNode item = result(index, type, id, "delete".equals(operation) ? "deleted" : "created");
+			item.put("status", "delete".equals(operation) ? 200 : 201);
+			items.addObject().set(operation, item);
+		}
+		return response;
+	}
+
+	/**
+	 * Reads the lines of a bulk request: NDJSON, or SMILE documents each followed by 0xFF.
+	 */
+	private static List<JsonNode> lines(Request request) throws IOException {
+		ElasticFormat format = ElasticFormat.fromMediaType(request.contentType());
+		byte separator = format == ElasticFormat.SMILE ? (byte) 0xFF : (byte) '\n';
+		byte[] body = request.body();
+		List<JsonNode> lines = new ArrayList<>();
+		for (int start = 0, end = 0; end <= body.length; end++)
+			if (end == body.length || body[end] == separator) {
+				if (end > start)
+					lines.add(format.getMapper().readTree(Arrays.copyOfRange(body, start, end)));
+				start = end + 1;
+			}
+		return lines;
+	}
+
+	private void store(String index, String type, String id, String routing, JsonNode document) {
+		documents.put(key(index, type, id, routing), document);
+		writes.incrementAndGet();
+	}
+
+	private void remove(String index, String type, String id, String routing) {
+		documents.remove(key(index, type, id, routing));
+	}
+
+	private static String key(String index, String type, String id, String routing) {
+		return index + '/' + type + '/' + id + '/' + (routing != null ? routing : "");
+	}
+
+}
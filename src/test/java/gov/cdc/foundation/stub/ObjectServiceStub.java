@@ -0,0 +1,87 @@
+package gov.cdc.foundation.stub;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Stub of the Object Microservice API (`/api/1.0/{db}/{collection}/...`). The objects are kept per collection; one
+ * that isn't found in the requested collection is looked up by id in the others, so the configurations are found
+ * whatever database the client defaults to. The finds are only filtered on `{ "_id": { "$in": [...] } }`.
+ */
+public class ObjectServiceStub extends StubServer {
+
+	private static final String PREFIX = "/api/1.0/([^/]+)/([^/]+)";
+
+	private final Map<String, Map<String, JsonNode>> collections = new ConcurrentHashMap<>();
+
+	public ObjectServiceStub() throws IOException {
+		on("POST", PREFIX + "/find", this::find);
+		on("POST", PREFIX + "/count", request -> Response.ok(mapper.createObjectNode().put("count", collection(request.group(1), request.group(2)).size())));
+		on("GET", PREFIX + "/([^/]+)/exists", request -> Response.ok(mapper.createObjectNode().put("exists", get(request.group(1), request.group(2), request.group(3)) != null)));
+		on("HEAD", PREFIX + "/([^/]+)", this::read);
+		on("GET", PREFIX + "/([^/]+)", this::read);
+		on("POST", PREFIX + "/([^/]+)", this::write);
+		on("PUT", PREFIX + "/([^/]+)", this::write);
+		on("DELETE", PREFIX + "/([^/]+)", request -> {
+			JsonNode object = collection(request.group(1), request.group(2)).remove(request.group(3));
+			return object != null ? Response.ok(object) : Response.notFound();
+		});
+	}
+
+	public void put(String db, String collection, String id, JsonNode object) {
+		ObjectNode copy = object.deepCopy();
+		copy.putObject("_id").put("$oid", id);
+		collection(db, collection).put(id, copy);
+	}
+
+	private Map<String, JsonNode> collection(String db, String collection) {
+		return collections.computeIfAbsent(db + '/' + collection, key -> new ConcurrentSkipListMap<>());
+	}
+
+	private JsonNode get(String db, String collection, String id) {
+		JsonNode object = collection(db, collection).get(id);
+		if (object == null)
+			for (Map<String, JsonNode> other : collections.values())
+				if ((object = other.get(id)) != null)
+					break;
+		return object;
+	}
+
+	private Response read(Request request) throws IOException {
+		JsonNode object = get(request.group(1), request.group(2), request.group(3));
+		return object != null ? Response.ok(object) : Response.notFound();
+	}
+
+	private Response write(Request request) throws IOException {
+		put(request.group(1), request.group(2), request.group(3), request.json());
+		return Response.json(201, collection(request.group(1), request.group(2)).get(request.group(3)));
+	}
+
+	private Response find(Request request) throws IOException {
+		List<JsonNode> objects = new ArrayList<>(collection(request.group(1), request.group(2)).values());
+		JsonNode in = request.json().path("_id").path("$in");
+		if (in.isArray()) {
+			Set<String> ids = new HashSet<>();
+			in.forEach(id -> ids.add(id.path("$oid").asText(id.asText())));
+			objects.removeIf(object -> !ids.contains(object.path("_id").path("$oid").asText()));
+		}
+		int from = Math.min(Integer.parseInt(request.param("from", "0")), objects.size());
+		int size = Integer.parseInt(request.param("size", String.valueOf(objects.size())));
+		ObjectNode response = mapper.createObjectNode();
+		response.put("total", objects.size());
+		ArrayNode items = response.putArray("items");
+		objects.subList(from, Math.min(objects.size(), from + size)).forEach(items::add);
+		return Response.ok(response);
+	}
+
+}
@@ -0,0 +1,259 @@
+package gov.cdc.foundation.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP stub of a dependency, on a local port. The routes are matched in order on the method and a path pattern, whose
+ * groups are passed to the handler; unmatched requests get a 404. Failures can be injected before the routes, and an
+ * optional latency delays every response.
+ */
+public class StubServer implements Closeable {
+
+	protected static final ObjectMapper mapper = new ObjectMapper();
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final List<Route> routes = new CopyOnWriteArrayList<>();
+	private final List<Failure> failures = new CopyOnWriteArrayList<>();
+	private final AtomicLong requests = new AtomicLong();
+
+	private volatile long latency;
+
+	public StubServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, getClass().getSimpleName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	public StubServer on(String method, String path, Handler handler) {
+		routes.add(new Route(method, Pattern.compile(path), handler));
+		return this;
+	}
+
+	/**
+	 * Answers the next matching requests with the given response instead of their route, the given number of times.
+	 */
+	public StubServer fail(String method, String path, int times, Response response) {
+		failures.add(new Failure(method, Pattern.compile(path), times, response));
+		return this;
+	}
+
+	/**
+	 * Removes the failures that haven't been used up.
+	 */
+	public void recover() {
+		failures.clear();
+	}
+
+	public void setLatency(long latency, TimeUnit unit) {
+		this.latency = unit.toNanos(latency);
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + getPort();
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try {
+			String path = exchange.getRequestURI().getPath();
+			Response response = failure(exchange.getRequestMethod(), path);
+			if (response == null) {
+				response = Response.notFound();
+				for (Route route : routes) {
+					Matcher matcher = route.path.matcher(path);
+					if (route.method.equals(exchange.getRequestMethod()) && matcher.matches()) {
+						response = route.handler.handle(new Request(exchange, matcher));
+						break;
+					}
+				}
+			}
+			if (latency > 0)
+				TimeUnit.NANOSECONDS.sleep(latency);
+
+			boolean head = "HEAD".equals(exchange.getRequestMethod());
+			exchange.getResponseHeaders().set("Content-Type", response.contentType);
+			exchange.sendResponseHeaders(response.status, head || response.body.length == 0 ? -1 : response.body.length);
+			if (!head)
+				try (OutputStream output = exchange.getResponseBody()) {
+					output.write(response.body);
+				}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			byte[] body = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(500, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private Response failure(String method, String path) {
+		for (Failure failure : failures)
+			if (failure.method.equals(method) && failure.path.matcher(path).matches() && failure.remaining.getAndDecrement() > 0)
+				return failure.response;
+		return null;
+	}
+
+	public interface Handler {
+
+		Response handle(Request request) throws IOException;
+
+	}
+
+	public static class Request {
+
+		private final Matcher matcher;
+		private final Map<String, String> params = new HashMap<>();
+		private final String contentType;
+		private final byte[] body;
+
+		Request(HttpExchange exchange, Matcher matcher) throws IOException {
+			this.matcher = matcher;
+			this.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			String query = exchange.getRequestURI().getRawQuery();
+			if (query != null)
+				for (String param : query.split("&")) {
+					int separator = param.indexOf('=');
+					if (separator > 0)
+						params.put(URLDecoder.decode(param.substring(0, separator), "UTF-8"), URLDecoder.decode(param.substring(separator + 1), "UTF-8"));
+					else
+						params.put(URLDecoder.decode(param, "UTF-8"), "");
+				}
+			body = read(exchange.getRequestBody());
+		}
+
+		public String group(int group) {
+			return matcher.group(group);
+		}
+
+		public String param(String name, String defaultValue) {
+			return params.getOrDefault(name, defaultValue);
+		}
+
+		public String contentType() {
+			return contentType;
+		}
+
+		public byte[] body() {
+			return body;
+		}
+
+		public JsonNode json() throws IOException {
+			return body.length > 0 ? mapper.readTree(body) : mapper.createObjectNode();
+		}
+
+		private static byte[] read(InputStream input) throws IOException {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+				output.write(buffer, 0, read);
+			return output.toByteArray();
+		}
+
+	}
+
+	public static class Response {
+
+		private final int status;
+		private final String contentType;
+		private final byte[] body;
+
+		public Response(int status, String contentType, byte[] body) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+
+		public static Response json(int status, Object body) throws IOException {
+			return new Response(status, "application/json; charset=UTF-8", mapper.writeValueAsBytes(body));
+		}
+
+		public static Response ok(Object body) throws IOException {
+			return json(200, body);
+		}
+
+		public static Response notFound() throws IOException {
+			return json(404, mapper.createObjectNode().put("found", false));
+		}
+
+	}
+
+	private static class Route {
+
+		private final String method;
+		private final Pattern path;
+		private final Handler handler;
+
+		Route(String method, Pattern path, Handler handler) {
+			this.method = method;
+			this.path = path;
+			this.handler = handler;
+		}
+
+	}
+
+	private static class Failure {
+
+		private final String method;
+		private final Pattern path;
+		private final AtomicInteger remaining;
+		private final Response response;
+
+		Failure(String method, Pattern path, int times, Response response) {
+			this.method = method;
+			this.path = path;
+			this.remaining = new AtomicInteger(times);
+			this.response = response;
+		}
+
+	}
+
+}
@@ -0,0 +1,59 @@
+package gov.cdc.foundation.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TracerTest {
+
+	private InMemorySpanExporter exporter;
+	private Tracer tracer;
+
+	@Before
+	public void setup() {
+		exporter = new InMemorySpanExporter();
+		tracer = new Tracer(exporter, 1);
+	}
+
+	@Test
+	public void continueRemoteTrace() {
+		String traceparent = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+		try (Span root = tracer.startRootSpan("GET /api/1.0/", traceparent)) {
+			assertThat(root.getTraceId()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+			assertThat(root.getParentId()).isEqualTo("00f067aa0ba902b7");
+			assertThat(root.isSampled()).isTrue();
+			assertThat(root.toTraceparent()).startsWith("00-4bf92f3577b34da6a3ce929d0e0e4736-").endsWith("-01");
+
+			try (Span child = tracer.startSpan("getConfiguration")) {
+				assertThat(child.getParentId()).isEqualTo(root.getSpanId());
+				assertThat(tracer.currentSpan()).isSameAs(child);
+			}
+			assertThat(tracer.currentSpan()).isSameAs(root);
+		}
+		assertThat(tracer.currentSpan()).isNull();
+
+		List<Span> spans = exporter.getSpans("4bf92f3577b34da6a3ce929d0e0e4736");
+		assertThat(spans).extracting(Span::getName).containsExactly("getConfiguration", "GET /api/1.0/");
+		assertThat(spans.get(0).getDuration()).isGreaterThanOrEqualTo(0);
+	}
+
+	@Test
+	public void notSampledRemoteTrace() {
+		try (Span root = tracer.startRootSpan("GET /api/1.0/", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00")) {
+			tracer.trace("parseQuery", () -> null);
+		}
+		assertThat(exporter.getSpans()).isEmpty();
+	}
+
+	@Test
+	public void invalidTraceparent() {
+		try (Span root = tracer.startRootSpan("GET /api/1.0/", "00-00000000000000000000000000000000-00f067aa0ba902b7-01")) {
+			assertThat(root.getTraceId()).hasSize(32).isNotEqualTo("00000000000000000000000000000000");
+			assertThat(root.getParentId()).isNull();
+		}
+	}
+
+}
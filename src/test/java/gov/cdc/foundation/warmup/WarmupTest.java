@@ -0,0 +1,59 @@
+package gov.cdc.foundation.warmup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import gov.cdc.foundation.controller.IndexingController;
+import gov.cdc.foundation.helper.JSONHelper;
+import gov.cdc.foundation.helper.MetricsHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class WarmupTest {
+
+	private Warmup warmup(boolean enabled, int iterations) {
+		return new Warmup(new IndexingController("^[a-z0-9]+$", 500), enabled, iterations, 2, "settings", "indexing");
+	}
+
+	@Test
+	public void outOfServiceUntilWarm() throws Exception {
+		Warmup warmup = warmup(true, 10);
+		assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+		JsonNode config = JSONHelper.getInstance().getMapper().readTree("{\"mapping\":{\"$set\":{\"label\":{\"fields\":[\"$.name\",\"$.tags\"],\"separator\":\" \"}},\"$unset\":[\"nested.value\"]},"
+			+ "\"filters\":{\"everything\":{\"regex\":null,\"queryType\":\"multi_match\",\"clause\":\"must\",\"fields\":[\"label\"]}}}");
+		warmup.exercise(Collections.singletonList(config));
+		assertThat(warmup.isReady()).isFalse();
+
+		// The services aren't reachable: the instance still becomes ready
+		warmup.run();
+		assertThat(warmup.isReady()).isTrue();
+		assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+	}
+
+	@Test
+	public void notTimed() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MetricsHelper metrics = new MetricsHelper(registry, 0);
+
+		JsonNode config = JSONHelper.getInstance().getMapper().readTree("{\"filters\":{\"everything\":{\"regex\":null,\"queryType\":\"multi_match\",\"clause\":\"must\",\"fields\":[\"name\"]}}}");
+		warmup(true, 10).exercise(Collections.singletonList(config));
+		assertThat(registry.find(MetricsHelper.METRIC_QUERY_PARSE).timer()).isNull();
+		assertThat(registry.find(MetricsHelper.METRIC_PREPARE_OBJECT).timer()).isNull();
+
+		// The requests are still timed
+		metrics.time(MetricsHelper.METRIC_QUERY_PARSE, "parse", () -> null);
+		assertThat(registry.get(MetricsHelper.METRIC_QUERY_PARSE).timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void disabled() {
+		assertThat(warmup(false, 10).health().getStatus()).isEqualTo(Status.UP);
+	}
+
+}